@@ -1,7 +1,9 @@
 package opwvhk.avro.io;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.file.Path;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.LocalDate;
@@ -18,11 +20,13 @@ import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.function.BiPredicate;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -30,7 +34,9 @@ import java.util.function.Supplier;
 
 import opwvhk.avro.ResolvingFailure;
 import opwvhk.avro.util.AvroConversions;
+import opwvhk.avro.util.StringCache;
 import opwvhk.avro.util.Utils;
+import org.apache.avro.AvroRuntimeException;
 import org.apache.avro.Conversion;
 import org.apache.avro.Conversions;
 import org.apache.avro.LogicalType;
@@ -38,7 +44,9 @@ import org.apache.avro.LogicalTypes;
 import org.apache.avro.Schema;
 import org.apache.avro.data.TimeConversions;
 import org.apache.avro.generic.GenericData;
+import org.apache.avro.util.Utf8;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.time.ZoneOffset.UTC;
 import static java.util.Objects.requireNonNull;
 import static opwvhk.avro.util.AvroSchemaUtils.nonNullableSchemaOf;
@@ -49,6 +57,28 @@ import static opwvhk.avro.util.AvroSchemaUtils.nonNullableSchemaOf;
  * <p>Subclasses should implement a </p>
  */
 public abstract class AsAvroParserBase<WriteSchema> {
+    /**
+     * Schema property to deduplicate the values of a string schema. If {@code true}, each string resolver uses a bounded cache to yield the same instance
+     * for equal values. This saves memory when keeping many parsed records with repeating values in memory.
+     *
+     * <p>Note that {@link Utf8} instances are mutable: when deduplicating them, the same instance is shared by all records (also those parsed later) that
+     * have that value. Such values must be treated as immutable: changing one changes them all. {@link String} values do not have this problem.</p>
+     */
+    public static final String DEDUPLICATE_PROP = "deduplicate";
+    /**
+     * Schema property to parse a record lazily. If {@code true}, the record resolver yields {@link LazyRecord} instances, which convert scalar fields on first
+     * access. This saves time for consumers that only inspect a few fields of each record.
+     */
+    public static final String LAZY_PROP = "lazy";
+    /**
+     * The number of values cached by resolvers that deduplicate strings.
+     */
+    private static final int DEDUPLICATION_CACHE_SIZE = 1024;
+    /**
+     * The version of the resolve rules (of all parsers), as part of the fingerprint of resolver plans. Increase it when the rules change, so stored plans
+     * are created again.
+     */
+    private static final int RESOLVE_RULES_VERSION = 1;
     /**
      * Date format as specified by ISO8601.
      */
@@ -106,6 +136,10 @@ public abstract class AsAvroParserBase<WriteSchema> {
      * Resolver for string values.
      */
     protected static final ScalarValueResolver STRING_RESOLVER = new ScalarValueResolver(s -> s);
+    /**
+     * Resolver for string values, yielding Avro {@link Utf8} instances. These are written without encoding them (again) when serializing a record.
+     */
+    protected static final ScalarValueResolver UTF8_RESOLVER = new ScalarValueResolver(Utf8::new);
     /**
      * Resolver for ISO8601 (local) dates (using {@link DateTimeFormatter#ISO_DATE}).
      */
@@ -283,12 +317,12 @@ public abstract class AsAvroParserBase<WriteSchema> {
         resolveRules.add(new ResolveRule<>(Objects::isNull, rawType(Schema.Type.DOUBLE), (w, r) -> DOUBLE_RESOLVER));
         resolveRules.add(new ResolveRule<>(Objects::isNull, rawType(Schema.Type.INT), (w, r) -> INTEGER_RESOLVER));
         resolveRules.add(new ResolveRule<>(Objects::isNull, rawType(Schema.Type.LONG), (w, r) -> LONG_RESOLVER));
-        resolveRules.add(new ResolveRule<>(Objects::isNull, rawType(Schema.Type.STRING), (w, r) -> STRING_RESOLVER));
+        resolveRules.add(new ResolveRule<>(Objects::isNull, rawType(Schema.Type.STRING), (w, r) -> createStringResolver(r)));
         resolveRules.add(new ResolveRule<>(Objects::isNull, rawType(Schema.Type.ENUM), (w, r) -> createEnumResolver(r)));
         // Composite types
         resolveRules.add(new ResolveRule<>(Objects::isNull, rawType(Schema.Type.UNION), (w, r) -> createResolver(null, nonNullableSchemaOf(r))));
         resolveRules.add(new ResolveRule<>(Objects::isNull, rawType(Schema.Type.ARRAY),
-                (w, r) -> new ListResolver(createResolver(null, nonNullableSchemaOf(r.getElementType())))));
+                (w, r) -> new ListResolver(model, r, createResolver(null, nonNullableSchemaOf(r.getElementType())))));
         resolveRules.add(new ResolveRule<>(Objects::isNull, rawType(Schema.Type.RECORD), (w, r) -> createRecordResolver(r)));
         // Explicitly unsupported types (needed here to weed out null write types, and to add a better error message)
         resolveRules.add(new ResolveRule<>(Objects::isNull, r -> unsupportedTypesForNullWriteType.contains(r.getType()), throwForUnsupportedType));
@@ -305,6 +339,9 @@ public abstract class AsAvroParserBase<WriteSchema> {
      * resolve elements of composite types. This method guards against infinite recursion, by using a delegating {@code ValueResolver} that receives a delegate
      * before returning.</p>
      *
+     * <p>When the outermost call returns, the resolver tree is linked: the delegating resolvers are replaced by their delegates. Recursive schemas then
+     * yield a resolver graph with cycles, without any indirection.</p>
+     *
      * @param writeSchema the schema of the written data
      * @param readSchema the schema to read the data as
      * @return a resolver that can read written data into the read schema
@@ -329,7 +366,8 @@ public abstract class AsAvroParserBase<WriteSchema> {
                     // the map contains the DelegatingResolver we put in above: if there's a different resolver for the schemaPair, we exit the method above.
                     DelegatingResolver delegatingResolver = requireNonNull((DelegatingResolver) resolversForSeenSchemas.put(schemaPair, resolver));
                     delegatingResolver.setDelegate(resolver);
-                    return resolver;
+                    // Once the tree is complete, the delegating resolvers are no longer needed.
+                    return first ? ResolverLinker.link(resolver) : resolver;
                 }
             }
             throw new ResolvingFailure("Cannot convert data written as %s into %s".formatted(writeSchema, readSchema));
@@ -365,6 +403,171 @@ public abstract class AsAvroParserBase<WriteSchema> {
         return createResolver(null, readSchema);
     }
 
+    /**
+     * <p>Return the resolvers for binary data, by the encoding of the written data.</p>
+     *
+     * <p>Resolver plans refer to these by encoding: unlike other scalar values, binary data cannot be resolved using only the read schema. The default
+     * implementation returns an empty map: parsers that support binary data must override it.</p>
+     *
+     * @return the resolvers for binary data, by encoding
+     */
+    protected Map<String, ScalarValueResolver> binaryResolvers() {
+        return Map.of();
+    }
+
+    /**
+     * Compute the fingerprint of the inputs of a resolver plan: the version of the resolve rules, the parser class, the read schema and the write schema.
+     *
+     * @param readSchema        the read schema
+     * @param writeSchemaInputs the inputs that define the write schema (like the contents of a schema file)
+     * @return the fingerprint of the inputs
+     * @see #loadResolverPlan(Path, byte[], Schema)
+     */
+    protected byte[] planFingerprint(Schema readSchema, byte[]... writeSchemaInputs) {
+        byte[][] inputs = new byte[writeSchemaInputs.length + 3][];
+        inputs[0] = Integer.toString(RESOLVE_RULES_VERSION).getBytes(UTF_8);
+        inputs[1] = getClass().getName().getBytes(UTF_8);
+        inputs[2] = readSchema.toString().getBytes(UTF_8);
+        System.arraycopy(writeSchemaInputs, 0, inputs, 3, writeSchemaInputs.length);
+        return ResolverPlan.fingerprint(inputs);
+    }
+
+    /**
+     * <p>Create a resolver from a stored resolver plan, if there is one for the inputs.</p>
+     *
+     * <p>Analysing a large write schema can take seconds. A resolver plan stores its result: the resolver structure, and how to convert scalar values. Creating
+     * a resolver from a plan skips analysing the write schema entirely.</p>
+     *
+     * @param planFile    the file with the resolver plan
+     * @param fingerprint the fingerprint of the inputs, as computed by {@link #planFingerprint(Schema, byte[]...)}
+     * @param readSchema  the read schema (schema of the resulting records)
+     * @return the resolver, or {@code null} if the file does not exist, cannot be read, or does not contain a (valid) plan for the inputs
+     * @see #saveResolverPlan(Path, byte[], ValueResolver)
+     */
+    protected ValueResolver loadResolverPlan(Path planFile, byte[] fingerprint, Schema readSchema) {
+        ResolverPlan plan = ResolverPlan.read(planFile, fingerprint);
+        if (plan == null) {
+            return null;
+        }
+        try {
+            return ResolverLinker.link(createResolver(plan, 0, nonNullableSchemaOf(readSchema), new HashMap<>()));
+        } catch (ResolvingFailure | AvroRuntimeException e) {
+            // The plan does not fit the read schema (it is corrupt): like a missing plan, it must be created again
+            return null;
+        }
+    }
+
+    private ValueResolver createResolver(ResolverPlan plan, int index, Schema readSchema, Map<Integer, ValueResolver> resolversByIndex) {
+        ValueResolver existing = resolversByIndex.get(index);
+        if (existing != null) {
+            return existing;
+        }
+        ResolverPlan.Node node = plan.node(index);
+        ValueResolver resolver;
+        if (node instanceof ResolverPlan.ScalarNode scalarNode) {
+            resolver = scalarNode.binaryEncoding() == null ? createResolver(readSchema) :
+                    binaryResolver(scalarNode.binaryEncoding());
+        } else {
+            // Recursive plans refer to resolvers that are being created: use a delegating resolver until they're done (the result is linked).
+            DelegatingResolver delegatingResolver = new DelegatingResolver();
+            resolversByIndex.put(index, delegatingResolver);
+            if (node instanceof ResolverPlan.ListNode listNode) {
+                Schema itemSchema = nonNullableSchemaOf(readSchema.getElementType());
+                resolver = new ListResolver(model, readSchema, createResolver(plan, listNode.items(), itemSchema, resolversByIndex));
+            } else {
+                RecordResolver recordResolver = new RecordResolver(model, readSchema);
+                for (ResolverPlan.Property property : ((ResolverPlan.RecordNode) node).properties()) {
+                    Schema.Field field = readSchema.getField(property.fieldName());
+                    if (field == null) {
+                        throw new ResolvingFailure("The resolver plan does not match the read schema: %s has no field %s".formatted(readSchema.getFullName(),
+                                property.fieldName()));
+                    }
+                    Schema valueSchema = nonNullableSchemaOf(field.schema());
+                    if (property.repeated()) {
+                        valueSchema = nonNullableSchemaOf(valueSchema.getElementType());
+                        recordResolver.addArrayResolver(property.name(), field, createResolver(plan, property.node(), valueSchema, resolversByIndex));
+                    } else {
+                        recordResolver.addResolver(property.name(), field, createResolver(plan, property.node(), valueSchema, resolversByIndex));
+                    }
+                }
+                resolver = recordResolver;
+            }
+            delegatingResolver.setDelegate(resolver);
+        }
+        if (!node.parseContent()) {
+            // Like when analysing the write schema
+            resolver.doNotParseContent();
+        }
+        resolversByIndex.put(index, resolver);
+        return resolver;
+    }
+
+    private ScalarValueResolver binaryResolver(String encoding) {
+        ScalarValueResolver resolver = binaryResolvers().get(encoding);
+        if (resolver == null) {
+            throw new ResolvingFailure("The resolver plan does not match the parser: unknown binary encoding " + encoding);
+        }
+        return resolver;
+    }
+
+    /**
+     * <p>Store the plan for a resolver, to create it later using {@link #loadResolverPlan(Path, byte[], Schema)}.</p>
+     *
+     * <p>This supports the resolvers created by the standard resolve rules: record, list and scalar resolvers, where scalar resolvers convert values as
+     * required by the read schema, or are {@linkplain #binaryResolvers() binary resolvers}.</p>
+     *
+     * @param planFile    the file to store the resolver plan in; it is replaced if it exists
+     * @param fingerprint the fingerprint of the inputs, as computed by {@link #planFingerprint(Schema, byte[]...)}
+     * @param resolver    the resolver to store the plan for
+     * @throws IOException when the file cannot be written
+     */
+    protected void saveResolverPlan(Path planFile, byte[] fingerprint, ValueResolver resolver) throws IOException {
+        List<ResolverPlan.Node> nodes = new ArrayList<>();
+        addPlanNode(resolver, nodes, new IdentityHashMap<>());
+        new ResolverPlan(nodes).write(planFile, fingerprint);
+    }
+
+    private int addPlanNode(ValueResolver resolver, List<ResolverPlan.Node> nodes, Map<ValueResolver, Integer> indices) {
+        if (resolver instanceof DelegatingResolver delegatingResolver) {
+            resolver = delegatingResolver.getDelegate();
+        } else if (resolver instanceof LazyRecord.DeferringResolver deferringResolver) {
+            // Lazy records wrap their scalar resolvers again
+            resolver = deferringResolver.getDelegate();
+        }
+        Integer existing = indices.get(resolver);
+        if (existing != null) {
+            return existing;
+        }
+        int index = nodes.size();
+        indices.put(resolver, index);
+        nodes.add(null);
+        ResolverPlan.Node node;
+        if (resolver instanceof RecordResolver recordResolver) {
+            List<ResolverPlan.Property> properties = new ArrayList<>();
+            // Sorted, so equal resolvers yield equal plans
+            for (Map.Entry<String, ValueResolver> entry : new TreeMap<>(recordResolver.resolversByName).entrySet()) {
+                String name = entry.getKey();
+                properties.add(new ResolverPlan.Property(name, recordResolver.fieldsByName.get(name).name(), recordResolver.arrayFields.contains(name),
+                        addPlanNode(entry.getValue(), nodes, indices)));
+            }
+            node = new ResolverPlan.RecordNode(resolver.parseContent(), properties);
+        } else if (resolver instanceof ListResolver listResolver) {
+            node = new ResolverPlan.ListNode(resolver.parseContent(), addPlanNode(listResolver.getItemResolver(), nodes, indices));
+        } else if (resolver instanceof ScalarValueResolver) {
+            String binaryEncoding = null;
+            for (Map.Entry<String, ScalarValueResolver> entry : binaryResolvers().entrySet()) {
+                if (entry.getValue() == resolver) {
+                    binaryEncoding = entry.getKey();
+                }
+            }
+            node = new ResolverPlan.ScalarNode(resolver.parseContent(), binaryEncoding);
+        } else {
+            throw new IllegalArgumentException("Cannot create a resolver plan for " + resolver);
+        }
+        nodes.set(index, node);
+        return index;
+    }
+
     /**
      * Create a resolver for enumerated values.
      *
@@ -385,6 +588,28 @@ public abstract class AsAvroParserBase<WriteSchema> {
         return model.createEnum(symbol, enumSchema);
     }
 
+    /**
+     * <p>Create a resolver for string values.</p>
+     *
+     * <p>The string type is determined by the read schema: if its property {@value GenericData#STRING_PROP} is {@code Utf8}, the resolver yields {@link Utf8}
+     * instances. Otherwise, it yields {@link String} instances. Use {@link GenericData#setStringType(Schema, GenericData.StringType)} to set the property.</p>
+     *
+     * <p>If the property {@value #DEDUPLICATE_PROP} is {@code true}, the resolver yields the same instance for recently seen values. For {@link Utf8}
+     * values, this means consumers must not modify them: see {@link #DEDUPLICATE_PROP}.</p>
+     *
+     * @param readSchema an Avro schema with type {@link org.apache.avro.Schema.Type#STRING}.
+     * @return a resolver for string values
+     */
+    protected ScalarValueResolver createStringResolver(Schema readSchema) {
+        boolean utf8 = GenericData.StringType.Utf8.name().equals(readSchema.getProp(GenericData.STRING_PROP));
+        if (Boolean.TRUE.equals(readSchema.getObjectProp(DEDUPLICATE_PROP))) {
+            StringCache<?> cache = utf8 ? new StringCache<>(DEDUPLICATION_CACHE_SIZE, Utf8::new) :
+                    new StringCache<>(DEDUPLICATION_CACHE_SIZE, Function.identity());
+            return new ScalarValueResolver(cache::deduplicate);
+        }
+        return utf8 ? UTF8_RESOLVER : STRING_RESOLVER;
+    }
+
     /**
      * Create a resolver for decimal values.
      *
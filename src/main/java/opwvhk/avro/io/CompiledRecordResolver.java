@@ -0,0 +1,186 @@
+package opwvhk.avro.io;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericArray;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.specific.SpecificData;
+
+/**
+ * <p>A record resolver specialized for parsing: the result of compiling a {@link RecordResolver}.</p>
+ *
+ * <p>All information about a property (its field, position, resolver, and whether it repeats) is in a single slot, found with a single lookup in an
+ * open-addressing table. For models that access fields by position, field values are read and written directly on the record.</p>
+ *
+ * <p>For generic records, the standard scalar fields also get a {@link FieldDispatch}: a class generated for the record schema, which parsers use to convert
+ * and set these fields without calling any resolver.</p>
+ *
+ * @see ResolverCompiler
+ */
+final class CompiledRecordResolver extends RecordResolver {
+    private final Slot[] slots;
+    private final int mask;
+    private final boolean positional;
+    private FieldDispatch dispatch;
+
+    /**
+     * Compile a record resolver.
+     *
+     * @param source   the record resolver to compile
+     * @param compiler the compiler for the field resolvers
+     */
+    CompiledRecordResolver(RecordResolver source, UnaryOperator<ValueResolver> compiler) {
+        super(source.model, source.recordSchema);
+        for (Map.Entry<String, ValueResolver> entry : source.resolversByName.entrySet()) {
+            String name = entry.getKey();
+            Schema.Field field = source.fieldsByName.get(name);
+            // Compile the original resolver, not a lazy wrapper: adding it wraps it again as needed.
+            ValueResolver resolver = entry.getValue() instanceof LazyRecord.DeferringResolver deferring ? deferring.getDelegate() : entry.getValue();
+            if (source.arrayFields.contains(name)) {
+                addArrayResolver(name, field, compiler.apply(resolver));
+            } else {
+                addResolver(name, field, compiler.apply(resolver));
+            }
+        }
+
+        int size = Integer.highestOneBit(Math.max(1, resolversByName.size()) * 4 - 1);
+        slots = new Slot[size];
+        mask = size - 1;
+        for (Map.Entry<String, ValueResolver> entry : resolversByName.entrySet()) {
+            String name = entry.getKey();
+            Schema.Field field = fieldsByName.get(name);
+            int index = hash(name) & mask;
+            while (slots[index] != null) {
+                index = (index + 1) & mask;
+            }
+            slots[index] = new Slot(name, field, entry.getValue(), arrayFields.contains(name));
+        }
+        Class<?> modelClass = model.getClass();
+        boolean lazy = Boolean.TRUE.equals(recordSchema.getObjectProp(AsAvroParserBase.LAZY_PROP));
+        // Records bound to a Java class are written via the binding
+        positional = modelClass == GenericData.class || modelClass == SpecificData.class || lazy;
+        // Only generic records: bound records track which fields are set, and lazy records defer conversions
+        dispatch = positional && !lazy && binding == null ? generateDispatch() : null;
+    }
+
+    private FieldDispatch generateDispatch() {
+        List<FieldDispatch.ScalarField> scalarFields = new ArrayList<>();
+        for (Slot slot : slots) {
+            if (slot != null && !slot.repeated && slot.resolver instanceof DirectScalarResolver scalarResolver && scalarResolver.parseContent()) {
+                scalarFields.add(new FieldDispatch.ScalarField(slot.name, slot.position, scalarResolver.conversion()));
+            }
+        }
+        return scalarFields.isEmpty() ? null : FieldDispatch.generate(recordSchema, scalarFields);
+    }
+
+    @Override
+    void replaceChildren(UnaryOperator<ValueResolver> replacer) {
+        super.replaceChildren(replacer);
+        for (int i = 0; i < slots.length; i++) {
+            Slot slot = slots[i];
+            if (slot != null) {
+                slots[i] = new Slot(slot.name, slot.field, resolversByName.get(slot.name), slot.repeated);
+                if (dispatch != null && slots[i].resolver != slot.resolver && dispatch.scalarField(slot.name) >= 0) {
+                    // The dispatch no longer matches the resolver: resolve all properties
+                    dispatch = null;
+                }
+            }
+        }
+    }
+
+    private static int hash(String name) {
+        int h = name.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    private Slot slot(String name) {
+        int index = hash(name) & mask;
+        Slot slot;
+        while ((slot = slots[index]) != null) {
+            if (slot.name.equals(name)) {
+                return slot;
+            }
+            index = (index + 1) & mask;
+        }
+        return null;
+    }
+
+    private Object getField(Object record, Slot slot) {
+        return positional ? ((IndexedRecord) record).get(slot.position) : model.getField(record, slot.field.name(), slot.position);
+    }
+
+    private void setField(Object record, Slot slot, Object value) {
+        if (positional) {
+            ((IndexedRecord) record).put(slot.position, value);
+        } else {
+            model.setField(record, slot.field.name(), slot.position, value);
+        }
+    }
+
+    @Override
+    public FieldDispatch fieldDispatch() {
+        return dispatch;
+    }
+
+    @Override
+    public ValueResolver resolve(String name) {
+        Slot slot = slot(name);
+        return slot != null ? slot.resolver : NOOP;
+    }
+
+    @Override
+    public Object previousValue(Object record, String name) {
+        Slot slot = slot(name);
+        if (slot == null) {
+            return null;
+        }
+        if (binding != null) {
+            return previousValue((BoundRecord) record, slot.field, slot.repeated);
+        }
+        Object value = getField(record, slot);
+        if (slot.repeated) {
+            // The property is an array item: reuse the previous item at the current position (if any).
+            if (value instanceof Reusable reusable) {
+                value = newArray(slot.field, reusable.value());
+                setField(record, slot, value);
+            }
+            return value instanceof GenericArray<?> array ? array.peek() : null;
+        }
+        return value instanceof Reusable reusable ? reusable.value() : null;
+    }
+
+    @Override
+    public Object addProperty(Object record, String name, Object value) {
+        Slot slot = slot(name);
+        // If null, the field is unknown and should be ignored.
+        if (slot != null && binding != null) {
+            addProperty((BoundRecord) record, slot.field, slot.repeated, value);
+        } else if (slot != null) {
+            if (slot.repeated) {
+                Object maybeList = getField(record, slot);
+                if (maybeList == NOT_SET || maybeList instanceof Reusable) {
+                    maybeList = newArray(slot.field, maybeList instanceof Reusable reusable ? reusable.value() : null);
+                    setField(record, slot, maybeList);
+                }
+                @SuppressWarnings("unchecked")
+                Collection<Object> list = (Collection<Object>) maybeList;
+                list.add(value);
+            } else {
+                setField(record, slot, value);
+            }
+        }
+        return record;
+    }
+
+    private record Slot(String name, Schema.Field field, int position, ValueResolver resolver, boolean repeated) {
+        private Slot(String name, Schema.Field field, ValueResolver resolver, boolean repeated) {
+            this(name, field, field.pos(), resolver, repeated);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package opwvhk.avro.io;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Objects.requireNonNull;
+import static opwvhk.avro.util.Utils.require;
+
+/**
+ * <p>Executor for many small, concurrent conversions, like parsing one inbound message each.</p>
+ *
+ * <p>Conversions run on virtual threads when the JVM supports them (Java 21 and later), and on a pool of daemon threads otherwise. This way, blocking I/O
+ * (as when parsing from a URL) does not cap the throughput. The number of conversions running at the same time is bounded: excess conversions wait until
+ * others complete. On virtual threads, waiting conversions do not occupy a carrier thread. The thread pool has as many threads as conversions can run at
+ * the same time, so there, waiting conversions are queued without a thread.</p>
+ *
+ * <p>Each conversion can have a deadline; conversions that don't complete in time fail with a {@link java.util.concurrent.TimeoutException TimeoutException},
+ * and their thread is interrupted. Note that interrupting does not stop blocking I/O on streams: the thread continues until the I/O completes.</p>
+ *
+ * <p>The parsers can be shared: {@link opwvhk.avro.json.JsonAsAvroParser JsonAsAvroParser} and {@link opwvhk.avro.xml.XmlAsAvroParser XmlAsAvroParser}
+ * borrow their non-shareable state (SAX parsers, handler frame stacks) per parse from a lock-free pool, so concurrent conversions neither pin virtual threads
+ * nor create parse state per thread.</p>
+ */
+public final class ConversionExecutor implements AutoCloseable {
+    private final ExecutorService executor;
+    private final Semaphore permits;
+    private final Duration defaultTimeout;
+
+    /**
+     * Create a conversion executor without default deadline.
+     *
+     * @param maxConcurrency the maximum number of conversions to run at the same time
+     */
+    public ConversionExecutor(int maxConcurrency) {
+        this(maxConcurrency, null);
+    }
+
+    /**
+     * Create a conversion executor.
+     *
+     * @param maxConcurrency the maximum number of conversions to run at the same time
+     * @param defaultTimeout the default deadline for conversions (measured from submission), or {@code null} for none
+     */
+    public ConversionExecutor(int maxConcurrency, Duration defaultTimeout) {
+        this(newTaskExecutor(maxConcurrency), maxConcurrency, defaultTimeout);
+    }
+
+    /**
+     * Create a conversion executor that runs conversions using the given executor service. The executor service is shut down when this executor is closed.
+     *
+     * @param executor       the executor service to run conversions
+     * @param maxConcurrency the maximum number of conversions to run at the same time
+     * @param defaultTimeout the default deadline for conversions (measured from submission), or {@code null} for none
+     */
+    public ConversionExecutor(ExecutorService executor, int maxConcurrency, Duration defaultTimeout) {
+        this.executor = requireNonNull(executor);
+        permits = new Semaphore(require(maxConcurrency, c -> c > 0, "The maximum concurrency must be positive"));
+        this.defaultTimeout = defaultTimeout;
+    }
+
+    /**
+     * Create an executor service that runs each task on a new virtual thread if supported, or on a pool of at most {@code maxConcurrency} daemon threads if
+     * not. Idle pool threads are stopped after a minute.
+     */
+    private static ExecutorService newTaskExecutor(int maxConcurrency) {
+        try {
+            // Virtual threads are available (without preview flags) since Java 21, but we compile for Java 17.
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            AtomicInteger threadCount = new AtomicInteger();
+            ThreadFactory threadFactory = runnable -> {
+                Thread thread = new Thread(runnable, "conversion-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            ThreadPoolExecutor threadPool = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 1, TimeUnit.MINUTES, new LinkedBlockingQueue<>(),
+                    threadFactory);
+            threadPool.allowCoreThreadTimeOut(true);
+            return threadPool;
+        }
+    }
+
+    /**
+     * Submit a conversion, using the default deadline (if any).
+     *
+     * @param conversion the conversion to run, like {@code () -> parser.parse(url)}
+     * @param <T>        the result type
+     * @return a future for the result of the conversion
+     */
+    public <T> CompletableFuture<T> submit(Conversion<T> conversion) {
+        return submit(conversion, defaultTimeout);
+    }
+
+    /**
+     * Submit a conversion with a deadline.
+     *
+     * <p>If the returned future completes early (due to the deadline, or because it's cancelled), the conversion is interrupted.</p>
+     *
+     * @param conversion the conversion to run, like {@code () -> parser.parse(url)}
+     * @param timeout    the deadline for the conversion (measured from submission, so including waiting), or {@code null} for none
+     * @param <T>        the result type
+     * @return a future for the result of the conversion
+     */
+    public <T> CompletableFuture<T> submit(Conversion<T> conversion, Duration timeout) {
+        requireNonNull(conversion);
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> run(conversion, result));
+        if (timeout != null) {
+            result.orTimeout(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        }
+        result.whenComplete((value, failure) -> {
+            if (failure != null) {
+                // Failed, timed out or cancelled: stop the conversion if it's still waiting or running
+                task.cancel(true);
+            }
+        });
+        return result;
+    }
+
+    private <T> void run(Conversion<T> conversion, CompletableFuture<T> result) {
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+        try {
+            if (!result.isDone()) {
+                result.complete(conversion.convert());
+            }
+        } catch (Throwable e) {
+            result.completeExceptionally(e);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Stop accepting conversions, and wait until all submitted conversions have completed.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(1, TimeUnit.DAYS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                if (!interrupted) {
+                    executor.shutdownNow();
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A conversion to run, like parsing a document.
+     *
+     * @param <T> the result type
+     */
+    @FunctionalInterface
+    public interface Conversion<T> {
+        /**
+         * Run the conversion.
+         *
+         * @return the conversion result
+         * @throws Exception when the conversion fails
+         */
+        T convert() throws Exception;
+    }
+}
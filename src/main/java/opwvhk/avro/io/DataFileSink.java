@@ -0,0 +1,324 @@
+package opwvhk.avro.io;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntFunction;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileConstants;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.io.DatumWriter;
+
+import static java.util.Objects.requireNonNull;
+import static opwvhk.avro.util.Utils.require;
+
+/**
+ * <p>Record consumer that writes records into Avro container files, compressing blocks in parallel.</p>
+ *
+ * <p>Records are collected into batches. Full batches are encoded and compressed on a worker pool while parsing continues, and written to the current file in
+ * order. This way, converting JSON/XML into Avro files is not limited by the (single threaded) compression. Memory use is bounded: when too many batches are
+ * pending, accepting records waits for the oldest batch.</p>
+ *
+ * <p>Workers encode the container file blocks themselves: a batch is split into blocks at the sync interval (as by {@link DataFileWriter}), and each block is
+ * compressed and followed by the sync marker. All files of a sink use the same sync marker, so writing a batch is a plain copy.</p>
+ *
+ * <p>Output can be split over multiple files (rollover), by record count and/or by size. Files are rolled over between batches: files never have more than
+ * the maximum number of records, and they are closed as soon as they reach the maximum size (so they may be a batch larger).</p>
+ *
+ * <p>Configure the sink before accepting the first record. Accepted records must not be modified afterwards (don't let the parser reuse them). The sink is
+ * not thread-safe: to write a parallel stream, use {@code stream.forEachOrdered(sink)}.</p>
+ *
+ * @param <T> the record type
+ */
+public final class DataFileSink<T> implements RecordSink<T> {
+    private final Schema schema;
+    private final GenericData model;
+    private final IntFunction<Path> fileNames;
+    private final Queue<CompletableFuture<EncodedBatch>> pendingBatches;
+    private final List<Path> files;
+    private final byte[] sync;
+    private CodecFactory codec = CodecFactory.nullCodec();
+    private int syncInterval = DataFileConstants.DEFAULT_SYNC_INTERVAL;
+    private int blockSize = 10_000;
+    private long maxFileSize = Long.MAX_VALUE;
+    private long maxRecordCount = Long.MAX_VALUE;
+    private Executor workers = ForkJoinPool.commonPool();
+    private int maxPendingBatches = 2 * Runtime.getRuntime().availableProcessors();
+
+    private boolean started;
+    private List<T> batch;
+    private int fileCount;
+    private CountingOutputStream fileOutput;
+    private long recordsInFile;
+
+    /**
+     * Create a sink that writes to a single file (unless rollover is configured).
+     *
+     * @param schema    the schema of the records to write
+     * @param model     the model of the records
+     * @param fileNames a function to name the files to write, given their (zero based) index
+     */
+    public DataFileSink(Schema schema, GenericData model, IntFunction<Path> fileNames) {
+        this.schema = requireNonNull(schema);
+        this.model = requireNonNull(model);
+        this.fileNames = requireNonNull(fileNames);
+        pendingBatches = new ArrayDeque<>();
+        files = new ArrayList<>();
+        sync = newSyncMarker();
+    }
+
+    private static byte[] newSyncMarker() {
+        UUID uuid = UUID.randomUUID();
+        return ByteBuffer.allocate(DataFileConstants.SYNC_SIZE).putLong(uuid.getMostSignificantBits()).putLong(uuid.getLeastSignificantBits()).array();
+    }
+
+    /**
+     * Use the given compression codec (the default is no compression).
+     *
+     * @param codec the codec to compress blocks with
+     * @return this {@code DataFileSink}
+     */
+    public DataFileSink<T> withCodec(CodecFactory codec) {
+        requireNotStarted();
+        this.codec = requireNonNull(codec);
+        return this;
+    }
+
+    /**
+     * Set the approximate (uncompressed) size of container file blocks in bytes; this is the distance between sync markers (the default is that of
+     * {@link DataFileWriter}). Blocks never span batches, so they have at most {@link #withBlockSize(int) block size} records.
+     *
+     * @param syncInterval the approximate size of container file blocks
+     * @return this {@code DataFileSink}
+     */
+    public DataFileSink<T> withSyncInterval(int syncInterval) {
+        requireNotStarted();
+        this.syncInterval = require(syncInterval, i -> i >= 32 && i <= (1 << 30), "The sync interval must be between 32 and 2^30");
+        return this;
+    }
+
+    /**
+     * Set the number of records per batch (the default is 10,000). Batches are the unit of work for the worker pool, and files are rolled over between them.
+     *
+     * @param blockSize the number of records per batch
+     * @return this {@code DataFileSink}
+     */
+    public DataFileSink<T> withBlockSize(int blockSize) {
+        requireNotStarted();
+        this.blockSize = require(blockSize, s -> s > 0, "The block size must be positive");
+        return this;
+    }
+
+    /**
+     * Roll over to a new file when a file reaches the given size.
+     *
+     * @param maxFileSize the size at which to roll over to a new file
+     * @return this {@code DataFileSink}
+     */
+    public DataFileSink<T> withMaxFileSize(long maxFileSize) {
+        requireNotStarted();
+        this.maxFileSize = require(maxFileSize, s -> s > 0, "The maximum file size must be positive");
+        return this;
+    }
+
+    /**
+     * Roll over to a new file before a file exceeds the given number of records.
+     *
+     * @param maxRecordCount the maximum number of records per file
+     * @return this {@code DataFileSink}
+     */
+    public DataFileSink<T> withMaxRecordCount(long maxRecordCount) {
+        requireNotStarted();
+        this.maxRecordCount = require(maxRecordCount, c -> c > 0, "The maximum record count must be positive");
+        return this;
+    }
+
+    /**
+     * Compress batches using the given executor (the default is the common fork-join pool), with at most the given number of batches pending.
+     *
+     * @param workers          the executor to encode and compress batches
+     * @param maxPendingBlocks the maximum number of batches being compressed, or waiting to be written
+     * @return this {@code DataFileSink}
+     */
+    public DataFileSink<T> withWorkers(Executor workers, int maxPendingBlocks) {
+        requireNotStarted();
+        this.workers = requireNonNull(workers);
+        this.maxPendingBatches = require(maxPendingBlocks, m -> m > 0, "The maximum number of pending batches must be positive");
+        return this;
+    }
+
+    private void requireNotStarted() {
+        if (started) {
+            throw new IllegalStateException("The sink has already accepted records");
+        }
+    }
+
+    /**
+     * Return the files written so far (including the current file, if any).
+     *
+     * @return the files written
+     */
+    public List<Path> getFiles() {
+        return List.copyOf(files);
+    }
+
+    @Override
+    public void accept(T record) {
+        if (!started) {
+            started = true;
+            // A batch never spans files, so it can be no larger than a file
+            blockSize = (int) Math.min(blockSize, maxRecordCount);
+            batch = new ArrayList<>(blockSize);
+        }
+        batch.add(record);
+        if (batch.size() == blockSize) {
+            try {
+                submitBatch();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private void submitBatch() throws IOException {
+        List<T> records = batch;
+        batch = new ArrayList<>(blockSize);
+        pendingBatches.add(CompletableFuture.supplyAsync(() -> encode(records), workers));
+        // Write what we can without waiting, but wait if too many batches are pending
+        while (!pendingBatches.isEmpty() && (pendingBatches.peek().isDone() || pendingBatches.size() > maxPendingBatches)) {
+            write(pendingBatches.remove());
+        }
+    }
+
+    /**
+     * Encode and compress a batch into container file blocks, each followed by the sync marker of this sink (but without a file header).
+     */
+    private EncodedBatch encode(List<T> records) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        int headerSize;
+        try (DataFileWriter<T> writer = newWriter()) {
+            writer.create(schema, buffer, sync);
+            writer.flush();
+            headerSize = buffer.size();
+            for (T record : records) {
+                writer.append(record);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] bytes = buffer.toByteArray();
+        return new EncodedBatch(bytes, headerSize, bytes.length - headerSize, records.size());
+    }
+
+    private void write(CompletableFuture<EncodedBatch> pendingBatch) throws IOException {
+        EncodedBatch encodedBatch;
+        try {
+            encodedBatch = pendingBatch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a batch", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            if (cause instanceof UncheckedIOException uioe) {
+                throw uioe.getCause();
+            }
+            throw new IOException("Failed to encode a batch", cause);
+        }
+
+        if (fileOutput != null && (recordsInFile + encodedBatch.recordCount() > maxRecordCount || fileOutput.count >= maxFileSize)) {
+            closeFile();
+        }
+        if (fileOutput == null) {
+            openFile();
+        }
+        // The file has the same codec and sync marker as the encoded blocks: they are copied as-is
+        fileOutput.write(encodedBatch.bytes(), encodedBatch.offset(), encodedBatch.length());
+        // Flush, so the file size is accurate (a flush per batch is cheap)
+        fileOutput.flush();
+        recordsInFile += encodedBatch.recordCount();
+    }
+
+    private DataFileWriter<T> newWriter() {
+        @SuppressWarnings("unchecked")
+        DataFileWriter<T> writer = new DataFileWriter<>((DatumWriter<T>) model.createDatumWriter(schema));
+        writer.setCodec(codec);
+        writer.setSyncInterval(syncInterval);
+        return writer;
+    }
+
+    private void openFile() throws IOException {
+        Path path = fileNames.apply(fileCount++);
+        fileOutput = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(path)));
+        // Only write the header: the blocks are written by the workers
+        DataFileWriter<T> headerWriter = newWriter();
+        headerWriter.create(schema, fileOutput, sync);
+        headerWriter.flush();
+        files.add(path);
+        recordsInFile = 0;
+    }
+
+    private void closeFile() throws IOException {
+        fileOutput.close();
+        fileOutput = null;
+    }
+
+    /**
+     * Write all remaining records, and close the current file.
+     *
+     * @throws IOException when writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (batch != null && !batch.isEmpty()) {
+            submitBatch();
+        }
+        while (!pendingBatches.isEmpty()) {
+            write(pendingBatches.remove());
+        }
+        if (fileOutput != null) {
+            closeFile();
+        }
+    }
+
+    private record EncodedBatch(byte[] bytes, int offset, int length, int recordCount) {
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+}
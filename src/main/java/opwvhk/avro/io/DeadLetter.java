@@ -0,0 +1,69 @@
+package opwvhk.avro.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * <p>A record that failed conversion, as captured by the tolerant streaming parse methods. Parsing continues with the next record.</p>
+ *
+ * <p>The location of the record is given as byte offsets in the input, so the record can be found (and fixed) easily.</p>
+ *
+ * @param startOffset the offset of the start of the raw record in the input (inclusive)
+ * @param endOffset   the offset of the end of the raw record in the input (exclusive)
+ * @param rawText     the raw text of the record
+ * @param reason      the reason the record failed
+ * @param message     a description of the failure
+ */
+public record DeadLetter(long startOffset, long endOffset, String rawText, Reason reason, String message) {
+    /**
+     * Create a dead letter for a part of a file. Surrounding whitespace is excluded from the record.
+     *
+     * @param channel     the file containing the record
+     * @param startOffset the offset of the start of the record (inclusive)
+     * @param endOffset   the offset of the end of the record (exclusive)
+     * @param charset     the character set of the file
+     * @param reason      the reason the record failed
+     * @param message     a description of the failure
+     * @return a dead letter for the record
+     * @throws IOException when the file cannot be read
+     */
+    public static DeadLetter read(FileChannel channel, long startOffset, long endOffset, Charset charset, Reason reason, String message)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(endOffset - startOffset));
+        //noinspection StatementWithEmptyBody
+        while (buffer.hasRemaining() && channel.read(buffer, startOffset + buffer.position()) >= 0) {
+            // Keep reading until the buffer is full (or the end of the file is reached)
+        }
+        byte[] bytes = buffer.array();
+        int start = 0;
+        int end = buffer.position();
+        while (start < end && isWhitespace(bytes[start])) {
+            start++;
+        }
+        while (end > start && isWhitespace(bytes[end - 1])) {
+            end--;
+        }
+        String rawText = new String(bytes, start, end - start, charset);
+        return new DeadLetter(startOffset + start, startOffset + end, rawText, reason, message);
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+    }
+
+    /**
+     * Reasons for records to fail conversion.
+     */
+    public enum Reason {
+        /**
+         * The record is well-formed, but has a value that cannot be converted (like an unknown enum symbol, or a malformed timestamp).
+         */
+        INVALID_VALUE,
+        /**
+         * The record is not well-formed (a syntax error). Parsing continues after the record (JSON: on the next line).
+         */
+        MALFORMED_INPUT
+    }
+}
@@ -24,6 +24,15 @@ public class DelegatingResolver extends ValueResolver {
         this.delegate = delegate;
     }
 
+    /**
+     * Return the delegate of this resolver.
+     *
+     * @return the delegate, or {@code null} if it has not been set yet
+     */
+    ValueResolver getDelegate() {
+        return delegate;
+    }
+
     @Override
     public void doNotParseContent() {
         delegate.doNotParseContent();
@@ -39,6 +48,16 @@ public class DelegatingResolver extends ValueResolver {
         return delegate.createCollector();
     }
 
+    @Override
+    public Object createCollector(Object reuse) {
+        return delegate.createCollector(reuse);
+    }
+
+    @Override
+    public Object previousValue(Object collector, String name) {
+        return delegate.previousValue(collector, name);
+    }
+
     @Override
     public Object addProperty(Object collector, String name, Object value) {
         return delegate.addProperty(collector, name, value);
@@ -49,6 +68,11 @@ public class DelegatingResolver extends ValueResolver {
         return delegate.addContent(collector, content);
     }
 
+    @Override
+    public boolean isComplete(Object collector) {
+        return delegate.isComplete(collector);
+    }
+
     @Override
     public Object complete(Object collector) {
         return delegate.complete(collector);
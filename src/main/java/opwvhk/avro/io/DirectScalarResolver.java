@@ -0,0 +1,56 @@
+package opwvhk.avro.io;
+
+import java.util.function.Function;
+
+import org.apache.avro.util.Utf8;
+
+/**
+ * <p>A resolver for scalar values that calls its conversion directly: the result of compiling one of the standard scalar resolvers.</p>
+ *
+ * <p>A {@link ScalarValueResolver} calls its converter via a function: with many resolvers, that call site sees many lambda classes, which prevents
+ * inlining. Here, each conversion is a direct (static) call. Records also convert these fields in their {@link FieldDispatch}, without calling the
+ * resolver.</p>
+ *
+ * @see ResolverCompiler
+ */
+final class DirectScalarResolver extends ScalarValueResolver {
+    private final Conversion conversion;
+
+    DirectScalarResolver(Conversion conversion) {
+        super(conversion);
+        this.conversion = conversion;
+    }
+
+    Conversion conversion() {
+        return conversion;
+    }
+
+    @Override
+    public Object addContent(Object collector, String content) {
+        return content == null ? null : convert(conversion, content);
+    }
+
+    private static Object convert(Conversion conversion, String text) {
+        return switch (conversion) {
+            case BOOLEAN -> Boolean.valueOf(text);
+            case INT -> Integer.decode(text);
+            case LONG -> Long.decode(text);
+            case FLOAT -> Float.valueOf(text);
+            case DOUBLE -> Double.valueOf(text);
+            case STRING -> text;
+            case UTF8 -> new Utf8(text);
+        };
+    }
+
+    /**
+     * The conversions of the standard scalar resolvers.
+     */
+    enum Conversion implements Function<String, Object> {
+        BOOLEAN, INT, LONG, FLOAT, DOUBLE, STRING, UTF8;
+
+        @Override
+        public Object apply(String text) {
+            return convert(this, text);
+        }
+    }
+}
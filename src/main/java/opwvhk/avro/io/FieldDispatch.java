@@ -0,0 +1,211 @@
+package opwvhk.avro.io;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.util.Utf8;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+
+import static org.objectweb.asm.Opcodes.*;
+
+/**
+ * <p>Dispatch for the scalar fields of a record: finds a field by property name, and converts and sets its value, without calling any resolver.</p>
+ *
+ * <p>Instances are generated by the {@link ResolverCompiler}, as a (hidden) class per record schema. The lookup is a switch on the hash code of the
+ * property name, and each field has its own conversion call. Unlike a tree of resolvers, there are no calls on shared, polymorphic objects: parsers calling
+ * the dispatch see one class per record schema.</p>
+ *
+ * @see RecordResolver#fieldDispatch()
+ */
+public abstract class FieldDispatch {
+    private static final String INTERNAL_NAME = Type.getInternalName(FieldDispatch.class);
+    private static final String STRING = Type.getInternalName(String.class);
+    private static final String INDEXED_RECORD = Type.getInternalName(IndexedRecord.class);
+    private static final String UTF8 = Type.getInternalName(Utf8.class);
+
+    FieldDispatch() {
+    }
+
+    /**
+     * Find the scalar field for a property.
+     *
+     * @param name the property name
+     * @return the field for the property, for {@link #setScalar(Object, int, String)}, or {@code -1} if the property is not a scalar field
+     */
+    public abstract int scalarField(String name);
+
+    /**
+     * Convert a value and set it in a scalar field.
+     *
+     * @param collector the collector of the record resolver
+     * @param field     the field, as returned by {@link #scalarField(String)}
+     * @param content   the value to convert, or {@code null} to set {@code null}
+     */
+    public abstract void setScalar(Object collector, int field, String content);
+
+    /**
+     * Generate a dispatch for the scalar fields of a record.
+     *
+     * @param recordSchema the record schema
+     * @param fields       the scalar fields, by property name (properties can share a field)
+     * @return the dispatch for the fields
+     */
+    static FieldDispatch generate(Schema recordSchema, List<ScalarField> fields) {
+        byte[] classBytes = generateClass(INTERNAL_NAME + "$" + recordSchema.getName(), fields);
+        try {
+            Class<?> dispatchClass = MethodHandles.lookup().defineHiddenClass(classBytes, true).lookupClass();
+            return (FieldDispatch) dispatchClass.getConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot define the field dispatch for " + recordSchema.getFullName(), e);
+        }
+    }
+
+    private static byte[] generateClass(String className, List<ScalarField> fields) {
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS);
+        classWriter.visit(V17, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, className, null, INTERNAL_NAME, null);
+
+        MethodVisitor constructor = classWriter.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(ALOAD, 0);
+        constructor.visitMethodInsn(INVOKESPECIAL, INTERNAL_NAME, "<init>", "()V", false);
+        constructor.visitInsn(RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        generateScalarField(classWriter.visitMethod(ACC_PUBLIC, "scalarField", "(Ljava/lang/String;)I", null, null), fields);
+        generateSetScalar(classWriter.visitMethod(ACC_PUBLIC, "setScalar", "(Ljava/lang/Object;ILjava/lang/String;)V", null, null), fields);
+
+        classWriter.visitEnd();
+        return classWriter.toByteArray();
+    }
+
+    private static void generateScalarField(MethodVisitor method, List<ScalarField> fields) {
+        // Like the compiler does for a switch on strings: switch on the hash code, then compare the names with that hash code
+        Map<Integer, List<Integer>> fieldsByHash = new TreeMap<>();
+        for (int i = 0; i < fields.size(); i++) {
+            fieldsByHash.computeIfAbsent(fields.get(i).name().hashCode(), hash -> new ArrayList<>()).add(i);
+        }
+        int[] hashes = fieldsByHash.keySet().stream().mapToInt(Integer::intValue).toArray();
+        Label[] hashLabels = new Label[hashes.length];
+        for (int i = 0; i < hashLabels.length; i++) {
+            hashLabels[i] = new Label();
+        }
+        Label notFound = new Label();
+
+        method.visitCode();
+        method.visitVarInsn(ALOAD, 1);
+        method.visitMethodInsn(INVOKEVIRTUAL, STRING, "hashCode", "()I", false);
+        method.visitLookupSwitchInsn(notFound, hashes, hashLabels);
+        int hashIndex = 0;
+        for (List<Integer> candidates : fieldsByHash.values()) {
+            method.visitLabel(hashLabels[hashIndex++]);
+            for (int field : candidates) {
+                Label next = new Label();
+                method.visitVarInsn(ALOAD, 1);
+                method.visitLdcInsn(fields.get(field).name());
+                method.visitMethodInsn(INVOKEVIRTUAL, STRING, "equals", "(Ljava/lang/Object;)Z", false);
+                method.visitJumpInsn(IFEQ, next);
+                pushInt(method, field);
+                method.visitInsn(IRETURN);
+                method.visitLabel(next);
+            }
+            method.visitJumpInsn(GOTO, notFound);
+        }
+        method.visitLabel(notFound);
+        method.visitInsn(ICONST_M1);
+        method.visitInsn(IRETURN);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+    }
+
+    private static void generateSetScalar(MethodVisitor method, List<ScalarField> fields) {
+        Label[] fieldLabels = new Label[fields.size()];
+        for (int i = 0; i < fieldLabels.length; i++) {
+            fieldLabels[i] = new Label();
+        }
+        Label unknownField = new Label();
+
+        method.visitCode();
+        method.visitVarInsn(ILOAD, 2);
+        method.visitTableSwitchInsn(0, fields.size() - 1, unknownField, fieldLabels);
+        for (int i = 0; i < fieldLabels.length; i++) {
+            ScalarField field = fields.get(i);
+            Label nullContent = new Label();
+            Label put = new Label();
+            method.visitLabel(fieldLabels[i]);
+            method.visitVarInsn(ALOAD, 1);
+            method.visitTypeInsn(CHECKCAST, INDEXED_RECORD);
+            pushInt(method, field.position());
+            method.visitVarInsn(ALOAD, 3);
+            method.visitJumpInsn(IFNULL, nullContent);
+            generateConversion(method, field.conversion());
+            method.visitJumpInsn(GOTO, put);
+            method.visitLabel(nullContent);
+            method.visitInsn(ACONST_NULL);
+            method.visitLabel(put);
+            method.visitMethodInsn(INVOKEINTERFACE, INDEXED_RECORD, "put", "(ILjava/lang/Object;)V", true);
+            method.visitInsn(RETURN);
+        }
+        method.visitLabel(unknownField);
+        method.visitTypeInsn(NEW, "java/lang/IllegalArgumentException");
+        method.visitInsn(DUP);
+        method.visitLdcInsn("Not a scalar field");
+        method.visitMethodInsn(INVOKESPECIAL, "java/lang/IllegalArgumentException", "<init>", "(Ljava/lang/String;)V", false);
+        method.visitInsn(ATHROW);
+        method.visitMaxs(0, 0);
+        method.visitEnd();
+    }
+
+    /**
+     * Generate the conversion of the content (local variable 3), leaving the result on the stack. Must match {@link DirectScalarResolver}.
+     */
+    private static void generateConversion(MethodVisitor method, DirectScalarResolver.Conversion conversion) {
+        switch (conversion) {
+            case BOOLEAN -> generateStaticConversion(method, "java/lang/Boolean", "valueOf", "(Ljava/lang/String;)Ljava/lang/Boolean;");
+            case INT -> generateStaticConversion(method, "java/lang/Integer", "decode", "(Ljava/lang/String;)Ljava/lang/Integer;");
+            case LONG -> generateStaticConversion(method, "java/lang/Long", "decode", "(Ljava/lang/String;)Ljava/lang/Long;");
+            case FLOAT -> generateStaticConversion(method, "java/lang/Float", "valueOf", "(Ljava/lang/String;)Ljava/lang/Float;");
+            case DOUBLE -> generateStaticConversion(method, "java/lang/Double", "valueOf", "(Ljava/lang/String;)Ljava/lang/Double;");
+            case STRING -> method.visitVarInsn(ALOAD, 3);
+            case UTF8 -> {
+                method.visitTypeInsn(NEW, UTF8);
+                method.visitInsn(DUP);
+                method.visitVarInsn(ALOAD, 3);
+                method.visitMethodInsn(INVOKESPECIAL, UTF8, "<init>", "(Ljava/lang/String;)V", false);
+            }
+        }
+    }
+
+    private static void generateStaticConversion(MethodVisitor method, String owner, String name, String descriptor) {
+        method.visitVarInsn(ALOAD, 3);
+        method.visitMethodInsn(INVOKESTATIC, owner, name, descriptor, false);
+    }
+
+    private static void pushInt(MethodVisitor method, int value) {
+        if (value <= 5) {
+            method.visitInsn(ICONST_0 + value);
+        } else if (value <= Short.MAX_VALUE) {
+            method.visitIntInsn(value <= Byte.MAX_VALUE ? BIPUSH : SIPUSH, value);
+        } else {
+            method.visitLdcInsn(value);
+        }
+    }
+
+    /**
+     * A scalar field to dispatch to.
+     *
+     * @param name       the property name
+     * @param position   the position of the field in the record
+     * @param conversion the conversion for the field value
+     */
+    record ScalarField(String name, int position, DirectScalarResolver.Conversion conversion) {
+    }
+}
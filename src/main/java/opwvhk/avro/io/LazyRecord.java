@@ -0,0 +1,96 @@
+package opwvhk.avro.io;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+
+/**
+ * <p>A generic record that converts scalar field values on first access.</p>
+ *
+ * <p>While parsing, scalar fields retain the parsed text; the conversion to the field type happens when the field is read. Consumers that only inspect a few
+ * fields (like routing keys or timestamps) thus never pay the conversion cost for the other fields. Note that conversion errors also surface when reading a
+ * field, instead of when parsing.</p>
+ *
+ * <p>Like other generic records, instances are not thread-safe.</p>
+ *
+ * @see AsAvroParserBase#LAZY_PROP
+ */
+public class LazyRecord extends GenericData.Record {
+    /**
+     * Create a lazy record.
+     *
+     * @param schema the record schema
+     */
+    public LazyRecord(Schema schema) {
+        super(schema);
+    }
+
+    @Override
+    public Object get(int i) {
+        Object value = super.get(i);
+        if (value instanceof DeferredValue deferred) {
+            value = deferred.convert();
+            super.put(i, value);
+        }
+        return value;
+    }
+
+    @Override
+    public Object get(String key) {
+        Schema.Field field = getSchema().getField(key);
+        return field == null ? null : get(field.pos());
+    }
+
+    /**
+     * Tell whether the value of a field has been converted (or did not need a conversion).
+     *
+     * @param i the position of the field
+     * @return {@code true} if reading the field does not need a conversion, {@code false} otherwise
+     */
+    public boolean isConverted(int i) {
+        return !(super.get(i) instanceof DeferredValue);
+    }
+
+    /**
+     * Return the value of a field, without converting it.
+     */
+    Object getUnconverted(int i) {
+        return super.get(i);
+    }
+
+    /**
+     * A scalar value that has yet to be converted.
+     *
+     * @param resolver the resolver for the value
+     * @param text     the text to convert
+     */
+    record DeferredValue(ValueResolver resolver, String text) {
+        private Object convert() {
+            return resolver.complete(resolver.addContent(resolver.createCollector(), text));
+        }
+    }
+
+    /**
+     * A resolver for scalar values that defers the conversion of its delegate until the value is read from a {@link LazyRecord}.
+     */
+    static class DeferringResolver extends ValueResolver {
+        private final ScalarValueResolver delegate;
+
+        DeferringResolver(ScalarValueResolver delegate) {
+            this.delegate = delegate;
+        }
+
+        ScalarValueResolver getDelegate() {
+            return delegate;
+        }
+
+        @Override
+        public Object addContent(Object collector, String content) {
+            return content == null ? null : new DeferredValue(delegate, content);
+        }
+
+        @Override
+        public boolean parseContent() {
+            return delegate.parseContent();
+        }
+    }
+}
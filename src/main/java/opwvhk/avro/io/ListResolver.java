@@ -1,21 +1,66 @@
 package opwvhk.avro.io;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.UnaryOperator;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericArray;
+import org.apache.avro.generic.GenericData;
 
 /**
  * A resolver for list values.
  */
 public class ListResolver extends ValueResolver {
-	private final ValueResolver resolver;
+	private ValueResolver resolver;
+	private final GenericData model;
+	private final Schema arraySchema;
 
 	/**
-	 * Create a list resolver using the resolver for items.
+	 * Create a list resolver using the resolver for items. The resolver yields {@link ArrayList} instances.
 	 *
 	 * @param resolver the resolver to use for list items
 	 */
 	public ListResolver(ValueResolver resolver) {
+		this(null, null, resolver);
+	}
+
+	/**
+	 * Create a list resolver using the resolver for items. The resolver yields arrays created by the model, which allows reusing them (and their items).
+	 *
+	 * @param model       the model to create arrays with
+	 * @param arraySchema the array schema
+	 * @param resolver    the resolver to use for list items
+	 */
+	public ListResolver(GenericData model, Schema arraySchema, ValueResolver resolver) {
 		this.resolver = resolver;
+		this.model = model;
+		this.arraySchema = arraySchema;
+	}
+
+	/**
+	 * Return the resolver for list items.
+	 *
+	 * @return the resolver for list items
+	 */
+	ValueResolver getItemResolver() {
+		return resolver;
+	}
+
+	/**
+	 * Create a list resolver like this one, but with a different resolver for list items.
+	 *
+	 * @param itemResolver the resolver to use for list items
+	 * @return a new list resolver
+	 */
+	ListResolver withItemResolver(ValueResolver itemResolver) {
+		return new ListResolver(model, arraySchema, itemResolver);
+	}
+
+	@Override
+	void replaceChildren(UnaryOperator<ValueResolver> replacer) {
+		resolver = replacer.apply(resolver);
 	}
 
 	@Override
@@ -31,12 +76,32 @@ public class ListResolver extends ValueResolver {
 
 	@Override
 	public Object createCollector() {
+		return createCollector(null);
+	}
+
+	@Override
+	public Object createCollector(Object reuse) {
+		if (model != null) {
+			// Resets the array if it can be reused, and otherwise creates a new one.
+			return model.newArray(reuse, 0, arraySchema);
+		} else if (reuse instanceof Collection<?> collection) {
+			collection.clear();
+			return reuse;
+		}
 		return new ArrayList<>();
 	}
 
+	@Override
+	public Object previousValue(Object collector, String name) {
+		// After a reset, generic arrays still hold their previous items (until they're overwritten).
+		return collector instanceof GenericArray<?> array ? array.peek() : null;
+	}
+
 	@Override
 	public Object addProperty(Object collector, String name, Object value) {
-		((List<Object>)collector).add(value);
+		@SuppressWarnings("unchecked")
+		List<Object> list = (List<Object>) collector;
+		list.add(value);
 		return collector;
 	}
 }
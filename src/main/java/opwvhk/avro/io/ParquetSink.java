@@ -0,0 +1,236 @@
+package opwvhk.avro.io;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.avro.AvroParquetWriter;
+import org.apache.parquet.hadoop.ParquetFileWriter;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.io.OutputFile;
+import org.apache.parquet.io.PositionOutputStream;
+
+import static java.util.Objects.requireNonNull;
+import static opwvhk.avro.util.Utils.require;
+
+/**
+ * <p>Record consumer that writes records into a (local) Parquet file, so parsed data goes straight into columnar storage.</p>
+ *
+ * <p>Parquet buffers a whole row group in memory before writing it, so the row group size is the memory budget of the sink. The file is written via a
+ * buffered stream of fixed size; Hadoop file systems are not used.</p>
+ *
+ * <p>Configure the sink before accepting the first record. The sink is not thread-safe: to write a parallel stream, use
+ * {@code stream.forEachOrdered(sink)}.</p>
+ *
+ * <p>The dependencies for Parquet are optional: to use this sink, add {@code org.apache.parquet:parquet-avro} (1.12.3 or later), and the Hadoop client
+ * ({@code org.apache.hadoop:hadoop-client-api} and {@code org.apache.hadoop:hadoop-client-runtime}, 3.3.6 or later) to your project.</p>
+ *
+ * @param <T> the record type
+ */
+public final class ParquetSink<T> implements RecordSink<T> {
+    private final Schema schema;
+    private final GenericData model;
+    private final Path file;
+    private CompressionCodecName compression = CompressionCodecName.SNAPPY;
+    private long memoryBudget = ParquetWriter.DEFAULT_BLOCK_SIZE;
+    private int pageSize = ParquetWriter.DEFAULT_PAGE_SIZE;
+    private int dictionaryPageSize = ParquetWriter.DEFAULT_PAGE_SIZE;
+    private boolean dictionaryEncoding = ParquetWriter.DEFAULT_IS_DICTIONARY_ENABLED;
+    private int outputBufferSize = 64 * 1024;
+
+    private ParquetWriter<T> writer;
+
+    /**
+     * Create a sink that writes to a Parquet file. Existing files are overwritten.
+     *
+     * @param schema the schema of the records to write
+     * @param model  the model of the records
+     * @param file   the file to write
+     */
+    public ParquetSink(Schema schema, GenericData model, Path file) {
+        this.schema = requireNonNull(schema);
+        this.model = requireNonNull(model);
+        this.file = requireNonNull(file);
+    }
+
+    /**
+     * Use the given compression codec (the default is Snappy).
+     *
+     * @param compression the codec to compress pages with
+     * @return this {@code ParquetSink}
+     */
+    public ParquetSink<T> withCompression(CompressionCodecName compression) {
+        requireNotStarted();
+        this.compression = requireNonNull(compression);
+        return this;
+    }
+
+    /**
+     * Set the memory budget, which is the (approximate) row group size in bytes (the default is 128MiB). Smaller row groups use less memory, but compress
+     * less well and make scans slower.
+     *
+     * @param memoryBudget the maximum size of a row group, which is buffered in memory
+     * @return this {@code ParquetSink}
+     */
+    public ParquetSink<T> withMemoryBudget(long memoryBudget) {
+        requireNotStarted();
+        this.memoryBudget = require(memoryBudget, b -> b > 0, "The memory budget must be positive");
+        return this;
+    }
+
+    /**
+     * Set the page size in bytes (the default is 1MiB).
+     *
+     * @param pageSize the (approximate) size of pages
+     * @return this {@code ParquetSink}
+     */
+    public ParquetSink<T> withPageSize(int pageSize) {
+        requireNotStarted();
+        this.pageSize = require(pageSize, s -> s > 0, "The page size must be positive");
+        return this;
+    }
+
+    /**
+     * Configure dictionary encoding (the default is enabled, with a maximum dictionary page size of 1MiB).
+     *
+     * @param enabled            whether to use dictionary encoding (columns fall back to plain encoding when their dictionary is full)
+     * @param dictionaryPageSize the maximum size of a dictionary page
+     * @return this {@code ParquetSink}
+     */
+    public ParquetSink<T> withDictionaryEncoding(boolean enabled, int dictionaryPageSize) {
+        requireNotStarted();
+        this.dictionaryEncoding = enabled;
+        this.dictionaryPageSize = require(dictionaryPageSize, s -> s > 0, "The dictionary page size must be positive");
+        return this;
+    }
+
+    /**
+     * Set the size of the output buffer (the default is 64KiB).
+     *
+     * @param outputBufferSize the size of the buffer used to write to the file
+     * @return this {@code ParquetSink}
+     */
+    public ParquetSink<T> withOutputBufferSize(int outputBufferSize) {
+        requireNotStarted();
+        this.outputBufferSize = require(outputBufferSize, s -> s > 0, "The output buffer size must be positive");
+        return this;
+    }
+
+    private void requireNotStarted() {
+        if (writer != null) {
+            throw new IllegalStateException("The sink has already accepted records");
+        }
+    }
+
+    private void start() throws IOException {
+        writer = AvroParquetWriter.<T>builder(new LocalOutputFile(file, outputBufferSize))
+                // Don't load Hadoop configuration files: this sink is configured explicitly
+                .withConf(new Configuration(false))
+                .withWriteMode(ParquetFileWriter.Mode.OVERWRITE)
+                .withSchema(schema)
+                .withDataModel(model)
+                .withCompressionCodec(compression)
+                .withRowGroupSize(memoryBudget)
+                .withPageSize(pageSize)
+                .withDictionaryEncoding(dictionaryEncoding)
+                .withDictionaryPageSize(dictionaryPageSize)
+                .build();
+    }
+
+    @Override
+    public void accept(T record) {
+        try {
+            if (writer == null) {
+                start();
+            }
+            writer.write(record);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Write the last row group and the file footer, and close the file. If no records were accepted, this writes a file without rows.
+     *
+     * @throws IOException when writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        if (writer == null) {
+            start();
+        }
+        writer.close();
+    }
+
+    /**
+     * Parquet output file for the local file system, using a buffer of fixed size.
+     */
+    private record LocalOutputFile(Path path, int bufferSize) implements OutputFile {
+        @Override
+        public PositionOutputStream create(long blockSizeHint) throws IOException {
+            return open(StandardOpenOption.CREATE_NEW);
+        }
+
+        @Override
+        public PositionOutputStream createOrOverwrite(long blockSizeHint) throws IOException {
+            return open(StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+        }
+
+        private PositionOutputStream open(StandardOpenOption... options) throws IOException {
+            OutputStream output = new BufferedOutputStream(Files.newOutputStream(path, options), bufferSize);
+            return new PositionOutputStream() {
+                private long position;
+
+                @Override
+                public long getPos() {
+                    return position;
+                }
+
+                @Override
+                public void write(int b) throws IOException {
+                    output.write(b);
+                    position++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    output.write(b, off, len);
+                    position += len;
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    output.flush();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    output.close();
+                }
+            };
+        }
+
+        @Override
+        public boolean supportsBlockSize() {
+            return false;
+        }
+
+        @Override
+        public long defaultBlockSize() {
+            return 0;
+        }
+
+        @Override
+        public String getPath() {
+            return path.toString();
+        }
+    }
+}
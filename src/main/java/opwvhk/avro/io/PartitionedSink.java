@@ -0,0 +1,386 @@
+package opwvhk.avro.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.io.DatumReader;
+import org.apache.avro.io.DatumWriter;
+
+import static java.util.Objects.requireNonNull;
+import static opwvhk.avro.util.Utils.require;
+
+/**
+ * <p>Record sink that routes records into Hive-style partitions, based on the value of a (nested) field. For example, records with a field
+ * {@code event.timestamp} bucketed by day are written to files like {@code root/day=2023-06-01/part-00000.avro}.</p>
+ *
+ * <p>The sink keeps a bounded number of writers open, closing the least recently used writer when it needs to open another. Small partitions don't get a
+ * writer: their records are buffered in memory, and spilled to a temporary file when there are too many. These records are written when the sink is closed,
+ * so each small partition yields a single file. As a result, one pass over the input produces a query-friendly layout.</p>
+ *
+ * <p>Configure the sink before accepting the first record. The sink is not thread-safe: to write a parallel stream, use
+ * {@code stream.forEachOrdered(sink)}.</p>
+ *
+ * @param <T> the record type
+ */
+public final class PartitionedSink<T extends IndexedRecord> implements RecordSink<T> {
+    /**
+     * The partition value Hive uses for {@code null}.
+     */
+    private static final String NULL_PARTITION = "__HIVE_DEFAULT_PARTITION__";
+
+    private final Schema schema;
+    private final GenericData model;
+    private final Path root;
+    private final String[] fieldPath;
+    private final SinkFactory<T> sinkFactory;
+    private String partitionName;
+    private Function<Object, String> partitioner = String::valueOf;
+    private String fileExtension = ".avro";
+    private int maxOpenWriters = 16;
+    private int smallPartitionSize = 1000;
+    private int maxBufferedRecords = 100_000;
+
+    private boolean started;
+    private int fileCount;
+    private final LinkedHashMap<String, RecordSink<T>> openWriters;
+    private final Map<String, List<T>> buffers;
+    private int bufferedRecordCount;
+    private final List<Path> spillFiles;
+    private final Map<String, List<SpilledSegment>> spilledSegments;
+
+    /**
+     * Create a partitioned sink. By default, the partition values are the field values as string, and the partition name is the last field in the path.
+     *
+     * @param schema      the schema of the records to write
+     * @param model       the model of the records
+     * @param root        the root directory of the partitions
+     * @param fieldPath   the path of the field to partition by, as a dot separated list of field names, like {@code event.timestamp}
+     * @param sinkFactory a factory for the sinks that write to files in the partitions, like {@code file -> new ParquetSink<>(schema, model, file)}
+     */
+    public PartitionedSink(Schema schema, GenericData model, Path root, String fieldPath, SinkFactory<T> sinkFactory) {
+        this.schema = requireNonNull(schema);
+        this.model = requireNonNull(model);
+        this.root = requireNonNull(root);
+        this.fieldPath = require(fieldPath, p -> p.matches("[^.]+(\\.[^.]+)*"), "The field path must be a dot separated list of field names").split("\\.");
+        this.sinkFactory = requireNonNull(sinkFactory);
+        partitionName = this.fieldPath[this.fieldPath.length - 1];
+        // Access order, so the first entry is the least recently used writer
+        openWriters = new LinkedHashMap<>(16, 0.75f, true);
+        buffers = new HashMap<>();
+        spillFiles = new ArrayList<>();
+        spilledSegments = new HashMap<>();
+    }
+
+    /**
+     * Partition by the given function of the field value, using the given partition name (as in {@code name=value}).
+     *
+     * @param partitionName the name of the partition column
+     * @param partitioner   a function to determine the partition value from the field value (the field value can be {@code null})
+     * @return this {@code PartitionedSink}
+     * @see #dayOf(ZoneId)
+     */
+    public PartitionedSink<T> withPartitioner(String partitionName, Function<Object, String> partitioner) {
+        requireNotStarted();
+        this.partitionName = requireNonNull(partitionName);
+        this.partitioner = requireNonNull(partitioner);
+        return this;
+    }
+
+    /**
+     * Use the given file extension for the partition files (the default is {@code .avro}).
+     *
+     * @param fileExtension the file extension, including the dot
+     * @return this {@code PartitionedSink}
+     */
+    public PartitionedSink<T> withFileExtension(String fileExtension) {
+        requireNotStarted();
+        this.fileExtension = requireNonNull(fileExtension);
+        return this;
+    }
+
+    /**
+     * Set the maximum number of open writers (the default is 16).
+     *
+     * @param maxOpenWriters the maximum number of writers to keep open
+     * @return this {@code PartitionedSink}
+     */
+    public PartitionedSink<T> withMaxOpenWriters(int maxOpenWriters) {
+        requireNotStarted();
+        this.maxOpenWriters = require(maxOpenWriters, m -> m > 0, "The maximum number of open writers must be positive");
+        return this;
+    }
+
+    /**
+     * Configure buffering of small partitions. Partitions get a writer once they have a number of records buffered (the default is 1,000), and buffers are
+     * spilled to disk when they hold too many records in total (the default is 100,000).
+     *
+     * @param smallPartitionSize the number of buffered records at which a partition gets a writer
+     * @param maxBufferedRecords the maximum number of records to buffer in memory
+     * @return this {@code PartitionedSink}
+     */
+    public PartitionedSink<T> withBuffering(int smallPartitionSize, int maxBufferedRecords) {
+        requireNotStarted();
+        this.smallPartitionSize = require(smallPartitionSize, s -> s > 0, "The small partition size must be positive");
+        this.maxBufferedRecords = require(maxBufferedRecords, m -> m >= smallPartitionSize, "The buffer must be able to hold a small partition");
+        return this;
+    }
+
+    private void requireNotStarted() {
+        if (started) {
+            throw new IllegalStateException("The sink has already accepted records");
+        }
+    }
+
+    /**
+     * Create a partitioner that buckets dates and timestamps by day. Instants are bucketed using the given time zone.
+     *
+     * @param zone the time zone for instants
+     * @return a partitioner that yields days as {@code yyyy-MM-dd}
+     */
+    public static Function<Object, String> dayOf(ZoneId zone) {
+        return value -> {
+            LocalDate day;
+            if (value instanceof Instant instant) {
+                day = LocalDate.ofInstant(instant, zone);
+            } else if (value instanceof LocalDate date) {
+                day = date;
+            } else if (value instanceof LocalDateTime dateTime) {
+                day = dateTime.toLocalDate();
+            } else if (value instanceof OffsetDateTime dateTime) {
+                day = dateTime.toLocalDate();
+            } else if (value instanceof ZonedDateTime dateTime) {
+                day = dateTime.toLocalDate();
+            } else {
+                return value == null ? null : value.toString();
+            }
+            return day.toString();
+        };
+    }
+
+    @Override
+    public void accept(T record) {
+        started = true;
+        String partition = partitionOf(record);
+        try {
+            RecordSink<T> writer = openWriters.get(partition);
+            if (writer != null) {
+                writer.accept(record);
+                return;
+            }
+            List<T> buffer = buffers.computeIfAbsent(partition, p -> new ArrayList<>());
+            buffer.add(record);
+            bufferedRecordCount++;
+            if (buffer.size() >= smallPartitionSize) {
+                // Not a small partition (anymore)
+                writer = openWriter(partition);
+                for (SpilledSegment segment : spilledSegments.getOrDefault(partition, List.of())) {
+                    segment.copyTo(writer, newDatumReader());
+                }
+                spilledSegments.remove(partition);
+                buffer.forEach(writer);
+                buffers.remove(partition);
+                bufferedRecordCount -= buffer.size();
+            } else if (bufferedRecordCount >= maxBufferedRecords) {
+                spill();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private String partitionOf(IndexedRecord record) {
+        Object value = record;
+        for (String fieldName : fieldPath) {
+            if (!(value instanceof IndexedRecord parent)) {
+                value = null;
+                break;
+            }
+            Schema.Field field = parent.getSchema().getField(fieldName);
+            if (field == null) {
+                throw new IllegalArgumentException("Records have no field " + String.join(".", fieldPath));
+            }
+            value = model.getField(parent, field.name(), field.pos());
+        }
+        String partitionValue = partitioner.apply(value);
+        return partitionName + "=" + (partitionValue == null ? NULL_PARTITION : escapePartitionValue(partitionValue));
+    }
+
+    /**
+     * Escape a partition value as Hive does: characters that are unsafe in paths are written as {@code %XX}.
+     */
+    private static String escapePartitionValue(String value) {
+        StringBuilder result = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < ' ' || c == 0x7f || "\"#%'*/:=?\\{[]^".indexOf(c) >= 0) {
+                result.append('%').append("%02X".formatted((int) c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    private RecordSink<T> openWriter(String partition) throws IOException {
+        if (openWriters.size() >= maxOpenWriters) {
+            // Close the least recently used writer
+            Map.Entry<String, RecordSink<T>> eldest = openWriters.entrySet().iterator().next();
+            openWriters.remove(eldest.getKey());
+            eldest.getValue().close();
+        }
+        RecordSink<T> writer = newWriter(partition);
+        openWriters.put(partition, writer);
+        return writer;
+    }
+
+    private RecordSink<T> newWriter(String partition) throws IOException {
+        Path directory = root.resolve(partition);
+        Files.createDirectories(directory);
+        return sinkFactory.create(directory.resolve("part-%05d%s".formatted(fileCount++, fileExtension)));
+    }
+
+    /**
+     * Write all buffered records into a new spill file, grouped by partition.
+     */
+    private void spill() throws IOException {
+        Path spillFile = Files.createTempFile("partitions", ".avro");
+        spillFiles.add(spillFile);
+        try (DataFileWriter<T> writer = new DataFileWriter<>(newDatumWriter())) {
+            writer.create(schema, spillFile.toFile());
+            for (Map.Entry<String, List<T>> entry : new TreeMap<>(buffers).entrySet()) {
+                List<T> records = entry.getValue();
+                // The position after a sync marker is a position we can seek to
+                long position = writer.sync();
+                for (T record : records) {
+                    writer.append(record);
+                }
+                spilledSegments.computeIfAbsent(entry.getKey(), p -> new ArrayList<>()).add(new SpilledSegment(spillFile, position, records.size()));
+            }
+        }
+        buffers.clear();
+        bufferedRecordCount = 0;
+    }
+
+    /**
+     * Close all writers, and write the small partitions.
+     *
+     * <p>A failure to close a writer or write a partition does not stop the others: all writers are closed, and all partitions are written (if possible).
+     * The first failure is thrown afterwards, with any others as suppressed exceptions.</p>
+     *
+     * @throws IOException when writing fails
+     */
+    @Override
+    public void close() throws IOException {
+        Exception failure = null;
+        try {
+            for (RecordSink<T> writer : openWriters.values()) {
+                try {
+                    writer.close();
+                } catch (IOException | RuntimeException e) {
+                    failure = addFailure(failure, e);
+                }
+            }
+            openWriters.clear();
+
+            List<String> smallPartitions = new ArrayList<>(spilledSegments.keySet());
+            buffers.keySet().stream().filter(p -> !spilledSegments.containsKey(p)).forEach(smallPartitions::add);
+            smallPartitions.sort(Comparator.naturalOrder());
+            for (String partition : smallPartitions) {
+                try (RecordSink<T> writer = newWriter(partition)) {
+                    for (SpilledSegment segment : spilledSegments.getOrDefault(partition, List.of())) {
+                        segment.copyTo(writer, newDatumReader());
+                    }
+                    buffers.getOrDefault(partition, List.of()).forEach(writer);
+                } catch (IOException | RuntimeException e) {
+                    failure = addFailure(failure, e);
+                }
+            }
+            buffers.clear();
+            spilledSegments.clear();
+        } finally {
+            for (Path spillFile : spillFiles) {
+                Files.deleteIfExists(spillFile);
+            }
+            spillFiles.clear();
+        }
+        if (failure instanceof IOException ioException) {
+            throw ioException;
+        } else if (failure != null) {
+            throw (RuntimeException) failure;
+        }
+    }
+
+    private static Exception addFailure(Exception failure, Exception e) {
+        if (failure == null) {
+            return e;
+        }
+        failure.addSuppressed(e);
+        return failure;
+    }
+
+    @SuppressWarnings("unchecked")
+    private DatumWriter<T> newDatumWriter() {
+        return (DatumWriter<T>) model.createDatumWriter(schema);
+    }
+
+    @SuppressWarnings("unchecked")
+    private DatumReader<T> newDatumReader() {
+        return (DatumReader<T>) model.createDatumReader(schema);
+    }
+
+    /**
+     * The records of a partition in a spill file.
+     *
+     * @param file        the spill file
+     * @param position    the position of the first block with records of the partition
+     * @param recordCount the number of records
+     */
+    private record SpilledSegment(Path file, long position, int recordCount) {
+        <T> void copyTo(RecordSink<T> writer, DatumReader<T> datumReader) throws IOException {
+            try (DataFileReader<T> reader = new DataFileReader<>(file.toFile(), datumReader)) {
+                reader.seek(position);
+                for (int i = 0; i < recordCount; i++) {
+                    writer.accept(reader.next());
+                }
+            }
+        }
+    }
+
+    /**
+     * Factory for the sinks that write partition files.
+     *
+     * @param <T> the record type
+     */
+    @FunctionalInterface
+    public interface SinkFactory<T> {
+        /**
+         * Create a sink that writes to the given file.
+         *
+         * @param file the file to write
+         * @return a record sink
+         * @throws IOException when the sink cannot be created
+         */
+        RecordSink<T> create(Path file) throws IOException;
+    }
+}
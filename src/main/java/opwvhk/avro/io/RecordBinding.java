@@ -0,0 +1,275 @@
+package opwvhk.avro.io;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.List;
+
+import org.apache.avro.AvroRuntimeException;
+import org.apache.avro.LogicalType;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.reflect.AvroIgnore;
+import org.apache.avro.reflect.AvroName;
+import org.apache.avro.reflect.ReflectData;
+import org.apache.avro.specific.SpecificData;
+
+/**
+ * <p>Binding of a record schema to the Java class that {@link SpecificData} or {@link ReflectData} use for it.</p>
+ *
+ * <p>Such classes have typed fields, so a {@link RecordResolver} cannot mark unset fields in them. Instead, it writes field values directly into the
+ * result using the binding, and tracks which fields are set separately. The binding is created once per record schema: generated classes are filled with
+ * {@link IndexedRecord#put(int, Object)} directly, and plain Java classes via method handles for their fields.</p>
+ */
+abstract class RecordBinding {
+    private final Class<?> recordClass;
+    private final MethodHandle constructor;
+    private final Object[] absentValues;
+
+    /**
+     * Create a binding for a record schema, if the model uses a Java class for it.
+     *
+     * @param model        the model to create records with
+     * @param recordSchema the record schema
+     * @return a binding for the record schema, or {@code null} if the model uses {@link GenericData.Record} instances for it
+     */
+    static RecordBinding of(GenericData model, Schema recordSchema) {
+        if (!(model instanceof SpecificData specificData)) {
+            return null;
+        }
+        Class<?> recordClass = specificData.getClass(recordSchema);
+        if (recordClass == null || GenericData.Record.class.isAssignableFrom(recordClass)) {
+            return null;
+        }
+        if (IndexedRecord.class.isAssignableFrom(recordClass)) {
+            return new Indexed(recordClass, constructor(model, recordSchema, recordClass, MethodHandles.publicLookup()), absentValues(model, recordSchema));
+        }
+        if (model instanceof ReflectData) {
+            try {
+                MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(recordClass, MethodHandles.lookup());
+                return new Reflect(recordClass, constructor(model, recordSchema, recordClass, lookup), recordSchema, lookup);
+            } catch (IllegalAccessException e) {
+                // Not accessible via method handles (like final fields, or a closed module): use the (slower) model.
+            }
+        }
+        return new Model(recordClass, constructor(model, recordSchema, recordClass, MethodHandles.publicLookup()), model, recordSchema);
+    }
+
+    /**
+     * Determine the values to write for absent fields, based on the schema: classes use primitive Java types for non-nullable primitive Avro types (unless
+     * there is a conversion for their logical type).
+     */
+    private static Object[] absentValues(GenericData model, Schema recordSchema) {
+        List<Schema.Field> fields = recordSchema.getFields();
+        Object[] absentValues = new Object[fields.size()];
+        for (Schema.Field field : fields) {
+            Schema schema = field.schema();
+            LogicalType logicalType = schema.getLogicalType();
+            if (logicalType == null || model.getConversionFor(logicalType) == null) {
+                absentValues[field.pos()] = switch (schema.getType()) {
+                    case BOOLEAN -> false;
+                    case INT -> 0;
+                    case LONG -> 0L;
+                    case FLOAT -> 0f;
+                    case DOUBLE -> 0d;
+                    default -> null;
+                };
+            }
+        }
+        return absentValues;
+    }
+
+    private static MethodHandle constructor(GenericData model, Schema recordSchema, Class<?> recordClass, MethodHandles.Lookup lookup) {
+        try {
+            return lookup.findConstructor(recordClass, MethodType.methodType(void.class)).asType(MethodType.methodType(Object.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            // Let the model figure it out (for example, for classes that take the schema as constructor argument)
+            try {
+                MethodHandle newRecord = MethodHandles.publicLookup().findVirtual(GenericData.class, "newRecord",
+                        MethodType.methodType(Object.class, Object.class, Schema.class));
+                return MethodHandles.insertArguments(newRecord, 0, model, null, recordSchema);
+            } catch (NoSuchMethodException | IllegalAccessException impossible) {
+                throw new IllegalStateException("GenericData#newRecord(Object, Schema) is public", impossible);
+            }
+        }
+    }
+
+    private RecordBinding(Class<?> recordClass, MethodHandle constructor, Object[] absentValues) {
+        this.recordClass = recordClass;
+        this.constructor = constructor;
+        this.absentValues = absentValues;
+    }
+
+    /**
+     * Determine if a previous parse result can be reused.
+     *
+     * @param record a previous parse result (may be {@code null})
+     * @return {@code true} if the record is an instance of the bound class
+     */
+    boolean isInstance(Object record) {
+        return recordClass.isInstance(record);
+    }
+
+    /**
+     * Create a new instance of the bound class.
+     *
+     * @return a new, empty record
+     */
+    Object newInstance() {
+        try {
+            return constructor.invokeExact();
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new AvroRuntimeException("Cannot create a " + recordClass.getName(), e);
+        }
+    }
+
+    /**
+     * Read a field of a record.
+     *
+     * @param record   a record of the bound class
+     * @param position the position of the field in the record schema
+     * @return the field value
+     */
+    abstract Object get(Object record, int position);
+
+    /**
+     * Write a field of a record. Writing {@code null} to a field of a primitive Java type writes its Java default (zero or {@code false}) instead: this
+     * clears the field, like for other types.
+     *
+     * @param record   a record of the bound class
+     * @param position the position of the field in the record schema
+     * @param value    the field value
+     */
+    final void put(Object record, int position, Object value) {
+        set(record, position, value != null ? value : absentValues[position]);
+    }
+
+    /**
+     * Write a field of a record, without substituting {@code null} values.
+     *
+     * @param record   a record of the bound class
+     * @param position the position of the field in the record schema
+     * @param value    the field value
+     */
+    abstract void set(Object record, int position, Object value);
+
+    /**
+     * Binding for generated classes (and other indexed records): fields are accessed by position.
+     */
+    private static final class Indexed extends RecordBinding {
+        private Indexed(Class<?> recordClass, MethodHandle constructor, Object[] absentValues) {
+            super(recordClass, constructor, absentValues);
+        }
+
+        @Override
+        Object get(Object record, int position) {
+            return ((IndexedRecord) record).get(position);
+        }
+
+        @Override
+        void set(Object record, int position, Object value) {
+            ((IndexedRecord) record).put(position, value);
+        }
+    }
+
+    /**
+     * Binding for plain Java classes: fields are accessed with method handles, bound once per field.
+     */
+    private static final class Reflect extends RecordBinding {
+        private final MethodHandle[] getters;
+        private final MethodHandle[] setters;
+
+        private Reflect(Class<?> recordClass, MethodHandle constructor, Schema recordSchema, MethodHandles.Lookup lookup) throws IllegalAccessException {
+            this(recordClass, constructor, recordSchema.getFields(), new Object[recordSchema.getFields().size()], lookup);
+        }
+
+        private Reflect(Class<?> recordClass, MethodHandle constructor, List<Schema.Field> fields, Object[] absentValues, MethodHandles.Lookup lookup)
+                throws IllegalAccessException {
+            super(recordClass, constructor, absentValues);
+            getters = new MethodHandle[fields.size()];
+            setters = new MethodHandle[fields.size()];
+            for (Schema.Field field : fields) {
+                Field javaField = findField(recordClass, field.name());
+                if (javaField == null) {
+                    throw new IllegalAccessException("No field for " + field.name() + " in " + recordClass.getName());
+                }
+                getters[field.pos()] = lookup.unreflectGetter(javaField).asType(MethodType.methodType(Object.class, Object.class));
+                setters[field.pos()] = lookup.unreflectSetter(javaField).asType(MethodType.methodType(void.class, Object.class, Object.class));
+                if (javaField.getType().isPrimitive()) {
+                    // The Java default: the value of a new array element
+                    absentValues[field.pos()] = Array.get(Array.newInstance(javaField.getType(), 1), 0);
+                }
+            }
+        }
+
+        /**
+         * Find a field the way {@link ReflectData} does: by name or {@link AvroName} annotation, skipping static, transient and ignored fields.
+         */
+        private static Field findField(Class<?> recordClass, String name) {
+            for (Class<?> c = recordClass; c != null && c != Object.class; c = c.getSuperclass()) {
+                for (Field field : c.getDeclaredFields()) {
+                    if ((field.getModifiers() & (Modifier.STATIC | Modifier.TRANSIENT)) != 0 || field.isAnnotationPresent(AvroIgnore.class)) {
+                        continue;
+                    }
+                    AvroName avroName = field.getAnnotation(AvroName.class);
+                    if (name.equals(avroName != null ? avroName.value() : field.getName())) {
+                        return field;
+                    }
+                }
+            }
+            return null;
+        }
+
+        @Override
+        Object get(Object record, int position) {
+            try {
+                return getters[position].invokeExact(record);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new AvroRuntimeException(e);
+            }
+        }
+
+        @Override
+        void set(Object record, int position, Object value) {
+            try {
+                setters[position].invokeExact(record, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new AvroRuntimeException(e);
+            }
+        }
+    }
+
+    /**
+     * Fallback binding: fields are accessed via the model.
+     */
+    private static final class Model extends RecordBinding {
+        private final GenericData model;
+        private final List<Schema.Field> fields;
+
+        private Model(Class<?> recordClass, MethodHandle constructor, GenericData model, Schema recordSchema) {
+            super(recordClass, constructor, absentValues(model, recordSchema));
+            this.model = model;
+            fields = recordSchema.getFields();
+        }
+
+        @Override
+        Object get(Object record, int position) {
+            return model.getField(record, fields.get(position).name(), position);
+        }
+
+        @Override
+        void set(Object record, int position, Object value) {
+            model.setField(record, fields.get(position).name(), position, value);
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package opwvhk.avro.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>Push-style parser for records: feed it bytes in arbitrary chunks, and receive records as soon as they are complete.</p>
+ *
+ * <p>Feeders are non-blocking: they parse all bytes they're fed, and then return. Implementations declare the exceptions they actually throw.</p>
+ */
+public interface RecordFeeder extends Closeable {
+    /**
+     * Feed a chunk of data. Parses all bytes, and passes any completed records to the consumer.
+     *
+     * <p>The bytes are parsed before this method returns: afterwards, the buffer can be reused.</p>
+     *
+     * @param buffer a buffer whose remaining bytes are the next chunk of encoded data
+     * @throws Exception when the data cannot be parsed
+     */
+    void feed(ByteBuffer buffer) throws Exception;
+
+    /**
+     * Signal the end of the input. Parses any remaining data, and fails if the last record is incomplete.
+     *
+     * @throws Exception when the data cannot be parsed, or the last record is incomplete
+     */
+    void endOfInput() throws Exception;
+
+    /**
+     * Release the resources used for parsing. Does not parse remaining data: use {@link #endOfInput()} for that.
+     *
+     * @throws IOException when the resources cannot be released
+     */
+    @Override
+    void close() throws IOException;
+}
@@ -0,0 +1,256 @@
+package opwvhk.avro.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * <p>Reactive stream stage that parses chunks of encoded data into records, with backpressure.</p>
+ *
+ * <p>The processor requests one chunk at a time from upstream, and only when all records parsed so far have been emitted and there is outstanding demand
+ * downstream. This means a slow subscriber pauses reading the input, and memory use is bounded by the records in a single chunk.</p>
+ *
+ * <p>Chunks are copied upon receipt (they may be parsed later, on another thread), so publishers may reuse their buffers after {@code onNext} returns. The
+ * processor supports a single subscriber. All signals are serialized without locking (no virtual thread pinning): parsing happens on the thread that delivers the input or the
+ * demand.</p>
+ *
+ * @param <T> the record type
+ */
+public final class RecordProcessor<T> implements Flow.Processor<ByteBuffer, T> {
+    private final RecordFeeder feeder;
+    private final Queue<T> records;
+    private final Queue<ByteBuffer> input;
+    private final AtomicLong demand;
+    private final AtomicInteger workInProgress;
+    private final AtomicBoolean subscribed;
+    private volatile Flow.Subscription upstream;
+    private volatile Flow.Subscriber<? super T> downstream;
+    private volatile boolean upstreamDone;
+    private volatile Throwable upstreamError;
+    private volatile boolean cancelled;
+    private volatile Throwable downstreamError;
+    // Only accessed while draining
+    private boolean inputRequested;
+    private boolean inputEnded;
+    private boolean done;
+
+    /**
+     * Create a record processor.
+     *
+     * @param feederFactory a factory to create the feeder that parses the input
+     * @throws IOException when the feeder cannot be created
+     */
+    public RecordProcessor(FeederFactory<T> feederFactory) throws IOException {
+        records = new ArrayDeque<>();
+        feeder = feederFactory.create(records::add);
+        input = new ConcurrentLinkedQueue<>();
+        demand = new AtomicLong();
+        workInProgress = new AtomicInteger();
+        subscribed = new AtomicBoolean();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        requireNonNull(subscriber);
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(new Subscription(null));
+            subscriber.onError(new IllegalStateException("A record processor supports only one subscriber"));
+            return;
+        }
+        downstream = subscriber;
+        subscriber.onSubscribe(new Subscription(this));
+        drain();
+    }
+
+    private void request(long n) {
+        if (n <= 0) {
+            downstreamError = new IllegalArgumentException("The demand must be positive (reactive streams rule 3.9)");
+        } else {
+            demand.getAndAccumulate(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+        }
+        drain();
+    }
+
+    private void cancel() {
+        cancelled = true;
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (upstream != null) {
+            subscription.cancel();
+            return;
+        }
+        upstream = subscription;
+        drain();
+    }
+
+    @Override
+    public void onNext(ByteBuffer item) {
+        ByteBuffer copy = ByteBuffer.allocate(item.remaining());
+        copy.put(item.duplicate()).flip();
+        input.add(copy);
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        upstreamError = throwable;
+        upstreamDone = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        upstreamDone = true;
+        drain();
+    }
+
+    /**
+     * Do all work that is possible now. Only one thread at a time drains; other threads signal it to loop again.
+     */
+    private void drain() {
+        if (workInProgress.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        do {
+            if (downstream != null && upstream != null && !done) {
+                drainLoop();
+            }
+            missed = workInProgress.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void drainLoop() {
+        Flow.Subscriber<? super T> subscriber = downstream;
+        while (true) {
+            if (cancelled) {
+                terminate(null, true);
+                return;
+            }
+            if (downstreamError != null) {
+                terminate(downstreamError, true);
+                return;
+            }
+            while (!cancelled && demand.get() > 0 && !records.isEmpty()) {
+                subscriber.onNext(records.poll());
+                if (demand.get() != Long.MAX_VALUE) {
+                    demand.decrementAndGet();
+                }
+            }
+            if (cancelled) {
+                continue;
+            }
+            if (!records.isEmpty()) {
+                // Wait for demand
+                return;
+            }
+
+            ByteBuffer buffer = input.poll();
+            if (buffer != null) {
+                inputRequested = false;
+                try {
+                    feeder.feed(buffer);
+                } catch (Exception e) {
+                    terminate(e, true);
+                    return;
+                }
+                continue;
+            }
+            if (upstreamDone && !inputEnded) {
+                if (upstreamError != null) {
+                    terminate(upstreamError, false);
+                    return;
+                }
+                inputEnded = true;
+                try {
+                    feeder.endOfInput();
+                } catch (Exception e) {
+                    terminate(e, false);
+                    return;
+                }
+                continue;
+            }
+            if (inputEnded) {
+                terminate(null, false);
+                return;
+            }
+            if (!inputRequested && demand.get() > 0) {
+                inputRequested = true;
+                // May deliver input synchronously, which is picked up by the next iteration of drain()
+                upstream.request(1);
+            }
+            return;
+        }
+    }
+
+    private void terminate(Throwable failure, boolean cancelUpstream) {
+        done = true;
+        records.clear();
+        input.clear();
+        if (cancelUpstream) {
+            upstream.cancel();
+        }
+        try {
+            feeder.close();
+        } catch (IOException e) {
+            if (failure != null) {
+                failure.addSuppressed(e);
+            }
+        }
+        if (!cancelled) {
+            if (failure == null) {
+                downstream.onComplete();
+            } else {
+                downstream.onError(failure);
+            }
+        }
+    }
+
+    /**
+     * Subscription for the downstream subscriber. Without a processor, it ignores all signals (used to reject extra subscribers).
+     */
+    private record Subscription(RecordProcessor<?> processor) implements Flow.Subscription {
+        @Override
+        public void request(long n) {
+            if (processor != null) {
+                processor.request(n);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (processor != null) {
+                processor.cancel();
+            }
+        }
+    }
+
+    /**
+     * Factory to create the record feeder for a processor.
+     *
+     * @param <T> the record type
+     */
+    @FunctionalInterface
+    public interface FeederFactory<T> {
+        /**
+         * Create a record feeder.
+         *
+         * @param recordConsumer the consumer to receive the parsed records
+         * @return a new record feeder
+         * @throws IOException when the feeder cannot be created
+         */
+        RecordFeeder create(Consumer<T> recordConsumer) throws IOException;
+    }
+}
@@ -1,27 +1,44 @@
 package opwvhk.avro.io;
 
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.UnaryOperator;
 
 import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericArray;
 import org.apache.avro.generic.GenericData;
 
+import static opwvhk.avro.util.AvroSchemaUtils.nonNullableSchemaOf;
+
 /**
- * Create a record resolver for Avro records.
+ * <p>Create a record resolver for Avro records.</p>
+ *
+ * <p>If the record schema has the property {@value AsAvroParserBase#LAZY_PROP} set to {@code true}, the resolver yields {@link LazyRecord} instances, which
+ * convert scalar fields on first access.</p>
+ *
+ * <p>If the model uses Java classes for the record schema (like {@link org.apache.avro.specific.SpecificData} and
+ * {@link org.apache.avro.reflect.ReflectData} do), field values are written directly into an instance of that class, using setters that are bound once
+ * per schema. As such classes cannot hold markers for unset fields, a bit set tracks which fields have been set. Like their builders do, mutable default
+ * values are copied for each record.</p>
  */
 public class RecordResolver
         extends ValueResolver {
-    private static final Object NOT_SET = new Object();
+    static final Object NOT_SET = new Object();
 
-    private final GenericData model;
-    private final Schema recordSchema;
-    private final Map<String, ValueResolver> resolversByName;
-    private final Map<String, Schema.Field> fieldsByName;
-    private final Set<String> arrayFields;
+    final GenericData model;
+    final Schema recordSchema;
+    final Map<String, ValueResolver> resolversByName;
+    final Map<String, Schema.Field> fieldsByName;
+    final Set<String> arrayFields;
+    private final boolean[] reusableFields;
+    private final boolean lazy;
+    final RecordBinding binding;
+    private final boolean[] mappedFields;
+    private final boolean[] repeatedFields;
+    private final boolean[] mutableFields;
 
     /**
      * Create a records resolver for the given model and schema.
@@ -35,6 +52,25 @@ public class RecordResolver
         resolversByName = new HashMap<>();
         fieldsByName = new HashMap<>();
         arrayFields = new HashSet<>();
+        reusableFields = new boolean[recordSchema.getFields().size()];
+        mappedFields = new boolean[reusableFields.length];
+        repeatedFields = new boolean[reusableFields.length];
+        mutableFields = new boolean[reusableFields.length];
+        lazy = Boolean.TRUE.equals(recordSchema.getObjectProp(AsAvroParserBase.LAZY_PROP));
+        binding = lazy ? null : RecordBinding.of(model, recordSchema);
+        for (Schema.Field field : recordSchema.getFields()) {
+            Schema.Type type = nonNullableSchemaOf(field.schema()).getType();
+            reusableFields[field.pos()] = type == Schema.Type.RECORD || type == Schema.Type.ARRAY;
+            mutableFields[field.pos()] = isMutable(field.schema());
+        }
+    }
+
+    private static boolean isMutable(Schema schema) {
+        return switch (schema.getType()) {
+            case RECORD, ARRAY, MAP, BYTES, FIXED -> true;
+            case UNION -> schema.getTypes().stream().anyMatch(RecordResolver::isMutable);
+            default -> false;
+        };
     }
 
     /**
@@ -45,8 +81,10 @@ public class RecordResolver
      * @param resolver the resolver for the array items
      */
     public void addArrayResolver(String name, Schema.Field field, ValueResolver resolver) {
-        addResolver(name, field, resolver);
+        // Array items are never deferred: lazy records only defer the conversion of scalar field values
+        putResolver(name, field, resolver);
         arrayFields.add(name);
+        repeatedFields[field.pos()] = true;
     }
 
     /**
@@ -57,35 +95,137 @@ public class RecordResolver
      * @param resolver the resolver for the field value
      */
     public void addResolver(String name, Schema.Field field, ValueResolver resolver) {
+        if (lazy && resolver instanceof ScalarValueResolver scalarResolver) {
+            resolver = new LazyRecord.DeferringResolver(scalarResolver);
+        }
+        putResolver(name, field, resolver);
+    }
+
+    private void putResolver(String name, Schema.Field field, ValueResolver resolver) {
         resolversByName.put(name, resolver);
         fieldsByName.put(name, field);
+        mappedFields[field.pos()] = true;
+    }
+
+    @Override
+    void replaceChildren(UnaryOperator<ValueResolver> replacer) {
+        resolversByName.replaceAll((name, resolver) -> replacer.apply(resolver));
+    }
+
+    /**
+     * Return the dispatch for the scalar fields of records, if any. Parsers can use it instead of resolving scalar properties: it converts and sets the
+     * field values directly.
+     *
+     * @return the dispatch for scalar fields, or {@code null} if all properties must be resolved
+     * @see ResolverCompiler
+     */
+    public FieldDispatch fieldDispatch() {
+        return null;
     }
 
     @Override
     public ValueResolver resolve(String name) {
-        return resolversByName.computeIfAbsent(name,
-                super::resolve);
+        // Do not cache unknown names: resolvers must be safe to share between threads
+        ValueResolver resolver = resolversByName.get(name);
+        return resolver != null ? resolver : super.resolve(name);
     }
 
     @Override
     public Object createCollector() {
-        Object newRecord = model.newRecord(null, recordSchema);
+        return createCollector(null);
+    }
+
+    @Override
+    public Object createCollector(Object reuse) {
+        if (binding != null) {
+            return binding.isInstance(reuse) ? new BoundRecord(reuse, true, reusableFields.length) :
+                    new BoundRecord(binding.newInstance(), false, reusableFields.length);
+        }
+        Object record;
+        boolean reused;
+        if (lazy) {
+            record = reuse instanceof LazyRecord lazyRecord && lazyRecord.getSchema() == recordSchema ? reuse : new LazyRecord(recordSchema);
+            reused = record == reuse;
+        } else {
+            record = model.newRecord(reuse, recordSchema);
+            reused = record == reuse;
+        }
         for (Schema.Field field : recordSchema.getFields()) {
-            model.setField(newRecord, field.name(), field.pos(), NOT_SET);
+            Object previous = null;
+            if (reused && reusableFields[field.pos()]) {
+                previous = reusableValue(field, model.getField(record, field.name(), field.pos()));
+            }
+            model.setField(record, field.name(), field.pos(), previous == null ? NOT_SET : new Reusable(previous));
+        }
+
+        return record;
+    }
+
+    private Object reusableValue(Schema.Field field, Object previous) {
+        if (previous != null && field.hasDefaultValue() && previous == model.getDefaultValue(field)) {
+            // Default values are shared: never modify them
+            return null;
+        }
+        return previous;
+    }
+
+    private Object reusableValue(BoundRecord record, Schema.Field field) {
+        return record.reused && reusableFields[field.pos()] ? reusableValue(field, binding.get(record.target, field.pos())) : null;
+    }
+
+    @Override
+    public Object previousValue(Object record, String name) {
+        Schema.Field field = fieldsByName.get(name);
+        if (field == null) {
+            return null;
+        }
+        if (binding != null) {
+            return previousValue((BoundRecord) record, field, arrayFields.contains(name));
+        }
+        Object value = model.getField(record, field.name(), field.pos());
+        if (arrayFields.contains(name)) {
+            // The property is an array item: reuse the previous item at the current position (if any).
+            if (value instanceof Reusable reusable) {
+                value = newArray(field, reusable.value);
+                model.setField(record, field.name(), field.pos(), value);
+            }
+            return value instanceof GenericArray<?> array ? array.peek() : null;
+        }
+        return value instanceof Reusable reusable ? reusable.value : null;
+    }
+
+    Object previousValue(BoundRecord record, Schema.Field field, boolean repeated) {
+        int position = field.pos();
+        if (repeated) {
+            // The property is an array item: reuse the previous item at the current position (if any).
+            if (!record.isSet(position)) {
+                Object previous = reusableValue(record, field);
+                if (previous == null) {
+                    return null;
+                }
+                binding.put(record.target, position, newArray(field, previous));
+                record.markSet(position);
+            }
+            return binding.get(record.target, position) instanceof GenericArray<?> array ? array.peek() : null;
         }
+        return record.isSet(position) ? null : reusableValue(record, field);
+    }
 
-        return newRecord;
+    Object newArray(Schema.Field field, Object reuse) {
+        return model.newArray(reuse, 0, nonNullableSchemaOf(field.schema()));
     }
 
     @Override
     public Object addProperty(Object record, String name, Object value) {
         Schema.Field field = fieldsByName.get(name);
         // If null, the field is unknown and should be ignored.
-        if (field != null) {
+        if (field != null && binding != null) {
+            addProperty((BoundRecord) record, field, arrayFields.contains(name), value);
+        } else if (field != null) {
             if (arrayFields.contains(name)) {
                 Object maybeList = model.getField(record, field.name(), field.pos());
-                if (maybeList == NOT_SET) {
-                    maybeList = new ArrayList<>();
+                if (maybeList == NOT_SET || maybeList instanceof Reusable) {
+                    maybeList = newArray(field, maybeList instanceof Reusable reusable ? reusable.value : null);
                     model.setField(record, field.name(), field.pos(), maybeList);
                 }
                 Collection<Object> list = (Collection<Object>) maybeList;
@@ -97,6 +237,26 @@ public class RecordResolver
         return record;
     }
 
+    @SuppressWarnings("unchecked")
+    Object addProperty(BoundRecord record, Schema.Field field, boolean repeated, Object value) {
+        int position = field.pos();
+        if (repeated) {
+            Object list;
+            if (record.isSet(position)) {
+                list = binding.get(record.target, position);
+            } else {
+                list = newArray(field, reusableValue(record, field));
+                binding.put(record.target, position, list);
+                record.markSet(position);
+            }
+            ((Collection<Object>) list).add(value);
+        } else {
+            binding.put(record.target, position, value);
+            record.markSet(position);
+        }
+        return record;
+    }
+
     @Override
     public Object addContent(Object record, String content) {
         ValueResolver valueResolver = resolve("value");
@@ -104,15 +264,90 @@ public class RecordResolver
         return addProperty(record, "value", value);
     }
 
+    /**
+     * {@inheritDoc}
+     *
+     * <p>A record is complete once all fields that can be parsed have been set. Fields that are filled with repeated properties (added with
+     * {@link #addArrayResolver(String, Schema.Field, ValueResolver)}) can always receive more values: records with such fields are never complete before
+     * the end.</p>
+     */
+    @Override
+    public boolean isComplete(Object record) {
+        for (Schema.Field field : recordSchema.getFields()) {
+            if (mappedFields[field.pos()]) {
+                if (repeatedFields[field.pos()]) {
+                    return false;
+                }
+                if (binding != null ? !((BoundRecord) record).isSet(field.pos()) : isUnset(getUnconvertedField(record, field))) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static boolean isUnset(Object value) {
+        return value == NOT_SET || value instanceof Reusable;
+    }
+
+    Object getUnconvertedField(Object record, Schema.Field field) {
+        // Don't convert lazy values: that's the point of lazy records
+        return lazy ? ((LazyRecord) record).getUnconverted(field.pos()) : model.getField(record, field.name(), field.pos());
+    }
+
     @Override
     public Object complete(Object collector) {
+        if (binding != null) {
+            BoundRecord record = (BoundRecord) collector;
+            for (Schema.Field field : recordSchema.getFields()) {
+                if (!record.isSet(field.pos())) {
+                    binding.put(record.target, field.pos(), field.hasDefaultValue() ? copyOfDefaultValue(field) : null);
+                }
+            }
+            return record.target;
+        }
         // Fill in default values for fields that have not been set.
         for (Schema.Field field : recordSchema.getFields()) {
-            if (model.getField(collector, field.name(), field.pos()) == NOT_SET) {
-                Object value = field.hasDefaultValue() ? model.getDefaultValue(field) : null; // Don't leak internal object; using the object will fail anyway
-                model.setField(collector, field.name(), field.pos(), value);
+            if (isUnset(getUnconvertedField(collector, field))) {
+                Object defaultValue = field.hasDefaultValue() ? model.getDefaultValue(field) : null; // Don't leak internal object; using the object will fail anyway
+                model.setField(collector, field.name(), field.pos(), defaultValue);
             }
         }
         return collector;
     }
+
+    private Object copyOfDefaultValue(Schema.Field field) {
+        // Like the builders of generated classes: records must not share mutable defaults (changing one would change them all)
+        Object defaultValue = model.getDefaultValue(field);
+        return mutableFields[field.pos()] ? model.deepCopy(field.schema(), defaultValue) : defaultValue;
+    }
+
+    /**
+     * Collector for a record that uses a Java class: the record being filled, and which of its fields have been set.
+     */
+    static final class BoundRecord {
+        private final Object target;
+        private final boolean reused;
+        private final long[] setFields;
+
+        BoundRecord(Object target, boolean reused, int fieldCount) {
+            this.target = target;
+            this.reused = reused;
+            setFields = new long[(fieldCount + 63) >>> 6];
+        }
+
+        boolean isSet(int position) {
+            return (setFields[position >>> 6] & (1L << position)) != 0;
+        }
+
+        void markSet(int position) {
+            setFields[position >>> 6] |= 1L << position;
+        }
+    }
+
+    /**
+     * Marks a field value from a previous parse result: it is not set (yet), but can be reused when parsing the field.
+     */
+    record Reusable(Object value) {
+    }
 }
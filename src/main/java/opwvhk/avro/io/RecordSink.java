@@ -0,0 +1,15 @@
+package opwvhk.avro.io;
+
+import java.io.Closeable;
+import java.util.function.Consumer;
+
+/**
+ * <p>Destination for parsed records, like a file. Closing the sink writes any remaining records.</p>
+ *
+ * <p>As a record consumer, a sink can be used directly with the streaming parse methods. Failures to write records are thrown as
+ * {@link java.io.UncheckedIOException UncheckedIOException}.</p>
+ *
+ * @param <T> the record type
+ */
+public interface RecordSink<T> extends Consumer<T>, Closeable {
+}
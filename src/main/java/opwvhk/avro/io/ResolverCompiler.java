@@ -0,0 +1,92 @@
+package opwvhk.avro.io;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * <p>Compiler for resolver trees: specializes a resolver tree for parsing.</p>
+ *
+ * <p>Resolvers are built as a graph of small, generic objects. When parsing, the calls between them are hard to optimize: they see many different classes,
+ * and take several lookups per property. Compiling a resolver tree yields an equivalent tree, in which:</p>
+ *
+ * <ul>
+ *     <li>there are no {@link DelegatingResolver DelegatingResolvers} (used to build recursive trees): the result is linked</li>
+ *     <li>record resolvers find everything about a property with a single lookup, and access fields by position if possible</li>
+ *     <li>the standard scalar resolvers call their conversion directly</li>
+ * </ul>
+ *
+ * <p>Resolvers the compiler does not know (like custom subclasses) are used as-is: they are the fallback.</p>
+ */
+public final class ResolverCompiler {
+    private final Map<ValueResolver, ValueResolver> compiled;
+
+    private ResolverCompiler() {
+        compiled = new IdentityHashMap<>();
+    }
+
+    /**
+     * Compile a resolver tree.
+     *
+     * @param resolver the root of the resolver tree
+     * @return the root of the compiled resolver tree
+     */
+    public static ValueResolver compile(ValueResolver resolver) {
+        return ResolverLinker.link(new ResolverCompiler().compileResolver(resolver));
+    }
+
+    private ValueResolver compileResolver(ValueResolver resolver) {
+        ValueResolver result = compiled.get(resolver);
+        if (result != null) {
+            return result;
+        }
+        if (resolver instanceof DelegatingResolver delegatingResolver) {
+            // A recursive reference to a resolver that is being compiled yields its placeholder (below).
+            result = compileResolver(delegatingResolver.getDelegate());
+        } else if (resolver instanceof RecordResolver || resolver instanceof ListResolver) {
+            // Compiling a composite resolver can recurse: use a placeholder until it's done.
+            DelegatingResolver placeholder = new DelegatingResolver();
+            compiled.put(resolver, placeholder);
+            if (resolver instanceof RecordResolver recordResolver) {
+                result = new CompiledRecordResolver(recordResolver, this::compileResolver);
+            } else {
+                ListResolver listResolver = (ListResolver) resolver;
+                result = listResolver.withItemResolver(compileResolver(listResolver.getItemResolver()));
+            }
+            if (!resolver.parseContent()) {
+                result.doNotParseContent();
+            }
+            placeholder.setDelegate(result);
+        } else {
+            result = compileScalar(resolver);
+        }
+        compiled.put(resolver, result);
+        return result;
+    }
+
+    private static ValueResolver compileScalar(ValueResolver resolver) {
+        DirectScalarResolver.Conversion conversion;
+        if (resolver == AsAvroParserBase.BOOLEAN_RESOLVER) {
+            conversion = DirectScalarResolver.Conversion.BOOLEAN;
+        } else if (resolver == AsAvroParserBase.INTEGER_RESOLVER) {
+            conversion = DirectScalarResolver.Conversion.INT;
+        } else if (resolver == AsAvroParserBase.LONG_RESOLVER) {
+            conversion = DirectScalarResolver.Conversion.LONG;
+        } else if (resolver == AsAvroParserBase.FLOAT_RESOLVER) {
+            conversion = DirectScalarResolver.Conversion.FLOAT;
+        } else if (resolver == AsAvroParserBase.DOUBLE_RESOLVER) {
+            conversion = DirectScalarResolver.Conversion.DOUBLE;
+        } else if (resolver == AsAvroParserBase.STRING_RESOLVER) {
+            conversion = DirectScalarResolver.Conversion.STRING;
+        } else if (resolver == AsAvroParserBase.UTF8_RESOLVER) {
+            conversion = DirectScalarResolver.Conversion.UTF8;
+        } else {
+            // Unknown resolver: use it as-is
+            return resolver;
+        }
+        ValueResolver result = new DirectScalarResolver(conversion);
+        if (!resolver.parseContent()) {
+            result.doNotParseContent();
+        }
+        return result;
+    }
+}
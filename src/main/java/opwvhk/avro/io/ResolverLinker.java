@@ -0,0 +1,52 @@
+package opwvhk.avro.io;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+/**
+ * <p>Linker for resolver trees: removes the indirection of {@link DelegatingResolver DelegatingResolvers} after construction.</p>
+ *
+ * <p>While building a resolver tree, delegating resolvers stand in for resolvers that are still being built: they're needed to build recursive trees. Once
+ * built, each delegating resolver can be replaced by its delegate. The result is a graph that may contain cycles (for recursive schemas), but parsers don't
+ * mind: they only follow the path of the parsed data.</p>
+ */
+final class ResolverLinker {
+    private ResolverLinker() {
+        // Utility class: no need to instantiate.
+    }
+
+    /**
+     * Link a resolver tree: replace all delegating resolvers with their delegates.
+     *
+     * @param resolver the root of the resolver tree
+     * @return the root of the linked resolver tree (the delegate if the root was a delegating resolver)
+     */
+    static ValueResolver link(ValueResolver resolver) {
+        ValueResolver root = unwrap(resolver);
+        Set<ValueResolver> linked = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<ValueResolver> toLink = new ArrayDeque<>();
+        toLink.push(root);
+        while (!toLink.isEmpty()) {
+            ValueResolver current = toLink.pop();
+            if (linked.add(current)) {
+                current.replaceChildren(child -> {
+                    ValueResolver unwrapped = unwrap(child);
+                    toLink.push(unwrapped);
+                    return unwrapped;
+                });
+            }
+        }
+        return root;
+    }
+
+    private static ValueResolver unwrap(ValueResolver resolver) {
+        ValueResolver result = resolver;
+        while (result instanceof DelegatingResolver delegatingResolver && delegatingResolver.hasDelegate()) {
+            result = delegatingResolver.getDelegate();
+        }
+        return result;
+    }
+}
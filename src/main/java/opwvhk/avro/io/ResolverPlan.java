@@ -0,0 +1,241 @@
+package opwvhk.avro.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import opwvhk.avro.util.Utils;
+
+/**
+ * <p>A resolver plan: a description of a resolver tree, that can be stored to recreate the resolvers without analysing the write schema again.</p>
+ *
+ * <p>The plan holds the decisions that analysing the write schema yields: which properties map to which fields (and if they repeat), and how binary data is
+ * encoded. It does not hold read schemas: these are implied. The first node is for the (non-nullable) read schema, and each other node is for the
+ * (non-nullable) schema of a record field, array items, or (for repeated properties) the items of a record field. Scalar values are converted as the
+ * read schema requires: apart from binary data, the resolve rules choose scalar conversions by read type only, so the write type adds nothing.</p>
+ *
+ * <p>Plans are stored with a fingerprint of the inputs that created them. Reading a plan with a different fingerprint yields nothing: the plan is stale.
+ * Neither does reading a plan that is truncated or corrupt: such plans are simply created again.</p>
+ */
+final class ResolverPlan {
+    /**
+     * Magic number of plan files: {@code "ARP"} and the format version.
+     */
+    private static final int MAGIC = 0x41525001;
+    private static final byte RECORD = 0;
+    private static final byte LIST = 1;
+    private static final byte SCALAR = 2;
+
+    private final List<Node> nodes;
+
+    /**
+     * Create a plan.
+     *
+     * @param nodes the plan nodes; the first one is the root
+     */
+    ResolverPlan(List<Node> nodes) {
+        this.nodes = List.copyOf(nodes);
+    }
+
+    /**
+     * Return a plan node.
+     *
+     * @param index the index of the node; the root has index 0
+     * @return the plan node
+     */
+    Node node(int index) {
+        return nodes.get(index);
+    }
+
+    /**
+     * Compute the fingerprint of the inputs for a plan.
+     *
+     * @param inputs the inputs to fingerprint; their order is significant
+     * @return the fingerprint
+     */
+    static byte[] fingerprint(byte[]... inputs) {
+        MessageDigest digest = Utils.digest("SHA-256");
+        for (byte[] input : inputs) {
+            // Prefix the length, so the boundaries between inputs matter
+            int length = input.length;
+            digest.update(new byte[]{(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+            digest.update(input);
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Read a plan from a file.
+     *
+     * @param file        the file to read
+     * @param fingerprint the fingerprint of the inputs the plan must match
+     * @return the plan, or {@code null} if the file cannot be read, or does not contain a (valid) plan for the inputs
+     */
+    static ResolverPlan read(Path file, byte[] fingerprint) {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (input.readInt() != MAGIC || !Arrays.equals(input.readNBytes(fingerprint.length), fingerprint)) {
+                return null;
+            }
+            int nodeCount = input.readInt();
+            // Don't trust the counts in the file for allocations: the file may be corrupt
+            List<Node> nodes = new ArrayList<>();
+            for (int i = 0; i < nodeCount; i++) {
+                Node node = readNode(input, nodeCount);
+                if (node == null) {
+                    return null;
+                }
+                nodes.add(node);
+            }
+            return nodeCount > 0 && input.read() == -1 ? new ResolverPlan(nodes) : null;
+        } catch (IOException e) {
+            // Missing, unreadable, truncated or corrupt: the plan must be created (and written) again
+            return null;
+        }
+    }
+
+    private static Node readNode(DataInputStream input, int nodeCount) throws IOException {
+        byte kind = input.readByte();
+        boolean parseContent = input.readBoolean();
+        return switch (kind) {
+            case RECORD -> {
+                int propertyCount = input.readInt();
+                List<Property> properties = new ArrayList<>();
+                for (int i = 0; i < propertyCount; i++) {
+                    Property property = new Property(input.readUTF(), input.readUTF(), input.readBoolean(), input.readInt());
+                    if (!isNode(property.node(), nodeCount)) {
+                        yield null;
+                    }
+                    properties.add(property);
+                }
+                yield new RecordNode(parseContent, properties);
+            }
+            case LIST -> {
+                int items = input.readInt();
+                yield isNode(items, nodeCount) ? new ListNode(parseContent, items) : null;
+            }
+            case SCALAR -> new ScalarNode(parseContent, input.readBoolean() ? input.readUTF() : null);
+            default -> null;
+        };
+    }
+
+    private static boolean isNode(int index, int nodeCount) {
+        return index >= 0 && index < nodeCount;
+    }
+
+    /**
+     * Write this plan to a file. The file is replaced atomically (if supported), so concurrent readers never see a partial plan.
+     *
+     * @param file        the file to write
+     * @param fingerprint the fingerprint of the inputs of this plan
+     * @throws IOException when the file cannot be written
+     */
+    void write(Path file, byte[] fingerprint) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Path temporaryFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream outputStream = Files.newOutputStream(temporaryFile);
+                 DataOutputStream output = new DataOutputStream(new BufferedOutputStream(outputStream))) {
+                output.writeInt(MAGIC);
+                output.write(fingerprint);
+                output.writeInt(nodes.size());
+                for (Node node : nodes) {
+                    writeNode(output, node);
+                }
+            }
+            try {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporaryFile);
+        }
+    }
+
+    private static void writeNode(DataOutputStream output, Node node) throws IOException {
+        if (node instanceof RecordNode recordNode) {
+            output.writeByte(RECORD);
+            output.writeBoolean(node.parseContent());
+            output.writeInt(recordNode.properties().size());
+            for (Property property : recordNode.properties()) {
+                output.writeUTF(property.name());
+                output.writeUTF(property.fieldName());
+                output.writeBoolean(property.repeated());
+                output.writeInt(property.node());
+            }
+        } else if (node instanceof ListNode listNode) {
+            output.writeByte(LIST);
+            output.writeBoolean(node.parseContent());
+            output.writeInt(listNode.items());
+        } else {
+            ScalarNode scalarNode = (ScalarNode) node;
+            output.writeByte(SCALAR);
+            output.writeBoolean(node.parseContent());
+            output.writeBoolean(scalarNode.binaryEncoding() != null);
+            if (scalarNode.binaryEncoding() != null) {
+                output.writeUTF(scalarNode.binaryEncoding());
+            }
+        }
+    }
+
+    /**
+     * A node in a resolver plan.
+     */
+    sealed interface Node permits RecordNode, ListNode, ScalarNode {
+        /**
+         * Whether the resolver parses its content.
+         *
+         * @return {@code true} unless the resolver is marked with {@link ValueResolver#doNotParseContent()}
+         */
+        boolean parseContent();
+    }
+
+    /**
+     * Plan for a record resolver.
+     *
+     * @param parseContent whether the resolver parses its content
+     * @param properties   the properties the record resolver handles
+     */
+    record RecordNode(boolean parseContent, List<Property> properties) implements Node {
+    }
+
+    /**
+     * Plan for a record property.
+     *
+     * @param name      the property name
+     * @param fieldName the name of the record field the property is stored in
+     * @param repeated  whether the property is an item of the (array) field
+     * @param node      the index of the plan node for the property value
+     */
+    record Property(String name, String fieldName, boolean repeated, int node) {
+    }
+
+    /**
+     * Plan for a list resolver.
+     *
+     * @param parseContent whether the resolver parses its content
+     * @param items        the index of the plan node for the list items
+     */
+    record ListNode(boolean parseContent, int items) implements Node {
+    }
+
+    /**
+     * Plan for a scalar resolver.
+     *
+     * @param parseContent   whether the resolver parses its content
+     * @param binaryEncoding for binary data, the encoding of the written data; {@code null} otherwise
+     */
+    record ScalarNode(boolean parseContent, String binaryEncoding) implements Node {
+    }
+}
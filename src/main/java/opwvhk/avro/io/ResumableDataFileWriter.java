@@ -0,0 +1,202 @@
+package opwvhk.avro.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Properties;
+
+import org.apache.avro.Schema;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileWriter;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.io.DatumWriter;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * <p>Avro data file writer for long-running conversions, that records periodic checkpoints so a failed conversion can be resumed.</p>
+ *
+ * <p>A checkpoint holds the input offset directly after the last record written (a record boundary), the output position after the last block, and the
+ * record count. If the input needs more than an offset to resume reading (like the namespaces in scope for XML), the checkpoint also holds that input
+ * state. It's stored next to the output file, as {@code <output>.checkpoint}. When resuming, the output file is truncated to the checkpoint (dropping any
+ * records written after it), and the conversion continues from the input offset, appending to the output file.</p>
+ *
+ * <p>Checkpoints flush the output to disk, so they are only taken at the configured interval. This bounds the overhead, as well as the work that is lost
+ * when a conversion fails.</p>
+ *
+ * <p>Typical use is via {@link opwvhk.avro.json.JsonAsAvroParser#convertResumable(Path, ResumableDataFileWriter)} or
+ * {@link opwvhk.avro.xml.XmlAsAvroParser#convertResumable(Path, String, ResumableDataFileWriter)}. Rerunning the same call after a failure resumes the
+ * conversion.</p>
+ *
+ * @param <T> the record type
+ */
+public final class ResumableDataFileWriter<T> implements Closeable {
+    private static final String INPUT_OFFSET = "inputOffset";
+    private static final String OUTPUT_POSITION = "outputPosition";
+    private static final String RECORD_COUNT = "recordCount";
+    private static final String INPUT_STATE = "inputState";
+
+    private final Schema schema;
+    private final GenericData model;
+    private final Path output;
+    private final Path checkpointFile;
+    private final CodecFactory codec;
+    private final long checkpointIntervalNanos;
+    private DataFileWriter<T> writer;
+    private long recordCount;
+    private String inputState;
+    private long lastCheckpointNanos;
+
+    /**
+     * Create a resumable writer.
+     *
+     * @param schema             the schema of the records to write
+     * @param model              the model of the records
+     * @param output             the file to write
+     * @param codec              the codec to compress blocks with (only used for new files)
+     * @param checkpointInterval the (minimum) time between checkpoints
+     */
+    public ResumableDataFileWriter(Schema schema, GenericData model, Path output, CodecFactory codec, Duration checkpointInterval) {
+        this.schema = requireNonNull(schema);
+        this.model = requireNonNull(model);
+        this.output = requireNonNull(output);
+        checkpointFile = output.resolveSibling(output.getFileName() + ".checkpoint");
+        this.codec = requireNonNull(codec);
+        checkpointIntervalNanos = checkpointInterval.toNanos();
+    }
+
+    /**
+     * Open the output file, resuming from the last checkpoint if there is one.
+     *
+     * @return the input offset to continue the conversion from: 0 for a new conversion
+     * @throws IOException when the output file or checkpoint cannot be read or written
+     */
+    public long open() throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("The writer is already open");
+        }
+        @SuppressWarnings("unchecked")
+        DatumWriter<T> datumWriter = (DatumWriter<T>) model.createDatumWriter(schema);
+        writer = new DataFileWriter<>(datumWriter);
+        long inputOffset;
+        if (Files.exists(checkpointFile)) {
+            Properties checkpoint = new Properties();
+            try (InputStream inputStream = Files.newInputStream(checkpointFile)) {
+                checkpoint.load(inputStream);
+            }
+            inputOffset = Long.parseLong(checkpoint.getProperty(INPUT_OFFSET));
+            inputState = checkpoint.getProperty(INPUT_STATE);
+            recordCount = Long.parseLong(checkpoint.getProperty(RECORD_COUNT));
+            // Drop anything written after the checkpoint
+            try (FileChannel channel = FileChannel.open(output, StandardOpenOption.WRITE)) {
+                channel.truncate(Long.parseLong(checkpoint.getProperty(OUTPUT_POSITION)));
+            }
+            writer.appendTo(output.toFile());
+        } else {
+            inputOffset = 0;
+            inputState = null;
+            recordCount = 0;
+            writer.setCodec(codec);
+            writer.create(schema, output.toFile());
+            checkpoint(0, null);
+        }
+        lastCheckpointNanos = System.nanoTime();
+        return inputOffset;
+    }
+
+    /**
+     * Return the input state to continue the conversion with, if any. Only valid after {@link #open()}.
+     *
+     * @return the input state at the input offset returned by {@link #open()}, or {@code null} if there is none (always for a new conversion)
+     */
+    public String getInputState() {
+        return inputState;
+    }
+
+    /**
+     * Return the number of records written, including those written before resuming.
+     *
+     * @return the total number of records
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Write a record, taking a checkpoint if the checkpoint interval has passed.
+     *
+     * @param record      the record to write
+     * @param inputOffset the input offset directly after the record: a conversion resumed from this offset continues with the next record
+     * @throws IOException when the record or checkpoint cannot be written
+     */
+    public void write(T record, long inputOffset) throws IOException {
+        write(record, inputOffset, null);
+    }
+
+    /**
+     * Write a record, taking a checkpoint if the checkpoint interval has passed.
+     *
+     * @param record      the record to write
+     * @param inputOffset the input offset directly after the record: a conversion resumed from this offset continues with the next record
+     * @param inputState  the state needed (besides the offset) to resume reading the input after the record, or {@code null} if there is none
+     * @throws IOException when the record or checkpoint cannot be written
+     */
+    public void write(T record, long inputOffset, String inputState) throws IOException {
+        writer.append(record);
+        recordCount++;
+        long now = System.nanoTime();
+        if (now - lastCheckpointNanos >= checkpointIntervalNanos) {
+            checkpoint(inputOffset, inputState);
+            lastCheckpointNanos = now;
+        }
+    }
+
+    private void checkpoint(long inputOffset, String inputState) throws IOException {
+        long outputPosition = writer.sync();
+        writer.fSync();
+
+        Properties checkpoint = new Properties();
+        checkpoint.setProperty(INPUT_OFFSET, Long.toString(inputOffset));
+        checkpoint.setProperty(OUTPUT_POSITION, Long.toString(outputPosition));
+        checkpoint.setProperty(RECORD_COUNT, Long.toString(recordCount));
+        if (inputState != null) {
+            checkpoint.setProperty(INPUT_STATE, inputState);
+        }
+        Path newCheckpoint = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".new");
+        try (OutputStream outputStream = Files.newOutputStream(newCheckpoint)) {
+            checkpoint.store(outputStream, "Conversion checkpoint for " + output.getFileName());
+        }
+        Files.move(newCheckpoint, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Complete the conversion: close the output file, and remove the checkpoint.
+     *
+     * @throws IOException when the output file cannot be written
+     */
+    public void complete() throws IOException {
+        writer.close();
+        writer = null;
+        Files.deleteIfExists(checkpointFile);
+    }
+
+    /**
+     * Close the output file without completing the conversion (if not completed yet): the checkpoint remains, so the conversion can be resumed.
+     *
+     * @throws IOException when the output file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+}
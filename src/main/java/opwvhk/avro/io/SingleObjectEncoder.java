@@ -0,0 +1,144 @@
+package opwvhk.avro.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import opwvhk.avro.util.ResourcePool;
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericContainer;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.message.BinaryMessageEncoder;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * <p>Encoder for parsed records as Avro single-object encoded messages: a 2-byte marker, the 64-bit fingerprint of the schema, and the binary encoded
+ * record. This is the format for message-bus ingestion, where readers look up the schema by fingerprint.</p>
+ *
+ * <p>Encoders are cached by schema, so equal schemas share a (thread-safe) encoder. The cache is not keyed by fingerprint: that ignores logical types, and
+ * schemas that differ only in logical types need different encoders. Messages can be written into pooled output buffers, so encoding a message allocates
+ * (almost) nothing.</p>
+ *
+ * <p>This class is thread-safe.</p>
+ */
+public final class SingleObjectEncoder {
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    /**
+     * Buffers that grew larger than this are not pooled, to avoid keeping memory for rare, large messages.
+     */
+    private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+    private final GenericData model;
+    private final Map<Schema, BinaryMessageEncoder<Object>> encodersBySchema;
+    private final ResourcePool<MessageBuffer> buffers;
+
+    /**
+     * Create a single-object encoder for records created by the given model.
+     *
+     * @param model the model of the records to encode
+     */
+    public SingleObjectEncoder(GenericData model) {
+        this.model = requireNonNull(model);
+        encodersBySchema = new ConcurrentHashMap<>();
+        buffers = new ResourcePool<>(MessageBuffer::new, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    private BinaryMessageEncoder<Object> encoderFor(Schema schema) {
+        return encodersBySchema.computeIfAbsent(schema, s -> new BinaryMessageEncoder<>(model, s));
+    }
+
+    /**
+     * Encode a record as a message.
+     *
+     * @param record the record to encode
+     * @return the message
+     * @throws IOException when the record cannot be encoded
+     */
+    public byte[] encode(GenericContainer record) throws IOException {
+        MessageBuffer buffer = buffers.borrow();
+        try {
+            encoderFor(record.getSchema()).encode(record, buffer);
+            return buffer.toByteArray();
+        } finally {
+            release(buffer);
+        }
+    }
+
+    /**
+     * Encode a record as a message, writing it to the given stream.
+     *
+     * @param record the record to encode
+     * @param output the stream to write the message to
+     * @throws IOException when the record cannot be encoded or written
+     */
+    public void encode(GenericContainer record, OutputStream output) throws IOException {
+        encoderFor(record.getSchema()).encode(record, output);
+    }
+
+    /**
+     * Encode a record as a message into a pooled buffer, and pass it to the given consumer.
+     *
+     * <p>The buffer is only valid during the call to the consumer: it's reused afterwards.</p>
+     *
+     * @param record          the record to encode
+     * @param messageConsumer the consumer to receive the message
+     * @throws IOException when the record cannot be encoded
+     */
+    public void encode(GenericContainer record, Consumer<ByteBuffer> messageConsumer) throws IOException {
+        MessageBuffer buffer = buffers.borrow();
+        try {
+            encoderFor(record.getSchema()).encode(record, buffer);
+            messageConsumer.accept(buffer.asByteBuffer());
+        } finally {
+            release(buffer);
+        }
+    }
+
+    private void release(MessageBuffer buffer) {
+        if (buffer.capacity() <= MAX_POOLED_BUFFER_SIZE) {
+            buffer.reset();
+            buffers.release(buffer);
+        }
+    }
+
+    /**
+     * Create a record consumer that encodes records as messages, for use with the streaming parse methods. The messages are in pooled buffers: see
+     * {@link #encode(GenericContainer, Consumer)}.
+     *
+     * @param messageConsumer the consumer to receive the messages
+     * @param <T>             the record type
+     * @return a record consumer
+     */
+    public <T extends GenericContainer> Consumer<T> asRecordConsumer(Consumer<ByteBuffer> messageConsumer) {
+        return record -> {
+            try {
+                encode(record, messageConsumer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    /**
+     * Output buffer that exposes its content without copying.
+     */
+    private static class MessageBuffer extends ByteArrayOutputStream {
+        MessageBuffer() {
+            super(INITIAL_BUFFER_SIZE);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+
+        ByteBuffer asByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+}
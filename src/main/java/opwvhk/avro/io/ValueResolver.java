@@ -1,11 +1,15 @@
 package opwvhk.avro.io;
 
+import java.util.function.UnaryOperator;
+
 /**
  * Class to resolve records with. Assumes records are and/or consist of properties and content.
  *
  * <p>Resolver instances are intended to be stateless/immutable, and are constructed before parsing any data. This includes reusing instances in recursive
  * (and thus theoretically infinite) definitions, so the resolvers cannot cache records while resolving them. Instead, they create "collectors" to collect the
  * data in while resolving records, and complete the records into a final result to be communicated back to the caller.</p>
+ *
+ * <p>As a result, once constructed, resolvers can safely be shared between threads. Parsers depend on this for parallel parsing.</p>
  */
 public abstract class ValueResolver {
     /**
@@ -53,6 +57,37 @@ public abstract class ValueResolver {
         return null;
     }
 
+    /**
+     * Create a collector for parsing results, reusing a previous result if possible.
+     *
+     * <p>This allows parsing into existing objects, similar to {@link org.apache.avro.io.DatumReader#read(Object, org.apache.avro.io.Decoder)
+     * DatumReader.read(reuse, decoder)}. The result is cleared: any data from the previous result that is not parsed again will not be in the result.</p>
+     *
+     * <p>The default implementation ignores the previous result and calls {@link #createCollector()}.</p>
+     *
+     * @param reuse a previous parse result to reuse, or {@code null} if not available
+     * @return a collector instance (possibly {@code reuse})
+     */
+    public Object createCollector(Object reuse) {
+        return createCollector();
+    }
+
+    /**
+     * Return the previous value of a property, for the resolver of the property to reuse.
+     *
+     * <p>Is called before parsing the property value, and only works on collectors created by {@link #createCollector(Object)}. The result should be passed
+     * to the {@link #createCollector(Object)} method of the property resolver.</p>
+     *
+     * <p>The default implementation returns {@code null}.</p>
+     *
+     * @param collector the (current) value collector
+     * @param name      the property name
+     * @return a previous value to reuse, or {@code null} if there is none
+     */
+    public Object previousValue(Object collector, String name) {
+        return null;
+    }
+
     /**
      * Add a property value to the collector.
      *
@@ -80,6 +115,18 @@ public abstract class ValueResolver {
         throw new IllegalStateException("This resolver should not be called here: the type resolution has a bug");
     }
 
+    /**
+     * <p>Tell whether the collector has received all values it can use: whether parsing more properties would not change the result.</p>
+     *
+     * <p>Parsers can use this to stop reading the input early. The default implementation returns {@code false}.</p>
+     *
+     * @param collector the (current) value collector
+     * @return {@code true} if more properties would not change the result, {@code false} otherwise
+     */
+    public boolean isComplete(Object collector) {
+        return false;
+    }
+
     /**
      * Complete the record, and pass it back to the creator.
      *
@@ -92,6 +139,18 @@ public abstract class ValueResolver {
         return collector;
     }
 
+    /**
+     * Replace the resolvers this resolver uses for properties and items. Used after construction, to link the resolver tree.
+     *
+     * <p>The default implementation does nothing: it has no child resolvers.</p>
+     *
+     * @param replacer a function yielding the replacement for each child resolver
+     * @see ResolverLinker
+     */
+    void replaceChildren(UnaryOperator<ValueResolver> replacer) {
+        // Nothing to do
+    }
+
     /**
      * Whether the content for this resolver should be parsed.
      *
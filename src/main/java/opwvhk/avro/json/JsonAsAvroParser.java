@@ -1,35 +1,42 @@
 package opwvhk.avro.json;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.math.BigInteger;
 import java.net.URI;
 import java.net.URL;
 import java.nio.ByteBuffer;
-import java.util.ArrayDeque;
+import java.nio.file.Path;
 import java.util.Base64;
-import java.util.Deque;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 
-import com.fasterxml.jackson.core.JsonLocation;
-import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.core.JsonToken;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
 import net.jimblackler.jsonschemafriend.GenerationException;
 import opwvhk.avro.ResolvingFailure;
 import opwvhk.avro.io.AsAvroParserBase;
+import opwvhk.avro.io.DeadLetter;
 import opwvhk.avro.io.ListResolver;
+import opwvhk.avro.io.RecordProcessor;
 import opwvhk.avro.io.RecordResolver;
+import opwvhk.avro.io.ResolverCompiler;
+import opwvhk.avro.io.ResumableDataFileWriter;
 import opwvhk.avro.io.ScalarValueResolver;
 import opwvhk.avro.io.ValueResolver;
+import opwvhk.avro.util.ByteRange;
+import opwvhk.avro.util.FileSplitter;
+import opwvhk.avro.util.MappedFileInputStream;
+import opwvhk.avro.util.ResourcePool;
 import org.apache.avro.LogicalTypes;
 import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericData;
 
-import static java.util.Objects.requireNonNull;
 import static opwvhk.avro.util.AvroSchemaUtils.nonNullableSchemaOf;
 
 /**
@@ -88,7 +95,32 @@ public class JsonAsAvroParser extends AsAvroParserBase<SchemaProperties> {
                (readSchema.getEnumDefault() != null || readSchema.getEnumSymbols().containsAll(enumValues));
     }
 
-    private final ValueResolver resolver;
+    /**
+     * The default size of the byte ranges to parse in parallel: 32MiB.
+     */
+    public static final long DEFAULT_SPLIT_SIZE = 32 * 1024 * 1024;
+
+    /**
+     * Resolver for binary data, encoded with base16 (hexadecimal).
+     */
+    private static final ScalarValueResolver BASE16_RESOLVER = new ScalarValueResolver(text -> ByteBuffer.wrap(new BigInteger(text, 16).toByteArray()));
+    /**
+     * Resolver for binary data, encoded with base64.
+     */
+    private static final ScalarValueResolver BASE64_RESOLVER = new ScalarValueResolver(text -> ByteBuffer.wrap(Base64.getDecoder().decode(text)));
+
+    private final ValueResolver interpretedResolver;
+    /**
+     * The resolver used for parsing: either the interpreted resolver, or its compiled version.
+     */
+    private ValueResolver resolver;
+    private final JsonFactory jsonFactory = new JsonFactory();
+    /**
+     * Idle parse sessions, to reuse parse state between documents. A pool (instead of a thread local) keeps the number of sessions bounded when parsing on
+     * many (virtual) threads.
+     */
+    private boolean earlyTermination;
+    private ResourcePool<JsonParseSession> sessions = newSessionPool();
 
     /**
      * Create a JSON parser using only the specified Avro schema. The parse result will match the schema, but might be invalid: no check is done that all
@@ -100,9 +132,62 @@ public class JsonAsAvroParser extends AsAvroParserBase<SchemaProperties> {
      */
     public JsonAsAvroParser(URI jsonSchemaLocation, Schema readSchema, GenericData model) throws GenerationException {
         super(model);
+        interpretedResolver = createResolver(jsonSchemaLocation, readSchema);
+        resolver = interpretedResolver;
+    }
+
+    /**
+     * <p>Create a JSON parser like {@link #JsonAsAvroParser(URI, Schema, GenericData)}, using a plan file to skip analysing the JSON schema when possible.</p>
+     *
+     * <p>If the plan file holds the resolver plan for the same JSON schema and read schema, the parser is created from it. Otherwise, the JSON schema is
+     * analysed as usual, and the plan file is (re)written. Note that the plan is matched on the contents of the JSON schema at the given location: a change in
+     * a schema it references is not noticed.</p>
+     *
+     * @param jsonSchemaLocation the location of the JSON (write) schema (schema of the JSON data to parse)
+     * @param readSchema         the read schema (schema of the resulting records)
+     * @param model              the Avro model used to create records
+     * @param planFile           the file to read the resolver plan from, or write it to
+     * @throws GenerationException when the JSON schema cannot be analysed
+     * @throws IOException         when the JSON schema or plan file cannot be read, or the plan file cannot be written
+     */
+    public JsonAsAvroParser(URI jsonSchemaLocation, Schema readSchema, GenericData model, Path planFile) throws GenerationException, IOException {
+        super(model);
+        byte[] jsonSchema;
+        try (InputStream inputStream = jsonSchemaLocation.toURL().openStream()) {
+            jsonSchema = inputStream.readAllBytes();
+        }
+        byte[] fingerprint = planFingerprint(readSchema, jsonSchema);
+        ValueResolver plannedResolver = loadResolverPlan(planFile, fingerprint, readSchema);
+        if (plannedResolver == null) {
+            plannedResolver = createResolver(jsonSchemaLocation, readSchema);
+            saveResolverPlan(planFile, fingerprint, plannedResolver);
+        }
+        interpretedResolver = plannedResolver;
+        resolver = interpretedResolver;
+    }
+
+    /**
+     * Create a JSON parser using only the specified Avro schema. The parse result will match the schema, but might be invalid: no check is done that all
+     * required fields have a value.
+     *
+     * @param readSchema the read schema (schema of the resulting records)
+     * @param model      the Avro model used to create records
+     */
+    public JsonAsAvroParser(Schema readSchema, GenericData model) {
+        super(model);
+        interpretedResolver = createResolver(readSchema);
+        resolver = interpretedResolver;
+    }
+
+    private ValueResolver createResolver(URI jsonSchemaLocation, Schema readSchema) throws GenerationException {
         SchemaAnalyzer schemaAnalyzer = new SchemaAnalyzer();
         SchemaProperties schemaProperties = schemaAnalyzer.parseJsonProperties(jsonSchemaLocation);
-        this.resolver = createResolver(schemaProperties, readSchema);
+        return createResolver(schemaProperties, readSchema);
+    }
+
+    @Override
+    protected Map<String, ScalarValueResolver> binaryResolvers() {
+        return Map.of("base16", BASE16_RESOLVER, "base64", BASE64_RESOLVER);
     }
 
     @Override
@@ -121,21 +206,19 @@ public class JsonAsAvroParser extends AsAvroParserBase<SchemaProperties> {
         resolveRules.add(
                 new ResolveRule<>(hasStringFormat("date-time"), logicalType(LogicalTypes.LocalTimestampMicros.class), (w, r) -> LOCAL_DATE_TIME_RESOLVER));
         // Raw scalar types (note: as logical types, binary types and enums are _also_ strings, strings must be last)
-        resolveRules.add(new ResolveRule<>(hasEncodedContent("base16"), rawType(Schema.Type.BYTES),
-                (w, r) -> new ScalarValueResolver(text -> ByteBuffer.wrap(new BigInteger(text, 16).toByteArray()))));
-        resolveRules.add(new ResolveRule<>(hasEncodedContent("base64"), rawType(Schema.Type.BYTES),
-                (w, r) -> new ScalarValueResolver(text -> ByteBuffer.wrap(Base64.getDecoder().decode(text)))));
+        resolveRules.add(new ResolveRule<>(hasEncodedContent("base16"), rawType(Schema.Type.BYTES), (w, r) -> BASE16_RESOLVER));
+        resolveRules.add(new ResolveRule<>(hasEncodedContent("base64"), rawType(Schema.Type.BYTES), (w, r) -> BASE64_RESOLVER));
         resolveRules.add(new ResolveRule<>(JsonAsAvroParser::isValidEnum, (w, r) -> createEnumResolver(r)));
         resolveRules.add(new ResolveRule<>(jsonType(SchemaType.BOOLEAN), rawType(Schema.Type.BOOLEAN), (w, r) -> BOOLEAN_RESOLVER));
         resolveRules.add(new ResolveRule<>(isNumber(), rawType(Schema.Type.FLOAT), (w, r) -> FLOAT_RESOLVER));
         resolveRules.add(new ResolveRule<>(isNumber(), rawType(Schema.Type.DOUBLE), (w, r) -> DOUBLE_RESOLVER));
         resolveRules.add(new ResolveRule<>(isInteger(32), rawType(Schema.Type.INT), (w, r) -> INTEGER_RESOLVER));
         resolveRules.add(new ResolveRule<>(isInteger(64), rawType(Schema.Type.LONG), (w, r) -> LONG_RESOLVER));
-        resolveRules.add(new ResolveRule<>(jsonType(SchemaType.STRING), rawType(Schema.Type.STRING), (w, r) -> STRING_RESOLVER));
+        resolveRules.add(new ResolveRule<>(jsonType(SchemaType.STRING), rawType(Schema.Type.STRING), (w, r) -> createStringResolver(r)));
         // Composite types
         // UNION is not needed: this is unwrapped as needed (and forced if the JSON may contain explicit null values)
         resolveRules.add(new ResolveRule<>(jsonType(SchemaType.ARRAY), rawType(Schema.Type.ARRAY),
-                (w, r) -> new ListResolver(createResolver(w.itemSchemaProperties(), nonNullableSchemaOf(r.getElementType())))));
+                (w, r) -> new ListResolver(model, r, createResolver(w.itemSchemaProperties(), nonNullableSchemaOf(r.getElementType())))));
         //resolveRules.add(new ResolveRule<>(JsonAsAvroParser::isValidEnum, (w, r) -> createRecordResolver(r)));
         resolveRules.add(new ResolveRule<>(jsonType(SchemaType.OBJECT), rawType(Schema.Type.RECORD), this::createResolverForRecord));
 
@@ -182,15 +265,92 @@ public class JsonAsAvroParser extends AsAvroParserBase<SchemaProperties> {
     }
 
     /**
-     * Create a JSON parser using only the specified Avro schema. The parse result will match the schema, but might be invalid: no check is done that all
-     * required fields have a value.
+     * Create a new parse session, to parse many documents in a row. Sessions reuse parse state (including buffers) between documents.
      *
-     * @param readSchema the read schema (schema of the resulting records)
-     * @param model      the Avro model used to create records
+     * @return a new parse session
      */
-    public JsonAsAvroParser(Schema readSchema, GenericData model) {
-        super(model);
-        this.resolver = createResolver(readSchema);
+    public JsonParseSession newSession() {
+        return new JsonParseSession(jsonFactory, resolver, earlyTermination);
+    }
+
+    private <T> T withSession(SessionParse<T> parse) throws IOException {
+        JsonParseSession session = sessions.borrow();
+        try {
+            return parse.parse(session);
+        } finally {
+            // Also after a failure: resetting clears the state of the unfinished document
+            session.reset();
+            sessions.release(session);
+        }
+    }
+
+    @FunctionalInterface
+    private interface SessionParse<T> {
+        T parse(JsonParseSession session) throws IOException;
+    }
+
+    /**
+     * Create a new non-blocking record feeder: feed it JSON in arbitrary chunks, and receive records as soon as they are complete.
+     *
+     * @param recordConsumer the consumer to receive the parsed records
+     * @param <T>            the record type
+     * @return a new record feeder
+     * @throws IOException when the underlying JSON parser cannot be created
+     */
+    public <T> JsonRecordFeeder newRecordFeeder(Consumer<? super T> recordConsumer) throws IOException {
+        return new JsonRecordFeeder(jsonFactory, resolver, recordConsumer);
+    }
+
+    /**
+     * Create a new reactive stream stage that parses chunks of JSON into records, with backpressure: input is only requested when there is demand for
+     * records. The input is a sequence of JSON values (like newline delimited JSON).
+     *
+     * @param <T> the record type
+     * @return a new record processor
+     * @throws IOException when the underlying JSON parser cannot be created
+     */
+    public <T> RecordProcessor<T> newRecordProcessor() throws IOException {
+        return new RecordProcessor<>(this::newRecordFeeder);
+    }
+
+    private ResourcePool<JsonParseSession> newSessionPool() {
+        return new ResourcePool<>(this::newSession, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * <p>Enable or disable compiled resolvers: parse using a resolver tree that is specialized for parsing.</p>
+     *
+     * <p>Compiled resolvers yield the same results, but avoid most indirection and lookups while parsing. Resolvers that cannot be compiled are used
+     * as-is.</p>
+     *
+     * <p>Configure this before parsing: it is not safe to change while parsing on other threads. It does not affect existing sessions.</p>
+     *
+     * @param enabled whether to parse using compiled resolvers
+     * @return this parser
+     * @see ResolverCompiler
+     */
+    public JsonAsAvroParser withCompiledResolvers(boolean enabled) {
+        resolver = enabled ? ResolverCompiler.compile(interpretedResolver) : interpretedResolver;
+        sessions = newSessionPool();
+        return this;
+    }
+
+    /**
+     * <p>Enable or disable early termination: stop reading a document once all fields of the result that can be parsed have been seen.</p>
+     *
+     * <p>When the read schema only projects a few fields that occur near the start of large documents (like headers), this makes parsing independent of the
+     * document size. This applies to the methods that parse a single document: parsing a sequence of documents always reads all of them.</p>
+     *
+     * <p>Configure this before parsing: it is not safe to change while parsing on other threads.</p>
+     *
+     * @param enabled whether to stop parsing documents when the result is complete
+     * @return this parser
+     * @see ValueResolver#isComplete(Object)
+     */
+    public JsonAsAvroParser withEarlyTermination(boolean enabled) {
+        earlyTermination = enabled;
+        sessions = newSessionPool();
+        return this;
     }
 
     /**
@@ -202,10 +362,20 @@ public class JsonAsAvroParser extends AsAvroParserBase<SchemaProperties> {
      * @throws IOException when the JSON cannot be read
      */
     public <T> T parse(String source) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        try (JsonParser parser = mapper.createParser(source)) {
-            return parse(parser, resolver);
-        }
+        return parse(source, null);
+    }
+
+    /**
+     * Parse the given source into records, reusing a previous result if possible.
+     *
+     * @param <T>    the record type
+     * @param source JSON data that was read already
+     * @param reuse  a previous parse result to reuse (including nested records and arrays), or {@code null} to create a new record
+     * @return the parsed record
+     * @throws IOException when the JSON cannot be read
+     */
+    public <T> T parse(String source, T reuse) throws IOException {
+        return withSession(session -> session.parse(source, reuse));
     }
 
     /**
@@ -217,103 +387,256 @@ public class JsonAsAvroParser extends AsAvroParserBase<SchemaProperties> {
      * @throws IOException when the JSON cannot be read
      */
     public <T> T parse(URL url) throws IOException {
-        ObjectMapper mapper = new ObjectMapper();
-        try (JsonParser parser = mapper.createParser(url)) {
-            return parse(parser, resolver);
-        }
+        return parse(url, null);
     }
 
-    private <T> T parse(JsonParser parser, ValueResolver rootResolver) throws IOException {
-        CollectingResolver noopResolver = new CollectingResolver(ValueResolver.NOOP);
-        Deque<CollectingResolver> parseStack = new ArrayDeque<>();
-        parseStack.push(new CollectingResolver(rootResolver));
-        T result = null;
-
-        JsonToken jsonToken;
-        while ((jsonToken = parser.nextToken()) != null) {
-            // We'll never get these values:
-            // 'NOT_AVAILABLE' -> only returned by non-blocking parsers, which we don't use
-            // 'VALUE_EMBEDDED_OBJECT' -> no known parser ever returns this
-            CollectingResolver collectingResolver = parseStack.element();
-            switch (jsonToken) {
-                case START_OBJECT:
-                    if (collectingResolver.isCollectingRecord()) {
-                        parseStack.push(noopResolver);
-                    } else {
-                        JsonLocation location = parser.getTokenLocation();
-                        throw new IllegalStateException("Did not expect an object at %d:%d".formatted(location.getLineNr(), location.getColumnNr()));
-                    }
-                    break;
-                case START_ARRAY:
-                    if (collectingResolver.isCollectingArray()) {
-                        parseStack.push(collectingResolver.resolve("value")); // Any value will do
-                    } else {
-                        JsonLocation location = parser.getTokenLocation();
-                        throw new IllegalStateException("Did not expect an array at %d:%d".formatted(location.getLineNr(), location.getColumnNr()));
-                    }
-                    break;
-                case FIELD_NAME:
-                    parseStack.pop();
-                    // collectingResolver is the one we just popped; we need its parent
-                    parseStack.push(parseStack.element().resolve(parser.currentName()));
-                    break;
-                default:
-                    collectingResolver.addContent(parser.getValueAsString());
-                    parseStack.push(noopResolver);
-                    // Fall through
-                case END_OBJECT:
-                case END_ARRAY:
-                    parseStack.pop();
-                    CollectingResolver valueResolver = parseStack.pop();
-                    // Here, we want both the current top collector (the parent), and collector we just popped (that collected our value).
-                    // Note we've first popped a dummy/item/field resolver that is used for child elements, if present, but we no longer need that.
-                    Object value = valueResolver.complete();
-                    CollectingResolver parentResolver = parseStack.peek();
-                    if (parentResolver == null) {
-                        result = (T) value;
-                    } else if (parentResolver.addProperty(parser.currentName(), value)) {
-                        parseStack.push(parentResolver.resolve("value")); // Any value will do
-                    } else {
-                        parseStack.push(noopResolver);
-                    }
-                    break;
-            }
-        }
-        return result;
+    /**
+     * Parse the given source into records, reusing a previous result if possible.
+     *
+     * @param url   a location to read JSON data from
+     * @param reuse a previous parse result to reuse (including nested records and arrays), or {@code null} to create a new record
+     * @param <T>   the record type
+     * @return the parsed record
+     * @throws IOException when the JSON cannot be read
+     */
+    public <T> T parse(URL url, T reuse) throws IOException {
+        return withSession(session -> session.parse(url, reuse));
+    }
+
+    /**
+     * Parse the given source into records.
+     *
+     * @param bytes  a buffer with encoded JSON data (the encoding is detected automatically)
+     * @param offset the offset of the JSON data in the buffer
+     * @param length the length of the JSON data
+     * @param <T>    the record type
+     * @return the parsed record
+     * @throws IOException when the JSON cannot be read
+     */
+    public <T> T parse(byte[] bytes, int offset, int length) throws IOException {
+        return parse(bytes, offset, length, null);
     }
 
-    private static class CollectingResolver {
-        private final ValueResolver resolver;
-        private Object collector;
+    /**
+     * Parse the given source into records, reusing a previous result if possible.
+     *
+     * @param bytes  a buffer with encoded JSON data (the encoding is detected automatically)
+     * @param offset the offset of the JSON data in the buffer
+     * @param length the length of the JSON data
+     * @param reuse  a previous parse result to reuse (including nested records and arrays), or {@code null} to create a new record
+     * @param <T>    the record type
+     * @return the parsed record
+     * @throws IOException when the JSON cannot be read
+     */
+    public <T> T parse(byte[] bytes, int offset, int length, T reuse) throws IOException {
+        return withSession(session -> session.parse(bytes, offset, length, reuse));
+    }
 
-        private CollectingResolver(ValueResolver resolver) {
-            this.resolver = requireNonNull(resolver);
-            this.collector = resolver.createCollector();
-        }
+    /**
+     * Parse the given source into records. The position of the buffer is not changed.
+     *
+     * @param buffer a buffer whose remaining bytes are encoded JSON data (the encoding is detected automatically)
+     * @param <T>    the record type
+     * @return the parsed record
+     * @throws IOException when the JSON cannot be read
+     */
+    public <T> T parse(ByteBuffer buffer) throws IOException {
+        return parse(buffer, null);
+    }
 
-        private CollectingResolver resolve(String fieldName) {
-            return new CollectingResolver(resolver.resolve(fieldName));
-        }
+    /**
+     * Parse the given source into records, reusing a previous result if possible. The position of the buffer is not changed.
+     *
+     * @param buffer a buffer whose remaining bytes are encoded JSON data (the encoding is detected automatically)
+     * @param reuse  a previous parse result to reuse (including nested records and arrays), or {@code null} to create a new record
+     * @param <T>    the record type
+     * @return the parsed record
+     * @throws IOException when the JSON cannot be read
+     */
+    public <T> T parse(ByteBuffer buffer, T reuse) throws IOException {
+        return withSession(session -> session.parse(buffer, reuse));
+    }
 
-        private void addContent(String value) {
-            collector = resolver.addContent(collector, value);
-        }
+    /**
+     * Parse the given source into records. The stream is closed afterwards.
+     *
+     * @param inputStream a stream of encoded JSON data (the encoding is detected automatically)
+     * @param <T>         the record type
+     * @return the parsed record
+     * @throws IOException when the JSON cannot be read
+     */
+    public <T> T parse(InputStream inputStream) throws IOException {
+        return parse(inputStream, null);
+    }
 
-        private Object complete() {
-            return resolver.complete(collector);
-        }
+    /**
+     * Parse the given source into records, reusing a previous result if possible. The stream is closed afterwards.
+     *
+     * @param inputStream a stream of encoded JSON data (the encoding is detected automatically)
+     * @param reuse       a previous parse result to reuse (including nested records and arrays), or {@code null} to create a new record
+     * @param <T>         the record type
+     * @return the parsed record
+     * @throws IOException when the JSON cannot be read
+     */
+    public <T> T parse(InputStream inputStream, T reuse) throws IOException {
+        return withSession(session -> session.parse(inputStream, reuse));
+    }
 
-        private boolean addProperty(String fieldName, Object value) {
-            resolver.addProperty(collector, fieldName, value);
-            return isCollectingArray();
-        }
+    /**
+     * Parse the given source into records.
+     *
+     * <p>The file is read via memory mapping.</p>
+     *
+     * @param path a file with encoded JSON data (the encoding is detected automatically)
+     * @param <T>  the record type
+     * @return the parsed record
+     * @throws IOException when the JSON cannot be read
+     */
+    public <T> T parse(Path path) throws IOException {
+        return parse(path, null);
+    }
+
+    /**
+     * Parse the given source into records, reusing a previous result if possible.
+     *
+     * <p>The file is read via memory mapping.</p>
+     *
+     * @param path  a file with encoded JSON data (the encoding is detected automatically)
+     * @param reuse a previous parse result to reuse (including nested records and arrays), or {@code null} to create a new record
+     * @param <T>   the record type
+     * @return the parsed record
+     * @throws IOException when the JSON cannot be read
+     */
+    public <T> T parse(Path path, T reuse) throws IOException {
+        return withSession(session -> session.parse(path, reuse));
+    }
+
+    /**
+     * Parse all records in the given source, which contains a sequence of JSON values (like newline delimited JSON). The stream is closed afterwards.
+     *
+     * @param inputStream    a stream of encoded JSON data (the encoding is detected automatically)
+     * @param recordConsumer the consumer to receive the parsed records
+     * @param <T>            the record type
+     * @return the number of parsed records
+     * @throws IOException when the JSON cannot be read
+     */
+    public <T> long parseRecords(InputStream inputStream, Consumer<? super T> recordConsumer) throws IOException {
+        // Use a new session: the consumer may use this parser as well
+        return newSession().parseRecords(inputStream, recordConsumer);
+    }
+
+    /**
+     * Parse all records in the given source, which contains a sequence of JSON values (like newline delimited JSON).
+     *
+     * <p>The file is read via memory mapping.</p>
+     *
+     * @param path           a file with encoded JSON data (the encoding is detected automatically)
+     * @param recordConsumer the consumer to receive the parsed records
+     * @param <T>            the record type
+     * @return the number of parsed records
+     * @throws IOException when the JSON cannot be read
+     */
+    public <T> long parseRecords(Path path, Consumer<? super T> recordConsumer) throws IOException {
+        return newSession().parseRecords(path, recordConsumer);
+    }
+
+    /**
+     * Parse all records in the given source, which contains a sequence of UTF-8 encoded JSON values (like newline delimited JSON), capturing records that
+     * fail conversion as dead letters instead of failing.
+     *
+     * <p>Records with values that cannot be converted are skipped. Syntax errors skip the rest of the line: parsing resumes on the next line. In both cases,
+     * the raw record is passed to the dead letter consumer (with its location and the reason it failed), and parsing continues.</p>
+     *
+     * <p>The file is read via memory mapping.</p>
+     *
+     * @param path           a file with UTF-8 encoded JSON data
+     * @param recordConsumer the consumer to receive the parsed records
+     * @param deadLetters    the consumer to receive the records that failed conversion
+     * @param <T>            the record type
+     * @return the number of parsed records (excluding dead letters)
+     * @throws IOException when the file cannot be read
+     */
+    public <T> long parseRecords(Path path, Consumer<? super T> recordConsumer, Consumer<? super DeadLetter> deadLetters) throws IOException {
+        return newSession().parseRecords(path, recordConsumer, deadLetters);
+    }
 
-        private boolean isCollectingArray() {
-            return resolver instanceof ListResolver;
+    /**
+     * <p>Convert all records in the given file, which contains a sequence of JSON values (like newline delimited JSON), into an Avro data file. The conversion
+     * records periodic checkpoints: if it fails, calling this method again resumes the conversion from the last checkpoint.</p>
+     *
+     * <p>The file must be UTF-8 encoded, and is read via memory mapping. Upon success, the output is completed (closed, without checkpoint). Upon failure,
+     * the output is closed, keeping the checkpoint.</p>
+     *
+     * @param path   a file with UTF-8 encoded JSON data
+     * @param output the output file, which is opened (and resumed, if it has a checkpoint) by this method
+     * @param <T>    the record type
+     * @return the total number of records in the output
+     * @throws IOException when the JSON cannot be read, or the output cannot be written
+     */
+    public <T> long convertResumable(Path path, ResumableDataFileWriter<T> output) throws IOException {
+        // Close the output also upon failure (keeping the checkpoint), so the conversion can be resumed
+        try (output) {
+            long startOffset = output.open();
+            ByteRange range = new ByteRange(startOffset, Long.MAX_VALUE);
+            try (InputStream inputStream = new MappedFileInputStream(path, range, MappedFileInputStream.DEFAULT_WINDOW_SIZE)) {
+                newSession().<T>parseRecordsWithOffsets(inputStream, (record, offset) -> {
+                    try {
+                        output.write(record, startOffset + offset);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+            output.complete();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
+        return output.getRecordCount();
+    }
+
+    /**
+     * <p>Parse all records in the given file of newline delimited JSON in parallel, yielding a parallel stream of records.</p>
+     *
+     * <p>The file is split in byte ranges of about 32MiB, aligned on line boundaries. Each range is parsed by a separate task, using the common fork/join
+     * pool (unless the stream is used in another pool). The file must be UTF-8 encoded, and is read via memory mapping.</p>
+     *
+     * @param path    a file with newline delimited JSON (UTF-8 encoded)
+     * @param ordered if {@code true}, the records are in file order (ordered operations merge the results of the ranges in order); if {@code false}, the
+     *                records are unordered for maximum throughput
+     * @param <T>     the record type
+     * @return a parallel stream of records
+     * @throws IOException when the file cannot be split
+     */
+    public <T> Stream<T> parseRecordsInParallel(Path path, boolean ordered) throws IOException {
+        return parseRecordsInParallel(path, DEFAULT_SPLIT_SIZE, ordered);
+    }
+
+    /**
+     * <p>Parse all records in the given file of newline delimited JSON in parallel, yielding a parallel stream of records.</p>
+     *
+     * <p>The file is split in byte ranges of about the given size, aligned on line boundaries. Each range is parsed by a separate task, using the common
+     * fork/join pool (unless the stream is used in another pool). The file must be UTF-8 encoded, and is read via memory mapping.</p>
+     *
+     * @param path      a file with newline delimited JSON (UTF-8 encoded)
+     * @param splitSize the target size of the byte ranges to parse in parallel
+     * @param ordered   if {@code true}, the records are in file order (ordered operations merge the results of the ranges in order); if {@code false}, the
+     *                  records are unordered for maximum throughput
+     * @param <T>       the record type
+     * @return a parallel stream of records
+     * @throws IOException when the file cannot be split
+     */
+    public <T> Stream<T> parseRecordsInParallel(Path path, long splitSize, boolean ordered) throws IOException {
+        List<ByteRange> ranges = FileSplitter.splitOnLines(path, splitSize);
+        Stream<T> records = ranges.parallelStream().mapMulti((range, downstream) -> parseRecords(path, range, downstream));
+        return ordered ? records : records.unordered();
+    }
 
-        private boolean isCollectingRecord() {
-            return resolver instanceof RecordResolver;
+    private <T> void parseRecords(Path path, ByteRange range, Consumer<T> recordConsumer) {
+        // Each range uses its own session: the resolvers are shared, the parse state is not.
+        try {
+            newSession().parseRecords(new MappedFileInputStream(path, range, MappedFileInputStream.DEFAULT_WINDOW_SIZE), recordConsumer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
 }
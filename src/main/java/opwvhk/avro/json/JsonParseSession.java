@@ -0,0 +1,399 @@
+package opwvhk.avro.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.util.BufferRecycler;
+import opwvhk.avro.io.DeadLetter;
+import opwvhk.avro.io.ValueResolver;
+import opwvhk.avro.util.ByteBufferInputStream;
+import opwvhk.avro.util.ByteRange;
+import opwvhk.avro.util.MappedFileInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static opwvhk.avro.io.DeadLetter.Reason.INVALID_VALUE;
+import static opwvhk.avro.io.DeadLetter.Reason.MALFORMED_INPUT;
+
+/**
+ * <p>A parse session for a {@link JsonAsAvroParser}, for parsing many (small) documents in a row.</p>
+ *
+ * <p>A session keeps all state needed for parsing between documents: the buffers used by the JSON parser, the symbol table for field names, and the parse
+ * state frames. Parsing many documents with the same session thus yields (almost) no garbage, apart from the parse results.</p>
+ *
+ * <p>Sessions are not thread-safe: use one session per thread. The parse methods of {@link JsonAsAvroParser} use a session per thread as well.</p>
+ *
+ * @see JsonAsAvroParser#newSession()
+ */
+public final class JsonParseSession {
+    private final SessionJsonFactory jsonFactory;
+    private final JsonRecordHandler handler;
+    private final boolean earlyTermination;
+
+    JsonParseSession(JsonFactory sharedJsonFactory, ValueResolver resolver, boolean earlyTermination) {
+        jsonFactory = new SessionJsonFactory(sharedJsonFactory);
+        handler = new JsonRecordHandler(resolver);
+        this.earlyTermination = earlyTermination;
+    }
+
+    /**
+     * Forget the last parse result, so an idle session doesn't keep it alive.
+     */
+    void reset() {
+        handler.reset();
+    }
+
+    /**
+     * Parse the given source into records.
+     *
+     * @param <T>    the record type
+     * @param source JSON data that was read already
+     * @return the parsed record
+     * @throws IOException when the JSON cannot be read
+     */
+    public <T> T parse(String source) throws IOException {
+        return parse(source, null);
+    }
+
+    /**
+     * Parse the given source into records, reusing a previous result if possible.
+     *
+     * @param <T>    the record type
+     * @param source JSON data that was read already
+     * @param reuse  a previous parse result to reuse (including nested records and arrays), or {@code null} to create a new record
+     * @return the parsed record
+     * @throws IOException when the JSON cannot be read
+     */
+    public <T> T parse(String source, T reuse) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(source)) {
+            return parseDocument(parser, reuse);
+        }
+    }
+
+    /**
+     * Parse the given source into records.
+     *
+     * @param url a location to read JSON data from
+     * @param <T> the record type
+     * @return the parsed record
+     * @throws IOException when the JSON cannot be read
+     */
+    public <T> T parse(URL url) throws IOException {
+        return parse(url, null);
+    }
+
+    /**
+     * Parse the given source into records, reusing a previous result if possible.
+     *
+     * @param url   a location to read JSON data from
+     * @param reuse a previous parse result to reuse (including nested records and arrays), or {@code null} to create a new record
+     * @param <T>   the record type
+     * @return the parsed record
+     * @throws IOException when the JSON cannot be read
+     */
+    public <T> T parse(URL url, T reuse) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(url)) {
+            return parseDocument(parser, reuse);
+        }
+    }
+
+    /**
+     * Parse the given source into records.
+     *
+     * @param bytes  a buffer with encoded JSON data (the encoding is detected automatically)
+     * @param offset the offset of the JSON data in the buffer
+     * @param length the length of the JSON data
+     * @param <T>    the record type
+     * @return the parsed record
+     * @throws IOException when the JSON cannot be read
+     */
+    public <T> T parse(byte[] bytes, int offset, int length) throws IOException {
+        return parse(bytes, offset, length, null);
+    }
+
+    /**
+     * Parse the given source into records, reusing a previous result if possible.
+     *
+     * @param bytes  a buffer with encoded JSON data (the encoding is detected automatically)
+     * @param offset the offset of the JSON data in the buffer
+     * @param length the length of the JSON data
+     * @param reuse  a previous parse result to reuse (including nested records and arrays), or {@code null} to create a new record
+     * @param <T>    the record type
+     * @return the parsed record
+     * @throws IOException when the JSON cannot be read
+     */
+    public <T> T parse(byte[] bytes, int offset, int length, T reuse) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(bytes, offset, length)) {
+            return parseDocument(parser, reuse);
+        }
+    }
+
+    /**
+     * Parse the given source into records. The position of the buffer is not changed.
+     *
+     * @param buffer a buffer whose remaining bytes are encoded JSON data (the encoding is detected automatically)
+     * @param <T>    the record type
+     * @return the parsed record
+     * @throws IOException when the JSON cannot be read
+     */
+    public <T> T parse(ByteBuffer buffer) throws IOException {
+        return parse(buffer, null);
+    }
+
+    /**
+     * Parse the given source into records, reusing a previous result if possible. The position of the buffer is not changed.
+     *
+     * @param buffer a buffer whose remaining bytes are encoded JSON data (the encoding is detected automatically)
+     * @param reuse  a previous parse result to reuse (including nested records and arrays), or {@code null} to create a new record
+     * @param <T>    the record type
+     * @return the parsed record
+     * @throws IOException when the JSON cannot be read
+     */
+    public <T> T parse(ByteBuffer buffer, T reuse) throws IOException {
+        if (buffer.hasArray()) {
+            return parse(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), reuse);
+        }
+        return parse(new ByteBufferInputStream(buffer), reuse);
+    }
+
+    /**
+     * Parse the given source into records. The stream is closed afterwards.
+     *
+     * @param inputStream a stream of encoded JSON data (the encoding is detected automatically)
+     * @param <T>         the record type
+     * @return the parsed record
+     * @throws IOException when the JSON cannot be read
+     */
+    public <T> T parse(InputStream inputStream) throws IOException {
+        return parse(inputStream, null);
+    }
+
+    /**
+     * Parse the given source into records, reusing a previous result if possible. The stream is closed afterwards.
+     *
+     * @param inputStream a stream of encoded JSON data (the encoding is detected automatically)
+     * @param reuse       a previous parse result to reuse (including nested records and arrays), or {@code null} to create a new record
+     * @param <T>         the record type
+     * @return the parsed record
+     * @throws IOException when the JSON cannot be read
+     */
+    public <T> T parse(InputStream inputStream, T reuse) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(inputStream)) {
+            return parseDocument(parser, reuse);
+        }
+    }
+
+    /**
+     * Parse the given source into records.
+     *
+     * <p>The file is read via memory mapping.</p>
+     *
+     * @param path a file with encoded JSON data (the encoding is detected automatically)
+     * @param <T>  the record type
+     * @return the parsed record
+     * @throws IOException when the JSON cannot be read
+     */
+    public <T> T parse(Path path) throws IOException {
+        return parse(path, null);
+    }
+
+    /**
+     * Parse the given source into records, reusing a previous result if possible.
+     *
+     * <p>The file is read via memory mapping.</p>
+     *
+     * @param path  a file with encoded JSON data (the encoding is detected automatically)
+     * @param reuse a previous parse result to reuse (including nested records and arrays), or {@code null} to create a new record
+     * @param <T>   the record type
+     * @return the parsed record
+     * @throws IOException when the JSON cannot be read
+     */
+    public <T> T parse(Path path, T reuse) throws IOException {
+        return parse(new MappedFileInputStream(path), reuse);
+    }
+
+    /**
+     * Parse all records in the given source, which contains a sequence of JSON values (like newline delimited JSON). The stream is closed afterwards.
+     *
+     * <p>Note that the consumer must not use this session.</p>
+     *
+     * @param inputStream    a stream of encoded JSON data (the encoding is detected automatically)
+     * @param recordConsumer the consumer to receive the parsed records
+     * @param <T>            the record type
+     * @return the number of parsed records
+     * @throws IOException when the JSON cannot be read
+     */
+    public <T> long parseRecords(InputStream inputStream, Consumer<? super T> recordConsumer) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(inputStream)) {
+            long count = 0;
+            while (handler.parseNext(parser, null)) {
+                recordConsumer.accept(handler.getValue());
+                count++;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Parse all records in the given source, which contains a sequence of JSON values (like newline delimited JSON).
+     *
+     * <p>The file is read via memory mapping. Note that the consumer must not use this session.</p>
+     *
+     * @param path           a file with encoded JSON data (the encoding is detected automatically)
+     * @param recordConsumer the consumer to receive the parsed records
+     * @param <T>            the record type
+     * @return the number of parsed records
+     * @throws IOException when the JSON cannot be read
+     */
+    public <T> long parseRecords(Path path, Consumer<? super T> recordConsumer) throws IOException {
+        return parseRecords(new MappedFileInputStream(path), recordConsumer);
+    }
+
+    /**
+     * Parse all records in the given source, which contains a sequence of UTF-8 encoded JSON values (like newline delimited JSON), capturing records that
+     * fail conversion as dead letters.
+     *
+     * <p>Records with values that cannot be converted are skipped. Syntax errors skip the rest of the line: parsing resumes on the next line. In both cases,
+     * the raw record is passed to the dead letter consumer, and parsing continues.</p>
+     *
+     * <p>The file is read via memory mapping. Note that the consumers must not use this session.</p>
+     *
+     * @param path           a file with UTF-8 encoded JSON data
+     * @param recordConsumer the consumer to receive the parsed records
+     * @param deadLetters    the consumer to receive the records that failed conversion
+     * @param <T>            the record type
+     * @return the number of parsed records (excluding dead letters)
+     * @throws IOException when the file cannot be read
+     */
+    public <T> long parseRecords(Path path, Consumer<? super T> recordConsumer, Consumer<? super DeadLetter> deadLetters) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long count = 0;
+            long offset = 0;
+            while (offset < size) {
+                long recordStart = offset;
+                try (JsonParser parser = jsonFactory.createParser(
+                        new MappedFileInputStream(path, new ByteRange(offset, size), MappedFileInputStream.DEFAULT_WINDOW_SIZE))) {
+                    JsonToken token;
+                    while ((token = parser.nextToken()) != null) {
+                        recordStart = offset + parser.currentTokenLocation().getByteOffset();
+                        boolean converted = handler.parseTolerantly(parser, token);
+                        long recordEnd = offset + parser.currentLocation().getByteOffset();
+                        if (converted) {
+                            recordConsumer.accept(handler.getValue());
+                            count++;
+                        } else {
+                            deadLetters.accept(DeadLetter.read(channel, recordStart, recordEnd, UTF_8, INVALID_VALUE, handler.getFailure()));
+                        }
+                        // Read by the catch block below: if the next token is malformed, its dead letter starts here (not at this record)
+                        recordStart = recordEnd;
+                    }
+                    offset = size;
+                } catch (JsonProcessingException e) {
+                    JsonLocation location = e.getLocation();
+                    long errorOffset = location == null || location.getByteOffset() < 0 ? recordStart : offset + location.getByteOffset();
+                    long recordEnd = nextLine(channel, Math.max(recordStart, errorOffset), size);
+                    deadLetters.accept(DeadLetter.read(channel, recordStart, recordEnd, UTF_8, MALFORMED_INPUT, e.getOriginalMessage()));
+                    offset = recordEnd;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Find the start of the next line.
+     *
+     * @return the offset directly after the next newline, or the file size if there is no next line
+     */
+    private static long nextLine(FileChannel channel, long offset, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        long position = offset;
+        while (position < size) {
+            buffer.clear();
+            int length = channel.read(buffer, position);
+            for (int i = 0; i < length; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += Math.max(length, 0);
+        }
+        return size;
+    }
+
+    /**
+     * Parse all records in the given source, which contains a sequence of UTF-8 encoded JSON values, passing each record with the byte offset directly after
+     * it (relative to the start of the stream). The stream is closed afterwards.
+     *
+     * @param inputStream    a stream of UTF-8 encoded JSON data
+     * @param recordConsumer the consumer to receive the parsed records and their end offsets
+     * @param <T>            the record type
+     * @return the number of parsed records
+     * @throws IOException when the JSON cannot be read
+     */
+    <T> long parseRecordsWithOffsets(InputStream inputStream, ObjLongConsumer<? super T> recordConsumer) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(inputStream)) {
+            long count = 0;
+            while (handler.parseNext(parser, null)) {
+                long offset = parser.currentLocation().getByteOffset();
+                if (offset < 0) {
+                    throw new JsonParseException(parser, "Byte offsets are only available for UTF-8 encoded JSON");
+                }
+                recordConsumer.accept(handler.getValue(), offset);
+                count++;
+            }
+            return count;
+        }
+    }
+
+    private <T> T parseDocument(JsonParser parser, T reuse) throws IOException {
+        if (!handler.parseNext(parser, reuse, earlyTermination)) {
+            return null;
+        }
+        // When parsing stopped early, the rest of the document is not read. Otherwise, there must be nothing left.
+        if (parser.getParsingContext().inRoot() && parser.nextToken() != null) {
+            throw new JsonParseException(parser, "Unexpected content after the JSON value");
+        }
+        return handler.getValue();
+    }
+
+    /**
+     * JSON factory that uses a single set of buffers: those of the session.
+     *
+     * <p>By default, Jackson recycles buffers per thread. A session does not depend on the thread it's used in.</p>
+     */
+    static class SessionJsonFactory extends JsonFactory {
+        private static final long serialVersionUID = 1L;
+
+        private final transient BufferRecycler bufferRecycler;
+
+        SessionJsonFactory(JsonFactory sharedJsonFactory) {
+            super(sharedJsonFactory, null);
+            bufferRecycler = new BufferRecycler();
+        }
+
+        @Override
+        public BufferRecycler _getBufferRecycler() {
+            return bufferRecycler;
+        }
+
+        @Override
+        public String getFormatName() {
+            // Jackson only recognizes JSON by the exact class: subclasses must state their format (it enables the non-blocking parsers)
+            return FORMAT_NAME_JSON;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package opwvhk.avro.json;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteBufferFeeder;
+import opwvhk.avro.io.RecordFeeder;
+import opwvhk.avro.io.ValueResolver;
+
+/**
+ * <p>Push-style JSON parser for records: feed it bytes in arbitrary chunks, and receive records as soon as they are complete.</p>
+ *
+ * <p>This parser is non-blocking: it parses all bytes it's fed, and then returns. It's intended for network services that receive JSON in chunks (for
+ * example on NIO channels), so they need not buffer whole messages. The input is a sequence of JSON values (like newline delimited JSON).</p>
+ *
+ * <p>Feeders are not thread-safe: feed them from one thread at a time. They are not tied to a thread though.</p>
+ *
+ * @see JsonAsAvroParser#newRecordFeeder(Consumer)
+ */
+public final class JsonRecordFeeder implements RecordFeeder {
+    private final JsonParser parser;
+    private final ByteBufferFeeder feeder;
+    private final JsonRecordHandler handler;
+    private final Consumer<Object> recordConsumer;
+    private boolean inRecord;
+
+    <T> JsonRecordFeeder(JsonFactory sharedJsonFactory, ValueResolver resolver, Consumer<? super T> recordConsumer) throws IOException {
+        parser = new JsonParseSession.SessionJsonFactory(sharedJsonFactory).createNonBlockingByteBufferParser();
+        feeder = (ByteBufferFeeder) parser.getNonBlockingInputFeeder();
+        handler = new JsonRecordHandler(resolver);
+        @SuppressWarnings("unchecked")
+        Consumer<Object> consumer = (Consumer<Object>) recordConsumer;
+        this.recordConsumer = consumer;
+        inRecord = false;
+    }
+
+    /**
+     * Feed a chunk of JSON data. Parses all bytes, and passes any completed records to the consumer.
+     *
+     * <p>The bytes are parsed before this method returns: afterwards, the buffer can be reused.</p>
+     *
+     * @param buffer a buffer whose remaining bytes are the next chunk of UTF-8 encoded JSON data
+     * @throws IOException when the JSON cannot be parsed
+     */
+    @Override
+    public void feed(ByteBuffer buffer) throws IOException {
+        feeder.feedInput(buffer);
+        parseAvailableTokens();
+    }
+
+    /**
+     * Feed a chunk of JSON data. Parses all bytes, and passes any completed records to the consumer.
+     *
+     * <p>The bytes are parsed before this method returns: afterwards, the array can be reused.</p>
+     *
+     * @param bytes  a buffer with the next chunk of UTF-8 encoded JSON data
+     * @param offset the offset of the JSON data in the buffer
+     * @param length the length of the JSON data
+     * @throws IOException when the JSON cannot be parsed
+     */
+    public void feed(byte[] bytes, int offset, int length) throws IOException {
+        feed(ByteBuffer.wrap(bytes, offset, length));
+    }
+
+    /**
+     * Signal the end of the input. Parses any remaining tokens, and fails if the last record is incomplete.
+     *
+     * @throws IOException when the JSON cannot be parsed, or the last record is incomplete
+     */
+    @Override
+    public void endOfInput() throws IOException {
+        feeder.endOfInput();
+        parseAvailableTokens();
+        if (inRecord) {
+            throw new JsonParseException(parser, "Unexpected end of input: the last record is incomplete");
+        }
+    }
+
+    private void parseAvailableTokens() throws IOException {
+        JsonToken jsonToken;
+        while ((jsonToken = parser.nextToken()) != null && jsonToken != JsonToken.NOT_AVAILABLE) {
+            if (!inRecord) {
+                handler.startDocument(null);
+                inRecord = true;
+            }
+            if (handler.handleToken(parser, jsonToken)) {
+                inRecord = false;
+                recordConsumer.accept(handler.getValue());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+}
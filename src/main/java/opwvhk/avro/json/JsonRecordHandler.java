@@ -0,0 +1,341 @@
+package opwvhk.avro.json;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonEOFException;
+import opwvhk.avro.io.FieldDispatch;
+import opwvhk.avro.io.ListResolver;
+import opwvhk.avro.io.RecordResolver;
+import opwvhk.avro.io.ValueResolver;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Handler for JSON tokens, yielding a parse result.
+ *
+ * <p>The handler keeps the parse state in frames, indexed by depth. Frames are reused, both within and between documents. Handling tokens thus yields
+ * (almost) no garbage, apart from the parse result.</p>
+ *
+ * <p>If a record resolver has a {@link FieldDispatch}, the handler uses it for scalar fields: these are converted and set without resolving them.</p>
+ *
+ * <p>Instances are not thread-safe, but can be reused for any number of subsequent documents.</p>
+ */
+class JsonRecordHandler {
+    private static final int INITIAL_DEPTH = 16;
+    private final ValueResolver rootResolver;
+    private Frame[] frames;
+    private int depth;
+    private Object value;
+    private String failure;
+    private boolean stopWhenComplete;
+
+    JsonRecordHandler(ValueResolver rootResolver) {
+        this.rootResolver = requireNonNull(rootResolver);
+        frames = new Frame[INITIAL_DEPTH];
+        for (int i = 0; i < frames.length; i++) {
+            frames[i] = new Frame();
+        }
+        depth = -1;
+    }
+
+    /**
+     * Start parsing a (new) document.
+     *
+     * @param reuse a previous parse result to reuse, or {@code null} to create a new result
+     */
+    void startDocument(Object reuse) {
+        reset();
+        stopWhenComplete = false;
+        push(rootResolver, reuse);
+    }
+
+    /**
+     * Forget the last parse result, and any state of an unfinished document. Use this before keeping the handler around idle, so it doesn't keep parse
+     * results alive.
+     */
+    void reset() {
+        while (depth >= 0) {
+            frames[depth--].clear();
+        }
+        value = null;
+        failure = null;
+    }
+
+    /**
+     * Parse an entire document.
+     *
+     * @param parser a JSON parser, positioned before the document
+     * @param reuse  a previous parse result to reuse, or {@code null} to create a new result
+     * @return {@code true} if a document was parsed; the result is available via {@link #getValue()}, {@code false} if the parser yielded no (more) tokens
+     * @throws IOException when the JSON cannot be read
+     */
+    boolean parseNext(JsonParser parser, Object reuse) throws IOException {
+        return parseNext(parser, reuse, false);
+    }
+
+    /**
+     * Parse an entire document, optionally stopping early.
+     *
+     * @param parser           a JSON parser, positioned before the document
+     * @param reuse            a previous parse result to reuse, or {@code null} to create a new result
+     * @param stopWhenComplete if {@code true}, stop parsing as soon as the root resolver reports the result is complete; the parser is then positioned
+     *                         somewhere in the document
+     * @return {@code true} if a document was parsed; the result is available via {@link #getValue()}, {@code false} if the parser yielded no (more) tokens
+     * @throws IOException when the JSON cannot be read
+     * @see ValueResolver#isComplete(Object)
+     */
+    boolean parseNext(JsonParser parser, Object reuse, boolean stopWhenComplete) throws IOException {
+        startDocument(reuse);
+        this.stopWhenComplete = stopWhenComplete;
+        JsonToken jsonToken;
+        while ((jsonToken = parser.nextToken()) != null) {
+            if (handleToken(parser, jsonToken)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parse an entire document, tolerating values that cannot be converted. If conversion fails, the rest of the document is skipped, and the failure is
+     * available via {@link #getFailure()}.
+     *
+     * @param parser     a JSON parser, positioned on the first token of the document
+     * @param firstToken the first token of the document
+     * @return {@code true} if the document was converted; the result is available via {@link #getValue()}, {@code false} if conversion failed
+     * @throws IOException when the JSON cannot be read (i.e., on syntax errors)
+     */
+    boolean parseTolerantly(JsonParser parser, JsonToken firstToken) throws IOException {
+        startDocument(null);
+        JsonToken jsonToken = firstToken;
+        try {
+            while (!handleToken(parser, jsonToken)) {
+                jsonToken = parser.nextToken();
+                if (jsonToken == null) {
+                    throw new JsonEOFException(parser, null, "Unexpected end-of-input");
+                }
+            }
+            return true;
+        } catch (RuntimeException e) {
+            String message = e.getMessage();
+            failure = message != null ? message : e.getClass().getSimpleName();
+            skipRestOfDocument(parser);
+            return false;
+        }
+    }
+
+    private static void skipRestOfDocument(JsonParser parser) throws IOException {
+        if (parser.currentToken().isStructStart()) {
+            parser.skipChildren();
+        }
+        while (!parser.getParsingContext().inRoot()) {
+            JsonToken jsonToken = parser.nextToken();
+            if (jsonToken == null) {
+                throw new JsonEOFException(parser, null, "Unexpected end-of-input");
+            }
+            if (jsonToken.isStructStart()) {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Handle a single token.
+     *
+     * @param parser    the parser that yielded the token
+     * @param jsonToken the current token of the parser
+     * @return {@code true} if the token completed the document; the result is available via {@link #getValue()}
+     * @throws IOException when the JSON cannot be read
+     */
+    boolean handleToken(JsonParser parser, JsonToken jsonToken) throws IOException {
+        // We'll never get these values:
+        // 'NOT_AVAILABLE' -> callers handle it: it only means a non-blocking parser needs more input
+        // 'VALUE_EMBEDDED_OBJECT' -> no known parser ever returns this
+        Frame frame = frames[depth];
+        switch (jsonToken) {
+            case START_OBJECT:
+                if (frame.isCollectingRecord()) {
+                    push(ValueResolver.NOOP, null);
+                } else {
+                    JsonLocation location = parser.getTokenLocation();
+                    throw new IllegalStateException("Did not expect an object at %d:%d".formatted(location.getLineNr(), location.getColumnNr()));
+                }
+                return false;
+            case START_ARRAY:
+                if (frame.isCollectingArray()) {
+                    pushChild(frame, "value"); // Any value will do
+                } else {
+                    JsonLocation location = parser.getTokenLocation();
+                    throw new IllegalStateException("Did not expect an array at %d:%d".formatted(location.getLineNr(), location.getColumnNr()));
+                }
+                return false;
+            case FIELD_NAME:
+                pop();
+                // The frame we just popped was a placeholder; we need its parent
+                Frame recordFrame = frames[depth];
+                String fieldName = parser.currentName();
+                int scalarField = recordFrame.scalarField(fieldName);
+                if (scalarField >= 0) {
+                    nextFrame().initScalar(scalarField);
+                } else {
+                    pushChild(recordFrame, fieldName);
+                }
+                return false;
+            default:
+                if (frame.scalarField >= 0) {
+                    // The parent record converts and sets the value directly
+                    int field = frame.scalarField;
+                    pop();
+                    Frame parentFrame = frames[depth];
+                    parentFrame.setScalar(field, parser.getValueAsString());
+                    return nextField(parentFrame);
+                }
+                frame.addContent(parser.getValueAsString());
+                push(ValueResolver.NOOP, null);
+                // Fall through
+            case END_OBJECT:
+            case END_ARRAY:
+                // Pop the dummy/item/field frame used for child elements: we no longer need it.
+                pop();
+                // Here, we want both the frame that collected our value, and its parent.
+                Object completedValue = frames[depth].complete();
+                pop();
+                if (depth < 0) {
+                    value = completedValue;
+                    return true;
+                }
+                Frame parentFrame = frames[depth];
+                if (parentFrame.addProperty(parser.currentName(), completedValue)) {
+                    pushChild(parentFrame, "value"); // Any value will do
+                    return false;
+                }
+                return nextField(parentFrame);
+        }
+    }
+
+    /**
+     * Prepare for the next field of a record, unless the result is complete and parsing can stop.
+     *
+     * @param recordFrame the frame of the record
+     * @return {@code true} if the document is complete; the result is available via {@link #getValue()}
+     */
+    private boolean nextField(Frame recordFrame) {
+        if (stopWhenComplete && depth == 0 && recordFrame.isComplete()) {
+            // The rest of the document cannot change the result
+            value = recordFrame.complete();
+            pop();
+            return true;
+        }
+        push(ValueResolver.NOOP, null);
+        return false;
+    }
+
+    /**
+     * Return the result of the last completed document.
+     *
+     * @param <T> the type of the result
+     * @return the parse result
+     */
+    @SuppressWarnings("unchecked")
+    <T> T getValue() {
+        return (T) value;
+    }
+
+    /**
+     * Return the reason the last document parsed with {@link #parseTolerantly(JsonParser, JsonToken)} could not be converted.
+     *
+     * @return a description of the conversion failure, or {@code null} if the document was converted
+     */
+    String getFailure() {
+        return failure;
+    }
+
+    private void pushChild(Frame parent, String name) {
+        push(parent.resolver.resolve(name), parent.resolver.previousValue(parent.collector, name));
+    }
+
+    private void push(ValueResolver resolver, Object reuse) {
+        nextFrame().init(resolver, reuse);
+    }
+
+    private Frame nextFrame() {
+        depth++;
+        if (depth == frames.length) {
+            frames = Arrays.copyOf(frames, depth * 2);
+            for (int i = depth; i < frames.length; i++) {
+                frames[i] = new Frame();
+            }
+        }
+        return frames[depth];
+    }
+
+    private void pop() {
+        frames[depth--].clear();
+    }
+
+    private static class Frame {
+        private ValueResolver resolver;
+        private Object collector;
+        private FieldDispatch dispatch;
+        private int scalarField = -1;
+
+        private void init(ValueResolver resolver, Object reuse) {
+            this.resolver = resolver;
+            this.collector = resolver.createCollector(reuse);
+            dispatch = resolver instanceof RecordResolver recordResolver ? recordResolver.fieldDispatch() : null;
+        }
+
+        /**
+         * Initialize the frame for a scalar field of the parent record, which sets the value via its {@link FieldDispatch}.
+         */
+        private void initScalar(int field) {
+            // Like any scalar resolver, this does not accept objects nor arrays
+            resolver = ValueResolver.NOOP;
+            scalarField = field;
+        }
+
+        private void clear() {
+            resolver = null;
+            collector = null;
+            dispatch = null;
+            scalarField = -1;
+        }
+
+        private int scalarField(String name) {
+            return dispatch != null ? dispatch.scalarField(name) : -1;
+        }
+
+        private void setScalar(int field, String value) {
+            dispatch.setScalar(collector, field, value);
+        }
+
+        private void addContent(String value) {
+            collector = resolver.addContent(collector, value);
+        }
+
+        private Object complete() {
+            return resolver.complete(collector);
+        }
+
+        private boolean addProperty(String fieldName, Object value) {
+            collector = resolver.addProperty(collector, fieldName, value);
+            return isCollectingArray();
+        }
+
+        private boolean isComplete() {
+            return resolver.isComplete(collector);
+        }
+
+        private boolean isCollectingArray() {
+            return resolver instanceof ListResolver;
+        }
+
+        private boolean isCollectingRecord() {
+            return resolver instanceof RecordResolver;
+        }
+    }
+}
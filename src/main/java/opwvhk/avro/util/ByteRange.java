@@ -0,0 +1,31 @@
+package opwvhk.avro.util;
+
+import static opwvhk.avro.util.Utils.require;
+
+/**
+ * A range of bytes, for example in a file.
+ *
+ * @param start the start of the range (inclusive)
+ * @param end   the end of the range (exclusive)
+ */
+public record ByteRange(long start, long end) {
+	/**
+	 * Create a range of bytes.
+	 *
+	 * @param start the start of the range (inclusive)
+	 * @param end   the end of the range (exclusive)
+	 */
+	public ByteRange {
+		require(start, s -> s >= 0, "The start cannot be negative");
+		require(end, e -> e >= start, "The end cannot be before the start");
+	}
+
+	/**
+	 * Return the length of the range.
+	 *
+	 * @return the number of bytes in the range
+	 */
+	public long length() {
+		return end - start;
+	}
+}
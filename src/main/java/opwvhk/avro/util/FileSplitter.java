@@ -0,0 +1,70 @@
+package opwvhk.avro.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static opwvhk.avro.util.Utils.require;
+
+/**
+ * Utility to split files into parts, that can be processed in parallel.
+ */
+public final class FileSplitter {
+	private static final int SCAN_BUFFER_SIZE = 8192;
+
+	/**
+	 * Split a file into byte ranges of roughly the target size, aligned on line boundaries: all ranges (except possibly the last) end with a newline.
+	 *
+	 * <p>The file must use an encoding in which a newline byte is always a newline character, like UTF-8 or ASCII.</p>
+	 *
+	 * @param path       the file to split
+	 * @param targetSize the target size of each range; ranges are larger when needed to end on a line boundary
+	 * @return the ranges in file order, covering the entire file
+	 * @throws IOException when the file cannot be read
+	 */
+	public static List<ByteRange> splitOnLines(Path path, long targetSize) throws IOException {
+		require(targetSize, s -> s > 0, "The target size must be positive");
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			long size = channel.size();
+			ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+			List<ByteRange> ranges = new ArrayList<>();
+			long start = 0;
+			while (start < size) {
+				long end = start + targetSize >= size ? size : endOfLine(channel, start + targetSize - 1, buffer);
+				ranges.add(new ByteRange(start, end));
+				start = end;
+			}
+			return ranges;
+		}
+	}
+
+	/**
+	 * Find the end of the line containing a position.
+	 *
+	 * @return the position after the first newline at or after the given position, or the end of the file if there is none
+	 */
+	private static long endOfLine(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+		long bufferStart = position;
+		while (true) {
+			buffer.clear();
+			int count = channel.read(buffer, bufferStart);
+			if (count <= 0) {
+				return channel.size();
+			}
+			for (int i = 0; i < count; i++) {
+				if (buffer.get(i) == '\n') {
+					return bufferStart + i + 1;
+				}
+			}
+			bufferStart += count;
+		}
+	}
+
+	private FileSplitter() {
+		// Utility class: no need to instantiate.
+	}
+}
@@ -0,0 +1,136 @@
+package opwvhk.avro.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static opwvhk.avro.util.Utils.require;
+
+/**
+ * <p>An input stream reading a file via memory mapping.</p>
+ *
+ * <p>The file is mapped in windows of fixed size (the last window may be smaller), so files of any size can be read. Reading copies bytes directly from the
+ * page cache into the buffer of the caller, without system calls or intermediate buffers. For files that are resident in the page cache, this means reading
+ * at memory bandwidth.</p>
+ */
+public class MappedFileInputStream extends InputStream {
+	/**
+	 * The default window size: 64MiB.
+	 */
+	public static final int DEFAULT_WINDOW_SIZE = 64 * 1024 * 1024;
+	private final FileChannel channel;
+	/**
+	 * The end of the bytes to read (exclusive).
+	 */
+	private final long size;
+	private final int windowSize;
+	private long windowStart;
+	private MappedByteBuffer window;
+
+	/**
+	 * Open a file for reading, using the default window size.
+	 *
+	 * @param path the file to read
+	 * @throws IOException when the file cannot be opened
+	 */
+	public MappedFileInputStream(Path path) throws IOException {
+		this(path, DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * Open a file for reading.
+	 *
+	 * @param path       the file to read
+	 * @param windowSize the maximum number of bytes to map at a time
+	 * @throws IOException when the file cannot be opened
+	 */
+	public MappedFileInputStream(Path path, int windowSize) throws IOException {
+		this(path, new ByteRange(0, Long.MAX_VALUE), windowSize);
+	}
+
+	/**
+	 * Open a part of a file for reading.
+	 *
+	 * @param path       the file to read
+	 * @param range      the range of bytes to read; the range is truncated at the end of the file
+	 * @param windowSize the maximum number of bytes to map at a time
+	 * @throws IOException when the file cannot be opened
+	 */
+	public MappedFileInputStream(Path path, ByteRange range, int windowSize) throws IOException {
+		this.windowSize = require(windowSize, s -> s > 0, "The window size must be positive");
+		channel = FileChannel.open(path, StandardOpenOption.READ);
+		size = Math.min(range.end(), channel.size());
+		windowStart = range.start();
+		window = null;
+	}
+
+	/**
+	 * Ensure there are bytes available in the current window, if any are left.
+	 *
+	 * @return {@code true} if there are bytes to read, {@code false} at the end of the file
+	 */
+	private boolean ensureAvailable() throws IOException {
+		if (window != null && window.hasRemaining()) {
+			return true;
+		}
+		if (window != null) {
+			windowStart += window.capacity();
+		}
+		if (windowStart >= size) {
+			return false;
+		}
+		window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(windowSize, size - windowStart));
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		return ensureAvailable() ? window.get() & 0xff : -1;
+	}
+
+	@Override
+	public int read(byte[] bytes, int offset, int length) throws IOException {
+		if (length == 0) {
+			return 0;
+		}
+		if (!ensureAvailable()) {
+			return -1;
+		}
+		int count = Math.min(length, window.remaining());
+		window.get(bytes, offset, count);
+		return count;
+	}
+
+	@Override
+	public long skip(long count) throws IOException {
+		long position = window == null ? windowStart : windowStart + window.position();
+		long skipped = Math.max(0, Math.min(count, size - position));
+		if (window != null && skipped <= window.remaining()) {
+			window.position(window.position() + (int) skipped);
+		} else {
+			// Remap at the new position
+			windowStart = position + skipped;
+			window = null;
+			if (windowStart < size) {
+				window = channel.map(FileChannel.MapMode.READ_ONLY, windowStart, Math.min(windowSize, size - windowStart));
+			}
+		}
+		return skipped;
+	}
+
+	@Override
+	public int available() {
+		// Windows are mapped lazily: at the start, nothing is available without mapping.
+		return window == null ? 0 : window.remaining();
+	}
+
+	@Override
+	public void close() throws IOException {
+		// The mapped window is released when it's garbage collected.
+		window = null;
+		channel.close();
+	}
+}
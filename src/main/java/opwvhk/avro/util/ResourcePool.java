@@ -0,0 +1,65 @@
+package opwvhk.avro.util;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static opwvhk.avro.util.Utils.require;
+
+/**
+ * <p>Lock-free pool of resources that are expensive to create, but cannot be shared between threads (like SAX parsers or parse state).</p>
+ *
+ * <p>Unlike thread-local storage, a pool ties resources to tasks instead of threads: this keeps the number of resources bounded by the actual concurrency,
+ * also when running many short tasks on virtual threads (each of which would otherwise create its own resources). As the pool does not use locks, borrowing
+ * from it never pins a virtual thread to its carrier.</p>
+ *
+ * <p>Resources are created on demand, and at most a fixed number of idle resources is kept. Excess resources are discarded when returned.</p>
+ *
+ * @param <T> the type of the pooled resources
+ */
+public final class ResourcePool<T> {
+	private final Supplier<T> factory;
+	private final int maxIdle;
+	private final ConcurrentLinkedQueue<T> idle;
+	private final AtomicInteger idleCount;
+
+	/**
+	 * Create a resource pool.
+	 *
+	 * @param factory a factory to create new resources
+	 * @param maxIdle the maximum number of idle resources to keep
+	 */
+	public ResourcePool(Supplier<T> factory, int maxIdle) {
+		this.factory = factory;
+		this.maxIdle = require(maxIdle, m -> m >= 0, "The maximum number of idle resources cannot be negative");
+		idle = new ConcurrentLinkedQueue<>();
+		idleCount = new AtomicInteger();
+	}
+
+	/**
+	 * Borrow a resource: an idle resource if available, or a new one otherwise. The caller has exclusive use of the resource until it's released.
+	 *
+	 * @return a resource
+	 */
+	public T borrow() {
+		T resource = idle.poll();
+		if (resource == null) {
+			return factory.get();
+		}
+		idleCount.decrementAndGet();
+		return resource;
+	}
+
+	/**
+	 * Return a resource to the pool. The resource must not be used afterwards.
+	 *
+	 * @param resource a resource obtained via {@link #borrow()}
+	 */
+	public void release(T resource) {
+		if (idleCount.incrementAndGet() <= maxIdle) {
+			idle.offer(resource);
+		} else {
+			idleCount.decrementAndGet();
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package opwvhk.avro.util;
+
+import java.util.function.Function;
+
+import static opwvhk.avro.util.Utils.require;
+
+/**
+ * <p>Bounded cache to deduplicate (intern) string values, useful when many parsed records are kept in memory at the same time.</p>
+ *
+ * <p>The cache is direct-mapped: each hash code maps onto a single slot, and a new value replaces whatever value was in its slot. This keeps the memory use
+ * fixed, and makes lookups cheap: the characters are hashed and compared in place, so a cache hit allocates nothing.</p>
+ *
+ * <p>The cache is safe to use from multiple threads. Slots are read and written without locking: a thread may miss a value another thread just added, but it
+ * never sees a partially constructed value. The worst case is an extra allocation, which is the same as not using a cache.</p>
+ *
+ * <p><strong>Cached values are shared:</strong> every caller gets the same instance for the same characters. Use immutable values (like {@link String}), or
+ * make sure nobody modifies them: for example, modifying a cached {@link org.apache.avro.util.Utf8 Utf8} changes it for all users.</p>
+ *
+ * @param <T> the type of the (canonical) values, like {@link String} or {@link org.apache.avro.util.Utf8 Utf8}
+ */
+public final class StringCache<T extends CharSequence> {
+	private final Entry<T>[] entries;
+	private final int mask;
+	private final Function<String, T> valueFactory;
+
+	/**
+	 * Create a string cache.
+	 *
+	 * @param capacity     the number of values to cache; rounded up to a power of two
+	 * @param valueFactory a function to create the canonical value for a string
+	 */
+	public StringCache(int capacity, Function<String, T> valueFactory) {
+		require(capacity, c -> c > 0 && c <= 1 << 30, "The capacity must be between 1 and 2^30");
+		int size = Integer.highestOneBit(capacity - 1) << 1;
+		if (size == 0) {
+			size = 1;
+		}
+		@SuppressWarnings("unchecked")
+		Entry<T>[] newEntries = (Entry<T>[]) new Entry<?>[size];
+		entries = newEntries;
+		mask = size - 1;
+		this.valueFactory = valueFactory;
+	}
+
+	/**
+	 * Return the canonical value for the given characters.
+	 *
+	 * @param chars a sequence of characters
+	 * @return a cached value with the same characters if available, or a new value (that is also cached)
+	 */
+	public T deduplicate(CharSequence chars) {
+		int length = chars.length();
+		int hash = 0;
+		for (int i = 0; i < length; i++) {
+			hash = 31 * hash + chars.charAt(i);
+		}
+		Entry<T> entry = entries[spread(hash) & mask];
+		if (entry != null && entry.hash == hash && entry.text.contentEquals(chars)) {
+			return entry.value;
+		}
+		return add(hash, chars.toString());
+	}
+
+	/**
+	 * Return the canonical value for the given characters.
+	 *
+	 * @param chars  a character array
+	 * @param offset the offset of the first character to use
+	 * @param length the number of characters to use
+	 * @return a cached value with the same characters if available, or a new value (that is also cached)
+	 */
+	public T deduplicate(char[] chars, int offset, int length) {
+		int hash = 0;
+		for (int i = offset; i < offset + length; i++) {
+			hash = 31 * hash + chars[i];
+		}
+		Entry<T> entry = entries[spread(hash) & mask];
+		if (entry != null && entry.hash == hash && contentEquals(entry.text, chars, offset, length)) {
+			return entry.value;
+		}
+		return add(hash, new String(chars, offset, length));
+	}
+
+	private T add(int hash, String text) {
+		T value = valueFactory.apply(text);
+		entries[spread(hash) & mask] = new Entry<>(hash, text, value);
+		return value;
+	}
+
+	private static int spread(int hash) {
+		// Mix the high bits in: the lower bits of string hash codes of short strings are not well distributed.
+		return hash ^ (hash >>> 16);
+	}
+
+	private static boolean contentEquals(String text, char[] chars, int offset, int length) {
+		if (text.length() != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (text.charAt(i) != chars[offset + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private record Entry<T>(int hash, String text, T value) {
+	}
+}
@@ -1,5 +1,7 @@
 package opwvhk.avro.xml;
 
+import java.nio.CharBuffer;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xml.sax.Attributes;
@@ -25,6 +27,7 @@ class SimpleContentAdapter extends DefaultHandler {
 	private final SimpleContentHandler simpleContentHandler;
 	private final boolean enforceXsd;
 	private final StringBuilder charBuffer;
+	private final AttributesImpl filteredAttrs;
 	private int reassemblingDepth;
 	private boolean reassemblingStartTag;
 
@@ -32,6 +35,7 @@ class SimpleContentAdapter extends DefaultHandler {
 		this.simpleContentHandler = simpleContentHandler;
 		this.enforceXsd = enforceXsd;
 		charBuffer = new StringBuilder(DEFAULT_BUFFER_CAPACITY);
+		filteredAttrs = new AttributesImpl();
 	}
 
 	@Override
@@ -51,7 +55,7 @@ class SimpleContentAdapter extends DefaultHandler {
 	@Override
 	public void startElement(String uri, String localName, String qName, Attributes attributes) {
 		if (reassemblingDepth < 0) {
-			AttributesImpl filteredAttrs = new AttributesImpl();
+			filteredAttrs.clear();
 			for (int i = 0; i < attributes.getLength(); i++) {
 				String attrUri = attributes.getURI(i);
 				if (!XML_SCHEMA_DEFINITION_NAMESPACES.contains(attrUri)) {
@@ -106,15 +110,15 @@ class SimpleContentAdapter extends DefaultHandler {
 
 	@Override
 	public void characters(char[] ch, int start, int length) {
-		String content = String.valueOf(ch, start, length);
 		if (reassemblingDepth >= 0) {
 			if (reassemblingStartTag) {
 				charBuffer.append(">");
 				reassemblingStartTag = false;
 			}
-			charBuffer.append(escapeForXml(content));
+			charBuffer.append(escapeForXml(String.valueOf(ch, start, length)));
 		} else {
-			simpleContentHandler.characters(content);
+			// Handlers copy the characters immediately, so we need not copy them here
+			simpleContentHandler.characters(CharBuffer.wrap(ch, start, length));
 		}
 	}
 
@@ -77,6 +77,8 @@ interface SimpleContentHandler {
 	 * <p>Note that the argument may contain partial codepoints! Only when you combine the chunks from subsequent calls (without calls to other methods of this
 	 * interface) can you be certain all code points are complete.</p>
 	 *
+	 * <p>The characters are only valid during this call: copy them if needed.</p>
+	 *
 	 * @param chars the characters from the XML document
 	 */
 	void characters(CharSequence chars);
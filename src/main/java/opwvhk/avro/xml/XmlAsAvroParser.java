@@ -5,21 +5,46 @@ import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.SchemaFactory;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 
+import com.fasterxml.aalto.AsyncXMLInputFactory;
+import com.fasterxml.aalto.stax.InputFactoryImpl;
 import opwvhk.avro.ResolvingFailure;
 import opwvhk.avro.io.AsAvroParserBase;
+import opwvhk.avro.io.DeadLetter;
 import opwvhk.avro.io.ListResolver;
+import opwvhk.avro.io.RecordProcessor;
 import opwvhk.avro.io.RecordResolver;
+import opwvhk.avro.io.ResolverCompiler;
+import opwvhk.avro.io.ResumableDataFileWriter;
 import opwvhk.avro.io.ScalarValueResolver;
 import opwvhk.avro.io.ValueResolver;
 import opwvhk.avro.util.AvroSchemaUtils;
+import opwvhk.avro.util.ByteBufferInputStream;
+import opwvhk.avro.util.MappedFileInputStream;
+import opwvhk.avro.util.ResourcePool;
 import opwvhk.avro.xml.datamodel.Cardinality;
 import opwvhk.avro.xml.datamodel.DecimalType;
 import opwvhk.avro.xml.datamodel.EnumType;
@@ -32,6 +57,7 @@ import org.apache.avro.Schema;
 import org.apache.avro.generic.GenericData;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 
 /**
  * <p>XML parser to read Avro records.</p>
@@ -66,9 +92,37 @@ public class XmlAsAvroParser extends AsAvroParserBase<Type> {
 		       readDecimal.getScale() >= writeDecimal.scale();
 	}
 
-	private final SAXParser parser;
+	/**
+	 * The default target size of the batches of records to parse in parallel: 32MiB.
+	 */
+	public static final long DEFAULT_SPLIT_SIZE = 32 * 1024 * 1024;
+	/**
+	 * The element to wrap record spans in, when parsing them in parallel.
+	 */
+	private static final String SPAN_WRAPPER = "records";
+	/**
+	 * Resolver for binary data, encoded as hexadecimal text.
+	 */
+	private static final ScalarValueResolver BINARY_HEX_RESOLVER = new ScalarValueResolver(FixedType.BINARY_HEX::parse);
+	/**
+	 * Resolver for binary data, encoded with base64.
+	 */
+	private static final ScalarValueResolver BINARY_BASE64_RESOLVER = new ScalarValueResolver(FixedType.BINARY_BASE64::parse);
 
-	private final ValueResolver resolver;
+	private final SAXParserFactory parserFactory;
+	private final AsyncXMLInputFactory asyncInputFactory = new InputFactoryImpl();
+
+	private final ValueResolver interpretedResolver;
+	/**
+	 * The resolver used for parsing: either the interpreted resolver, or its compiled version.
+	 */
+	private ValueResolver resolver;
+	/**
+	 * Idle parse states: SAX parsers are not thread-safe, and the handler reuses its contexts (and buffers) between documents. A pool (instead of a thread
+	 * local) keeps the number of parsers bounded when parsing on many (virtual) threads.
+	 */
+	private boolean earlyTermination;
+	private ResourcePool<ParseState> parseStates = newParseStatePool();
 
 	/**
 	 * <p>Create an XML parser for the specified XSD and root element, reading data into records created by the model for the given read schema.</p>
@@ -106,10 +160,82 @@ public class XmlAsAvroParser extends AsAvroParserBase<Type> {
 		this(model, null, null, readSchema, null);
 	}
 
+	/**
+	 * <p>Create an XML parser like {@link #XmlAsAvroParser(URL, String, Schema, GenericData)}, using a plan file to skip analysing the XSD when possible.</p>
+	 *
+	 * <p>If the plan file holds the resolver plan for the same XSD, root element and read schema, the parser is created from it. Otherwise, the XSD is
+	 * analysed as usual, and the plan file is (re)written. Note that the plan is matched on the contents of the XSD at the given location: a change in an XSD
+	 * it includes or imports is not noticed.</p>
+	 *
+	 * <p>The XSD is still loaded to validate XML while parsing; only analysing it (to create the resolvers) is skipped.</p>
+	 *
+	 * @param xsdLocation the XSD defining the data to read
+	 * @param rootElement the root element that will be read
+	 * @param readSchema  the schema of the resulting records
+	 * @param model       the model to create records
+	 * @param planFile    the file to read the resolver plan from, or write it to
+	 * @throws IOException when the XSD or plan file cannot be read, or the plan file cannot be written
+	 */
+	public XmlAsAvroParser(URL xsdLocation, String rootElement, Schema readSchema, GenericData model, Path planFile) throws IOException {
+		this(model, xsdLocation, rootElement, readSchema, planFile, null);
+	}
+
 	XmlAsAvroParser(GenericData model, URL xsdLocation, String rootElement, Schema readSchema, ValueResolver resolver) throws IOException {
+		this(model, xsdLocation, rootElement, readSchema, null, resolver);
+	}
+
+	private XmlAsAvroParser(GenericData model, URL xsdLocation, String rootElement, Schema readSchema, Path planFile, ValueResolver resolver)
+			throws IOException {
 		super(model);
-		parser = createParser(xsdLocation);
-		this.resolver = resolver != null ? resolver : createResolver(xsdLocation, rootElement, readSchema);
+		parserFactory = createParserFactory(xsdLocation);
+		if (resolver == null) {
+			resolver = planFile != null && xsdLocation != null ? createPlannedResolver(xsdLocation, rootElement, readSchema, planFile) :
+					createResolver(xsdLocation, rootElement, readSchema);
+		}
+		interpretedResolver = resolver;
+		this.resolver = interpretedResolver;
+	}
+
+	private ResourcePool<ParseState> newParseStatePool() {
+		return new ResourcePool<>(this::createParseState, 4 * Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * <p>Enable or disable compiled resolvers: parse using a resolver tree that is specialized for parsing.</p>
+	 *
+	 * <p>Compiled resolvers yield the same results, but avoid most indirection and lookups while parsing. Resolvers that cannot be compiled are used
+	 * as-is.</p>
+	 *
+	 * <p>Configure this before parsing: it is not safe to change while parsing on other threads.</p>
+	 *
+	 * @param enabled whether to parse using compiled resolvers
+	 * @return this parser
+	 * @see ResolverCompiler
+	 */
+	public XmlAsAvroParser withCompiledResolvers(boolean enabled) {
+		resolver = enabled ? ResolverCompiler.compile(interpretedResolver) : interpretedResolver;
+		parseStates = newParseStatePool();
+		return this;
+	}
+
+	/**
+	 * <p>Enable or disable early termination: stop reading a document once all fields of the result that can be parsed have been seen, and the XSD allows no
+	 * further occurrences (repeated elements can always occur again).</p>
+	 *
+	 * <p>When the read schema only projects a few fields that occur near the start of large documents (like headers in an envelope), this makes parsing
+	 * independent of the document size. Note that the rest of the document is not validated either. This applies to the methods that parse a single
+	 * document: parsing records always reads the entire document.</p>
+	 *
+	 * <p>Configure this before parsing: it is not safe to change while parsing on other threads.</p>
+	 *
+	 * @param enabled whether to stop parsing documents when the result is complete
+	 * @return this parser
+	 * @see ValueResolver#isComplete(Object)
+	 */
+	public XmlAsAvroParser withEarlyTermination(boolean enabled) {
+		earlyTermination = enabled;
+		parseStates = newParseStatePool();
+		return this;
 	}
 
 	@Override
@@ -125,10 +251,10 @@ public class XmlAsAvroParser extends AsAvroParserBase<Type> {
 		resolveRules.add(new ResolveRule<>(DecimalType.class::isInstance, rawType(Schema.Type.FLOAT), (w, r) -> FLOAT_RESOLVER));
 		resolveRules.add(new ResolveRule<>(FLOATING_POINT_TYPES::contains, rawType(Schema.Type.DOUBLE), (w, r) -> DOUBLE_RESOLVER));
 		resolveRules.add(new ResolveRule<>(DecimalType.class::isInstance, rawType(Schema.Type.DOUBLE), (w, r) -> DOUBLE_RESOLVER));
-		resolveRules.add(new ResolveRule<>(t -> t == FixedType.STRING, rawType(Schema.Type.STRING), (w, r) -> STRING_RESOLVER));
+		resolveRules.add(new ResolveRule<>(t -> t == FixedType.STRING, rawType(Schema.Type.STRING), (w, r) -> createStringResolver(r)));
 		// Enums (also as string)
 		resolveRules.add(new ResolveRule<>(XmlAsAvroParser::isValidEnum, (w, r) -> createEnumResolver(r)));
-		resolveRules.add(new ResolveRule<>(EnumType.class::isInstance, rawType(Schema.Type.STRING), (w, r) -> STRING_RESOLVER));
+		resolveRules.add(new ResolveRule<>(EnumType.class::isInstance, rawType(Schema.Type.STRING), (w, r) -> createStringResolver(r)));
 		// Fixed-point number types
 		resolveRules.add(new ResolveRule<>(decimal(32), rawType(Schema.Type.INT), (w, r) -> INTEGER_RESOLVER));
 		resolveRules.add(new ResolveRule<>(decimal(64), rawType(Schema.Type.LONG), (w, r) -> LONG_RESOLVER));
@@ -140,14 +266,31 @@ public class XmlAsAvroParser extends AsAvroParserBase<Type> {
 		resolveRules.add(new ResolveRule<>(t -> t == FixedType.DATETIME, logicalType(LogicalTypes.TimestampMillis.class), (w, r) -> instantResolver));
 		resolveRules.add(new ResolveRule<>(t -> t == FixedType.DATETIME, logicalType(LogicalTypes.TimestampMicros.class), (w, r) -> instantResolver));
 		// Binary types: the XML decides how to parse them (hex or base64)
-		resolveRules.add(new ResolveRule<>(t -> t == FixedType.BINARY_HEX, rawType(Schema.Type.BYTES),
-				(w, r) -> new ScalarValueResolver(FixedType.BINARY_HEX::parse)));
-		resolveRules.add(new ResolveRule<>(t -> t == FixedType.BINARY_BASE64, rawType(Schema.Type.BYTES),
-				(w, r) -> new ScalarValueResolver(FixedType.BINARY_BASE64::parse)));
+		resolveRules.add(new ResolveRule<>(t -> t == FixedType.BINARY_HEX, rawType(Schema.Type.BYTES), (w, r) -> BINARY_HEX_RESOLVER));
+		resolveRules.add(new ResolveRule<>(t -> t == FixedType.BINARY_BASE64, rawType(Schema.Type.BYTES), (w, r) -> BINARY_BASE64_RESOLVER));
 
 		return resolveRules;
 	}
 
+	@Override
+	protected Map<String, ScalarValueResolver> binaryResolvers() {
+		return Map.of("hex", BINARY_HEX_RESOLVER, "base64", BINARY_BASE64_RESOLVER);
+	}
+
+	private ValueResolver createPlannedResolver(URL xsdLocation, String rootElement, Schema readSchema, Path planFile) throws IOException {
+		byte[] xsd;
+		try (InputStream inputStream = xsdLocation.openStream()) {
+			xsd = inputStream.readAllBytes();
+		}
+		byte[] fingerprint = planFingerprint(readSchema, xsd, rootElement.getBytes(StandardCharsets.UTF_8));
+		ValueResolver plannedResolver = loadResolverPlan(planFile, fingerprint, readSchema);
+		if (plannedResolver == null) {
+			plannedResolver = createResolver(xsdLocation, rootElement, readSchema);
+			saveResolverPlan(planFile, fingerprint, plannedResolver);
+		}
+		return plannedResolver;
+	}
+
 	private ValueResolver createResolver(URL xsdLocation, String rootElement, Schema readSchema) throws IOException {
 		if (xsdLocation == null) {
 			return createResolver(readSchema);
@@ -214,7 +357,7 @@ public class XmlAsAvroParser extends AsAvroParserBase<Type> {
 					// Special case: handle wrapped arrays in XML. The recursive call enforces that the wrapped field must be an array.
 					writeField = writeStructType.fields().get(0);
 					ValueResolver nestedResolver = createResolver(writeField.type(), elementSchema);
-					return new ListResolver(nestedResolver);
+					return new ListResolver(model, AvroSchemaUtils.nonNullableSchemaOf(readField.schema()), nestedResolver);
 				}
 				return createResolver(writeField.type(), elementSchema);
 			}
@@ -235,7 +378,7 @@ public class XmlAsAvroParser extends AsAvroParserBase<Type> {
 		return elementSchema;
 	}
 
-	private SAXParser createParser(URL xsdLocation) {
+	private SAXParserFactory createParserFactory(URL xsdLocation) {
 		try {
 			SAXParserFactory parserFactory = SAXParserFactory.newInstance();
 			parserFactory.setNamespaceAware(true);
@@ -246,6 +389,14 @@ public class XmlAsAvroParser extends AsAvroParserBase<Type> {
 				parserFactory.setSchema(schema);
 			}
 
+			return parserFactory;
+		} catch (SAXException e) {
+			throw new IllegalStateException("Failed to create parser", e);
+		}
+	}
+
+	private SAXParser newParser() {
+		try {
 			return parserFactory.newSAXParser();
 		} catch (SAXException | ParserConfigurationException e) {
 			throw new IllegalStateException("Failed to create parser", e);
@@ -263,9 +414,500 @@ public class XmlAsAvroParser extends AsAvroParserBase<Type> {
 	 * @throws SAXException when the XML cannot be parsed
 	 */
 	public <T> T parse(InputSource source, boolean enforceXsd) throws IOException, SAXException {
+		return parse(source, enforceXsd, null);
+	}
+
+	/**
+	 * Parse the given source into records, reusing a previous result if possible.
+	 *
+	 * @param source     a source of XML data
+	 * @param enforceXsd if {@code true}, parsing will fail if the XML is not valid (this includes a missing namespace)
+	 * @param reuse      a previous parse result to reuse (including nested records and arrays), or {@code null} to create a new record
+	 * @param <T>        the record type
+	 * @return the parsed record
+	 * @throws IOException  when the XML cannot be read
+	 * @throws SAXException when the XML cannot be parsed
+	 */
+	public <T> T parse(InputSource source, boolean enforceXsd, T reuse) throws IOException, SAXException {
+		// Parse state is only returned to the pool after a successful parse: on failure, the parser may be anywhere in the document.
+		ParseState parseState = parseStates.borrow();
+		XmlRecordHandler handler = parseState.handler();
+		handler.setReuse(reuse);
+		try {
+			parseState.parser().parse(source, enforceXsd ? parseState.strictAdapter() : parseState.lenientAdapter());
+		} catch (XmlRecordHandler.ParsingComplete e) {
+			// Stopped early: the rest of the document cannot change the result
+		}
+		T value = handler.getValue();
+		// Don't keep the result alive while the parse state is idle
+		handler.reset();
+		parseStates.release(parseState);
+		return value;
+	}
+
+	/**
+	 * Parse the given source into records. Does not enforce the XSD.
+	 *
+	 * @param bytes  a buffer with encoded XML data
+	 * @param offset the offset of the XML data in the buffer
+	 * @param length the length of the XML data
+	 * @param <T>    the record type
+	 * @return the parsed record
+	 * @throws IOException  when the XML cannot be read
+	 * @throws SAXException when the XML cannot be parsed
+	 */
+	public <T> T parse(byte[] bytes, int offset, int length) throws IOException, SAXException {
+		return parse(bytes, offset, length, null);
+	}
+
+	/**
+	 * Parse the given source into records, reusing a previous result if possible. Does not enforce the XSD.
+	 *
+	 * @param bytes  a buffer with encoded XML data
+	 * @param offset the offset of the XML data in the buffer
+	 * @param length the length of the XML data
+	 * @param reuse  a previous parse result to reuse (including nested records and arrays), or {@code null} to create a new record
+	 * @param <T>    the record type
+	 * @return the parsed record
+	 * @throws IOException  when the XML cannot be read
+	 * @throws SAXException when the XML cannot be parsed
+	 */
+	public <T> T parse(byte[] bytes, int offset, int length, T reuse) throws IOException, SAXException {
+		return parse(new InputSource(new ByteArrayInputStream(bytes, offset, length)), false, reuse);
+	}
+
+	/**
+	 * Parse the given source into records. Does not enforce the XSD. The position of the buffer is not changed.
+	 *
+	 * @param buffer a buffer whose remaining bytes are encoded XML data
+	 * @param <T>    the record type
+	 * @return the parsed record
+	 * @throws IOException  when the XML cannot be read
+	 * @throws SAXException when the XML cannot be parsed
+	 */
+	public <T> T parse(ByteBuffer buffer) throws IOException, SAXException {
+		return parse(buffer, null);
+	}
+
+	/**
+	 * Parse the given source into records, reusing a previous result if possible. Does not enforce the XSD. The position of the buffer is not changed.
+	 *
+	 * @param buffer a buffer whose remaining bytes are encoded XML data
+	 * @param reuse  a previous parse result to reuse (including nested records and arrays), or {@code null} to create a new record
+	 * @param <T>    the record type
+	 * @return the parsed record
+	 * @throws IOException  when the XML cannot be read
+	 * @throws SAXException when the XML cannot be parsed
+	 */
+	public <T> T parse(ByteBuffer buffer, T reuse) throws IOException, SAXException {
+		if (buffer.hasArray()) {
+			return parse(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), reuse);
+		}
+		return parse(new ByteBufferInputStream(buffer), reuse);
+	}
+
+	/**
+	 * Parse the given source into records. Does not enforce the XSD.
+	 *
+	 * @param inputStream a stream of encoded XML data
+	 * @param <T>         the record type
+	 * @return the parsed record
+	 * @throws IOException  when the XML cannot be read
+	 * @throws SAXException when the XML cannot be parsed
+	 */
+	public <T> T parse(InputStream inputStream) throws IOException, SAXException {
+		return parse(inputStream, null);
+	}
+
+	/**
+	 * Parse the given source into records, reusing a previous result if possible. Does not enforce the XSD.
+	 *
+	 * @param inputStream a stream of encoded XML data
+	 * @param reuse       a previous parse result to reuse (including nested records and arrays), or {@code null} to create a new record
+	 * @param <T>         the record type
+	 * @return the parsed record
+	 * @throws IOException  when the XML cannot be read
+	 * @throws SAXException when the XML cannot be parsed
+	 */
+	public <T> T parse(InputStream inputStream, T reuse) throws IOException, SAXException {
+		return parse(new InputSource(inputStream), false, reuse);
+	}
+
+	/**
+	 * Parse the given source into records. Does not enforce the XSD.
+	 *
+	 * <p>The file is read via memory mapping.</p>
+	 *
+	 * @param path a file with encoded XML data
+	 * @param <T>  the record type
+	 * @return the parsed record
+	 * @throws IOException  when the XML cannot be read
+	 * @throws SAXException when the XML cannot be parsed
+	 */
+	public <T> T parse(Path path) throws IOException, SAXException {
+		return parse(path, null);
+	}
+
+	/**
+	 * Parse the given source into records, reusing a previous result if possible. Does not enforce the XSD.
+	 *
+	 * <p>The file is read via memory mapping.</p>
+	 *
+	 * @param path  a file with encoded XML data
+	 * @param reuse a previous parse result to reuse (including nested records and arrays), or {@code null} to create a new record
+	 * @param <T>   the record type
+	 * @return the parsed record
+	 * @throws IOException  when the XML cannot be read
+	 * @throws SAXException when the XML cannot be parsed
+	 */
+	public <T> T parse(Path path, T reuse) throws IOException, SAXException {
+		try (InputStream inputStream = new MappedFileInputStream(path)) {
+			InputSource inputSource = new InputSource(inputStream);
+			// Allows resolving relative references (like DTDs)
+			inputSource.setSystemId(path.toUri().toString());
+			return parse(inputSource, false, reuse);
+		}
+	}
+
+	/**
+	 * <p>Parse all records in the given source: all elements at the record path are parsed as records, and the rest of the document is ignored.</p>
+	 *
+	 * <p>This allows streaming records from very large documents, as only one record at a time is kept in memory. Note that the parser must have been
+	 * created for the record element (not the document root).</p>
+	 *
+	 * @param source         a source of XML data
+	 * @param enforceXsd     if {@code true}, parsing will fail if the XML is not valid (this includes a missing namespace)
+	 * @param recordPath     the absolute path of the record elements, using local names, like {@code /envelope/record}
+	 * @param recordConsumer the consumer to receive the parsed records
+	 * @param <T>            the record type
+	 * @return the number of parsed records
+	 * @throws IOException  when the XML cannot be read
+	 * @throws SAXException when the XML cannot be parsed
+	 */
+	public <T> long parseRecords(InputSource source, boolean enforceXsd, String recordPath, Consumer<? super T> recordConsumer)
+			throws IOException, SAXException {
+		// Use a new handler: the consumer may use this parser as well
+		XmlRecordStreamHandler handler = new XmlRecordStreamHandler(new XmlRecordHandler(resolver), recordPath, recordConsumer);
+		ParseState parseState = parseStates.borrow();
+		parseState.parser().parse(source, new SimpleContentAdapter(handler, enforceXsd));
+		// Only reached after a successful parse: on failure, the parse state is discarded
+		parseStates.release(parseState);
+		return handler.getRecordCount();
+	}
+
+	/**
+	 * <p>Parse all records in the given source: all elements at the record path are parsed as records, and the rest of the document is ignored. Does not
+	 * enforce the XSD.</p>
+	 *
+	 * <p>This allows streaming records from very large documents, as only one record at a time is kept in memory. Note that the parser must have been
+	 * created for the record element (not the document root). The file is read via memory mapping.</p>
+	 *
+	 * @param path           a file with encoded XML data
+	 * @param recordPath     the absolute path of the record elements, using local names, like {@code /envelope/record}
+	 * @param recordConsumer the consumer to receive the parsed records
+	 * @param <T>            the record type
+	 * @return the number of parsed records
+	 * @throws IOException  when the XML cannot be read
+	 * @throws SAXException when the XML cannot be parsed
+	 */
+	public <T> long parseRecords(Path path, String recordPath, Consumer<? super T> recordConsumer) throws IOException, SAXException {
+		try (InputStream inputStream = new MappedFileInputStream(path)) {
+			InputSource inputSource = new InputSource(inputStream);
+			inputSource.setSystemId(path.toUri().toString());
+			return parseRecords(inputSource, false, recordPath, recordConsumer);
+		}
+	}
+
+	/**
+	 * Create a new non-blocking record feeder for a single document: feed it XML in arbitrary chunks, and receive the document as a record once it is
+	 * complete. The XML is not validated.
+	 *
+	 * @param recordConsumer the consumer to receive the parsed record
+	 * @param <T>            the record type
+	 * @return a new record feeder
+	 */
+	public <T> XmlRecordFeeder newRecordFeeder(Consumer<? super T> recordConsumer) {
+		return new XmlRecordFeeder(asyncInputFactory, new XmlRecordHandler(resolver), recordConsumer);
+	}
+
+	/**
+	 * Create a new non-blocking record feeder for a single document: feed it XML in arbitrary chunks, and receive all elements at the record path as records
+	 * as soon as they are complete. The XML is not validated.
+	 *
+	 * <p>Note that the parser must have been created for the record element (not the document root).</p>
+	 *
+	 * @param recordPath     the absolute path of the record elements, using local names, like {@code /envelope/record}
+	 * @param recordConsumer the consumer to receive the parsed records
+	 * @param <T>            the record type
+	 * @return a new record feeder
+	 */
+	public <T> XmlRecordFeeder newRecordFeeder(String recordPath, Consumer<? super T> recordConsumer) {
+		return new XmlRecordFeeder(asyncInputFactory, new XmlRecordStreamHandler(new XmlRecordHandler(resolver), recordPath, recordConsumer));
+	}
+
+	/**
+	 * Create a new reactive stream stage that parses chunks of a single XML document into a record, with backpressure: input is only requested when there is
+	 * demand for records. The XML is not validated.
+	 *
+	 * @param <T> the record type
+	 * @return a new record processor
+	 */
+	public <T> RecordProcessor<T> newRecordProcessor() {
+		return newRecordProcessor(recordConsumer -> newRecordFeeder(recordConsumer));
+	}
+
+	/**
+	 * Create a new reactive stream stage that parses chunks of a single XML document into records, with backpressure: input is only requested when there is
+	 * demand for records. All elements at the record path are parsed as records. The XML is not validated.
+	 *
+	 * <p>Note that the parser must have been created for the record element (not the document root).</p>
+	 *
+	 * @param recordPath the absolute path of the record elements, using local names, like {@code /envelope/record}
+	 * @param <T>        the record type
+	 * @return a new record processor
+	 */
+	public <T> RecordProcessor<T> newRecordProcessor(String recordPath) {
+		return newRecordProcessor(recordConsumer -> newRecordFeeder(recordPath, recordConsumer));
+	}
+
+	private <T> RecordProcessor<T> newRecordProcessor(RecordProcessor.FeederFactory<T> feederFactory) {
+		try {
+			return new RecordProcessor<>(feederFactory);
+		} catch (IOException e) {
+			// Creating XML feeders does not do I/O
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * <p>Parse all records in the given file in parallel, yielding a parallel stream of records. Records are all elements at the record path; the rest of
+	 * the document is ignored. The XML is not validated.</p>
+	 *
+	 * <p>This is a two-phase process. First, a fast byte-level scan finds the spans of the record elements (see below). Then, the spans are parsed in
+	 * batches of about 32MiB, each by a separate task, using the common fork/join pool (unless the stream is used in another pool). Each span is parsed with
+	 * the namespace declarations of its ancestors.</p>
+	 *
+	 * <p>The scan requires an encoding in which all markup is ASCII, like UTF-8 or ISO-8859-1 (not UTF-16). Also, as records are parsed separately, they
+	 * cannot use entities defined in a DTD. Note that the parser must have been created for the record element (not the document root). The file is read via
+	 * memory mapping.</p>
+	 *
+	 * @param path       a file with encoded XML data
+	 * @param recordPath the absolute path of the record elements, using local names, like {@code /envelope/record}
+	 * @param ordered    if {@code true}, the records are in file order (ordered operations merge the results of the batches in order); if {@code false},
+	 *                   the records are unordered for maximum throughput
+	 * @param <T>        the record type
+	 * @return a parallel stream of records
+	 * @throws IOException when the file cannot be scanned
+	 */
+	public <T> Stream<T> parseRecordsInParallel(Path path, String recordPath, boolean ordered) throws IOException {
+		return parseRecordsInParallel(path, recordPath, DEFAULT_SPLIT_SIZE, ordered);
+	}
+
+	/**
+	 * <p>Parse all records in the given file in parallel, yielding a parallel stream of records. Records are all elements at the record path; the rest of
+	 * the document is ignored. The XML is not validated.</p>
+	 *
+	 * <p>As {@link #parseRecordsInParallel(Path, String, boolean)}, but parses batches of about the given size.</p>
+	 *
+	 * @param path       a file with encoded XML data
+	 * @param recordPath the absolute path of the record elements, using local names, like {@code /envelope/record}
+	 * @param splitSize  the target size of the batches of records to parse in parallel
+	 * @param ordered    if {@code true}, the records are in file order (ordered operations merge the results of the batches in order); if {@code false},
+	 *                   the records are unordered for maximum throughput
+	 * @param <T>        the record type
+	 * @return a parallel stream of records
+	 * @throws IOException when the file cannot be scanned
+	 */
+	public <T> Stream<T> parseRecordsInParallel(Path path, String recordPath, long splitSize, boolean ordered) throws IOException {
+		XmlRecordScanner scanner = new XmlRecordScanner(recordPath);
+		List<List<XmlRecordScanner.RecordSpan>> batches = new ArrayList<>();
+		SpanBatcher batcher = new SpanBatcher(splitSize, batches::add);
+		scanner.scan(path, batcher);
+		batcher.flush();
+		String encoding = scanner.getEncoding();
+		String recordName = recordPath.substring(recordPath.lastIndexOf('/') + 1);
+
+		Stream<T> records = batches.parallelStream().mapMulti((batch, downstream) -> parseRecordSpans(path, encoding, recordName, batch, downstream));
+		return ordered ? records : records.unordered();
+	}
+
+	/**
+	 * <p>Convert all records in the given file into an Avro data file. Records are all elements at the record path; the rest of the document is ignored. The
+	 * conversion records periodic checkpoints: if it fails, calling this method again resumes the conversion from the last checkpoint. The XML is not
+	 * validated.</p>
+	 *
+	 * <p>The file is scanned for record elements as {@link #parseRecordsInParallel(Path, String, boolean)} does, with the same limitations. The checkpoint
+	 * includes the state of the scanner, so a resumed conversion continues scanning directly after the checkpoint. Upon success, the output is completed
+	 * (closed, without checkpoint). Upon failure, the output is closed, keeping the checkpoint.</p>
+	 *
+	 * @param path       a file with encoded XML data
+	 * @param recordPath the absolute path of the record elements, using local names, like {@code /envelope/record}
+	 * @param output     the output file, which is opened (and resumed, if it has a checkpoint) by this method
+	 * @param <T>        the record type
+	 * @return the total number of records in the output
+	 * @throws IOException when the XML cannot be read, or the output cannot be written
+	 */
+	public <T> long convertResumable(Path path, String recordPath, ResumableDataFileWriter<T> output) throws IOException {
+		XmlRecordScanner scanner = new XmlRecordScanner(recordPath);
+		String recordName = recordPath.substring(recordPath.lastIndexOf('/') + 1);
+		SpanBatcher batcher = new SpanBatcher(DEFAULT_SPLIT_SIZE, batch -> writeRecordSpans(path, scanner.getEncoding(), recordName, batch, output));
+		// Close the output also upon failure (keeping the checkpoint), so the conversion can be resumed
+		try (output) {
+			long startOffset = output.open();
+			String startState = output.getInputState();
+			// Resume scanning directly after the checkpoint; without scanner state (not written by this method), skip the records before it
+			long scanOffset = startState == null ? 0 : startOffset;
+			scanner.scan(path, scanOffset, startState, span -> {
+				if (span.start() < startOffset) {
+					// Converted before the checkpoint
+					return;
+				}
+				batcher.accept(span);
+			});
+			batcher.flush();
+			output.complete();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		return output.getRecordCount();
+	}
+
+	/**
+	 * <p>Parse all records in the given file, capturing records that fail conversion as dead letters instead of failing. Records are all elements at the
+	 * record path; the rest of the document is ignored. The XML is not validated.</p>
+	 *
+	 * <p>The file is scanned for record elements as {@link #parseRecordsInParallel(Path, String, boolean)} does, with the same limitations. Record elements
+	 * that are not well-formed, or have values that cannot be converted, are passed to the dead letter consumer (with their location and the reason they
+	 * failed), and parsing continues with the next record element. Errors in the structure of the document outside record elements still fail the parse.</p>
+	 *
+	 * @param path           a file with encoded XML data
+	 * @param recordPath     the absolute path of the record elements, using local names, like {@code /envelope/record}
+	 * @param recordConsumer the consumer to receive the parsed records
+	 * @param deadLetters    the consumer to receive the records that failed conversion
+	 * @param <T>            the record type
+	 * @return the number of parsed records (excluding dead letters)
+	 * @throws IOException when the XML cannot be read
+	 */
+	public <T> long parseRecords(Path path, String recordPath, Consumer<? super T> recordConsumer, Consumer<? super DeadLetter> deadLetters)
+			throws IOException {
+		XmlRecordScanner scanner = new XmlRecordScanner(recordPath);
+		String recordName = recordPath.substring(recordPath.lastIndexOf('/') + 1);
+		long[] count = {0};
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			SpanBatcher batcher = new SpanBatcher(DEFAULT_SPLIT_SIZE,
+					batch -> count[0] += parseRecordSpansTolerantly(path, channel, scanner.getEncoding(), recordName, batch, recordConsumer, deadLetters));
+			scanner.scan(path, batcher);
+			batcher.flush();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		return count[0];
+	}
+
+	/**
+	 * Parse record spans, capturing failing records as dead letters. After a failure, parsing resumes with the next span.
+	 */
+	private <T> long parseRecordSpansTolerantly(Path path, FileChannel channel, String encoding, String recordName, List<XmlRecordScanner.RecordSpan> spans,
+	                                            Consumer<? super T> recordConsumer, Consumer<? super DeadLetter> deadLetters) {
+		long count = 0;
+		int next = 0;
+		while (next < spans.size()) {
+			List<XmlRecordScanner.RecordSpan> remaining = spans.subList(next, spans.size());
+			int[] parsed = {0};
+			RuntimeException[] consumerFailure = {null};
+			try {
+				this.<T>parseRecordSpans(path, encoding, recordName, remaining, record -> {
+					parsed[0]++;
+					try {
+						recordConsumer.accept(record);
+					} catch (RuntimeException e) {
+						consumerFailure[0] = e;
+						throw e;
+					}
+				});
+				return count + parsed[0];
+			} catch (RuntimeException e) {
+				if (consumerFailure[0] != null) {
+					throw consumerFailure[0];
+				}
+				SAXParseException syntaxError = syntaxError(e);
+				if (syntaxError == null && e instanceof UncheckedIOException) {
+					// Failed to read the file
+					throw e;
+				}
+				XmlRecordScanner.RecordSpan failed = remaining.get(parsed[0]);
+				DeadLetter.Reason reason = syntaxError == null ? DeadLetter.Reason.INVALID_VALUE : DeadLetter.Reason.MALFORMED_INPUT;
+				Throwable failure = syntaxError == null ? e : syntaxError;
+				String message = failure.getMessage() != null ? failure.getMessage() : failure.getClass().getSimpleName();
+				try {
+					deadLetters.accept(DeadLetter.read(channel, failed.start(), failed.end(), Charset.forName(encoding), reason, message));
+				} catch (IOException ioe) {
+					throw new UncheckedIOException(ioe);
+				}
+				count += parsed[0];
+				next += parsed[0] + 1;
+			}
+		}
+		return count;
+	}
+
+	private static SAXParseException syntaxError(Throwable failure) {
+		for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+			if (cause instanceof SAXParseException syntaxError) {
+				return syntaxError;
+			}
+		}
+		return null;
+	}
+
+	private <T> void writeRecordSpans(Path path, String encoding, String recordName, List<XmlRecordScanner.RecordSpan> spans,
+	                                  ResumableDataFileWriter<T> output) {
+		// Records are parsed in order, one per span
+		Iterator<XmlRecordScanner.RecordSpan> spanIterator = spans.iterator();
+		this.<T>parseRecordSpans(path, encoding, recordName, spans, record -> {
+			try {
+				XmlRecordScanner.RecordSpan span = spanIterator.next();
+				output.write(record, span.end(), span.resumeState());
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+	}
+
+	private <T> void parseRecordSpans(Path path, String encoding, String recordName, List<XmlRecordScanner.RecordSpan> spans, Consumer<T> recordConsumer) {
+		long start = spans.get(0).start();
+		long end = spans.get(spans.size() - 1).end();
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			MappedByteBuffer batchBuffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+			// Wrap the spans in an element that declares the namespaces of their ancestors. The scanner yields these declarations byte for byte.
+			List<InputStream> inputStreams = new ArrayList<>(spans.size() + 2);
+			String startTag = "<" + SPAN_WRAPPER + spans.get(0).namespaceDeclarations() + ">";
+			inputStreams.add(new ByteArrayInputStream(startTag.getBytes(StandardCharsets.ISO_8859_1)));
+			for (XmlRecordScanner.RecordSpan span : spans) {
+				inputStreams.add(new ByteBufferInputStream(batchBuffer.slice((int) (span.start() - start), (int) (span.end() - span.start()))));
+			}
+			inputStreams.add(new ByteArrayInputStream(("</" + SPAN_WRAPPER + ">").getBytes(StandardCharsets.ISO_8859_1)));
+
+			InputSource source = new InputSource(new SequenceInputStream(Collections.enumeration(inputStreams)));
+			source.setEncoding(encoding);
+			source.setSystemId(path.toUri().toString());
+			XmlRecordStreamHandler handler = new XmlRecordStreamHandler(new XmlRecordHandler(resolver), "/" + SPAN_WRAPPER + "/" + recordName, recordConsumer);
+			ParseState parseState = parseStates.borrow();
+			parseState.parser().parse(source, new SimpleContentAdapter(handler, false));
+			// Only reached after a successful parse: on failure, the parse state is discarded
+			parseStates.release(parseState);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (SAXException e) {
+			throw new UncheckedIOException(new IOException("Failed to parse records in " + path, e));
+		}
+	}
+
+	private ParseState createParseState() {
 		XmlRecordHandler handler = new XmlRecordHandler(resolver);
-		parser.parse(source, new SimpleContentAdapter(handler, enforceXsd));
-		return handler.getValue();
+		// Parse states are used for single documents only
+		handler.setStopWhenComplete(earlyTermination);
+		return new ParseState(newParser(), handler, new SimpleContentAdapter(handler, false), new SimpleContentAdapter(handler, true));
 	}
 
 	/**
@@ -278,8 +920,61 @@ public class XmlAsAvroParser extends AsAvroParserBase<Type> {
 	 * @throws SAXException when the XML cannot be parsed
 	 */
 	public <T> T parse(URL url) throws IOException, SAXException {
+		return parse(url, null);
+	}
+
+	/**
+	 * Parse the given source into records, reusing a previous result if possible. Does not enforce the XSD.
+	 *
+	 * @param url   a location to read XML data from
+	 * @param reuse a previous parse result to reuse (including nested records and arrays), or {@code null} to create a new record
+	 * @param <T>   the record type
+	 * @return the parsed record
+	 * @throws IOException  when the XML cannot be read
+	 * @throws SAXException when the XML cannot be parsed
+	 */
+	public <T> T parse(URL url, T reuse) throws IOException, SAXException {
 		InputSource inputSource = new InputSource();
 		inputSource.setSystemId(url.toExternalForm());
-		return parse(inputSource, false);
+		return parse(inputSource, false, reuse);
+	}
+
+	/**
+	 * Groups consecutive record spans into batches of about the split size, that can be parsed as a single document: all spans in a batch have the same
+	 * namespace declarations.
+	 */
+	private static final class SpanBatcher implements Consumer<XmlRecordScanner.RecordSpan> {
+		private final long splitSize;
+		private final Consumer<List<XmlRecordScanner.RecordSpan>> batchConsumer;
+		private List<XmlRecordScanner.RecordSpan> batch;
+
+		private SpanBatcher(long splitSize, Consumer<List<XmlRecordScanner.RecordSpan>> batchConsumer) {
+			this.splitSize = splitSize;
+			this.batchConsumer = batchConsumer;
+			batch = new ArrayList<>();
+		}
+
+		@Override
+		public void accept(XmlRecordScanner.RecordSpan span) {
+			if (!batch.isEmpty() && (!batch.get(0).namespaceDeclarations().equals(span.namespaceDeclarations()) ||
+			                         span.end() - batch.get(0).start() > splitSize)) {
+				flush();
+			}
+			batch.add(span);
+		}
+
+		/**
+		 * Pass the current batch (if not empty) to the batch consumer, and start a new one. Each batch is a new list: consumers may keep it.
+		 */
+		private void flush() {
+			if (!batch.isEmpty()) {
+				List<XmlRecordScanner.RecordSpan> fullBatch = batch;
+				batch = new ArrayList<>();
+				batchConsumer.accept(fullBatch);
+			}
+		}
+	}
+
+	private record ParseState(SAXParser parser, XmlRecordHandler handler, SimpleContentAdapter lenientAdapter, SimpleContentAdapter strictAdapter) {
 	}
 }
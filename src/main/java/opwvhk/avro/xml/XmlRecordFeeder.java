@@ -0,0 +1,176 @@
+package opwvhk.avro.xml;
+
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+import com.fasterxml.aalto.AsyncByteBufferFeeder;
+import com.fasterxml.aalto.AsyncXMLInputFactory;
+import com.fasterxml.aalto.AsyncXMLStreamReader;
+import opwvhk.avro.io.RecordFeeder;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * <p>Push-style XML parser for records: feed it bytes in arbitrary chunks, and receive records as soon as they are complete.</p>
+ *
+ * <p>This parser is non-blocking: it parses all bytes it's fed, and then returns. It's intended for services that receive XML in fragments (for example on
+ * event-loop threads), so they need not block a thread for the whole document. The XML is not validated.</p>
+ *
+ * <p>The feeder parses a single XML document. Either the document (root element) is the record, or all elements at a record path are.</p>
+ *
+ * <p>Feeders are not thread-safe: feed them from one thread at a time. They are not tied to a thread though.</p>
+ *
+ * @see XmlAsAvroParser#newRecordFeeder(Consumer)
+ * @see XmlAsAvroParser#newRecordFeeder(String, Consumer)
+ */
+public final class XmlRecordFeeder implements RecordFeeder {
+	private final AsyncXMLStreamReader<AsyncByteBufferFeeder> reader;
+	private final SimpleContentAdapter adapter;
+	private final XmlRecordHandler documentHandler;
+	private final Consumer<Object> recordConsumer;
+	private final AttributesImpl attributes;
+	private boolean documentEnded;
+
+	/**
+	 * Create a feeder that parses the document as a record.
+	 */
+	<T> XmlRecordFeeder(AsyncXMLInputFactory inputFactory, XmlRecordHandler documentHandler, Consumer<? super T> recordConsumer) {
+		this(inputFactory, documentHandler, documentHandler, recordConsumer);
+	}
+
+	/**
+	 * Create a feeder that streams records from the document.
+	 */
+	XmlRecordFeeder(AsyncXMLInputFactory inputFactory, XmlRecordStreamHandler recordStreamHandler) {
+		this(inputFactory, recordStreamHandler, null, null);
+	}
+
+	private <T> XmlRecordFeeder(AsyncXMLInputFactory inputFactory, SimpleContentHandler handler, XmlRecordHandler documentHandler,
+	                            Consumer<? super T> recordConsumer) {
+		reader = inputFactory.createAsyncForByteBuffer();
+		adapter = new SimpleContentAdapter(handler, false);
+		this.documentHandler = documentHandler;
+		@SuppressWarnings("unchecked")
+		Consumer<Object> consumer = (Consumer<Object>) recordConsumer;
+		this.recordConsumer = consumer;
+		attributes = new AttributesImpl();
+		documentEnded = false;
+		adapter.startDocument();
+	}
+
+	/**
+	 * Feed a chunk of XML data. Parses all bytes, and passes any completed records to the consumer.
+	 *
+	 * <p>The bytes are parsed before this method returns: afterwards, the buffer can be reused.</p>
+	 *
+	 * @param buffer a buffer whose remaining bytes are the next chunk of encoded XML data
+	 * @throws SAXException when the XML cannot be parsed
+	 */
+	@Override
+	public void feed(ByteBuffer buffer) throws SAXException {
+		try {
+			reader.getInputFeeder().feedInput(buffer);
+			parseAvailableEvents();
+		} catch (XMLStreamException e) {
+			throw parseException(e);
+		}
+	}
+
+	/**
+	 * Feed a chunk of XML data. Parses all bytes, and passes any completed records to the consumer.
+	 *
+	 * <p>The bytes are parsed before this method returns: afterwards, the array can be reused.</p>
+	 *
+	 * @param bytes  a buffer with the next chunk of encoded XML data
+	 * @param offset the offset of the XML data in the buffer
+	 * @param length the length of the XML data
+	 * @throws SAXException when the XML cannot be parsed
+	 */
+	public void feed(byte[] bytes, int offset, int length) throws SAXException {
+		feed(ByteBuffer.wrap(bytes, offset, length));
+	}
+
+	/**
+	 * Signal the end of the input. Parses any remaining events, and fails if the document is incomplete.
+	 *
+	 * @throws SAXException when the XML cannot be parsed, or the document is incomplete
+	 */
+	@Override
+	public void endOfInput() throws SAXException {
+		try {
+			reader.getInputFeeder().endOfInput();
+			parseAvailableEvents();
+			if (!documentEnded) {
+				throw new SAXParseException("Unexpected end of input: the document is incomplete", null);
+			}
+		} catch (XMLStreamException e) {
+			throw parseException(e);
+		}
+	}
+
+	/**
+	 * Translate the available StAX events into SAX events.
+	 */
+	private void parseAvailableEvents() throws XMLStreamException {
+		int event;
+		while (reader.hasNext() && (event = reader.next()) != AsyncXMLStreamReader.EVENT_INCOMPLETE) {
+			switch (event) {
+				case XMLStreamConstants.START_ELEMENT -> {
+					attributes.clear();
+					for (int i = 0; i < reader.getAttributeCount(); i++) {
+						attributes.addAttribute(namespaceUri(reader.getAttributeNamespace(i)), reader.getAttributeLocalName(i),
+								qName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)), reader.getAttributeType(i), reader.getAttributeValue(i));
+					}
+					adapter.startElement(namespaceUri(reader.getNamespaceURI()), reader.getLocalName(), qName(reader.getPrefix(), reader.getLocalName()),
+							attributes);
+				}
+				case XMLStreamConstants.END_ELEMENT ->
+						adapter.endElement(namespaceUri(reader.getNamespaceURI()), reader.getLocalName(), qName(reader.getPrefix(), reader.getLocalName()));
+				case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA ->
+						adapter.characters(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+				case XMLStreamConstants.SPACE -> adapter.ignorableWhitespace(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+				case XMLStreamConstants.END_DOCUMENT -> {
+					documentEnded = true;
+					adapter.endDocument();
+					if (documentHandler != null) {
+						recordConsumer.accept(documentHandler.getValue());
+					}
+				}
+				default -> {
+					// Nothing to do: the start of the document was handled upon construction, and we ignore comments, processing instructions, etc.
+				}
+			}
+		}
+	}
+
+	private static String namespaceUri(String uri) {
+		// SAX uses an empty string for 'no namespace'
+		return uri == null ? "" : uri;
+	}
+
+	private static String qName(String prefix, String localName) {
+		return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+	}
+
+	private static SAXParseException parseException(XMLStreamException e) {
+		Location location = e.getLocation();
+		if (location == null) {
+			return new SAXParseException(e.getMessage(), null, null, -1, -1, e);
+		}
+		return new SAXParseException(e.getMessage(), location.getPublicId(), location.getSystemId(), location.getLineNumber(), location.getColumnNumber(), e);
+	}
+
+	@Override
+	public void close() {
+		try {
+			reader.close();
+		} catch (XMLStreamException e) {
+			// Closing a parser for in-memory input cannot fail
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -1,22 +1,74 @@
 package opwvhk.avro.xml;
 
-import java.util.ArrayDeque;
-import java.util.Deque;
+import java.util.Arrays;
+import java.util.regex.Pattern;
 
+import opwvhk.avro.io.FieldDispatch;
+import opwvhk.avro.io.RecordResolver;
 import opwvhk.avro.io.ValueResolver;
 import org.xml.sax.Attributes;
 
 import static java.util.Objects.requireNonNullElse;
 
+/**
+ * Handler for XML content, yielding a parse result.
+ *
+ * <p>The handler keeps the parse state in contexts, indexed by depth. Contexts (including their character buffers) are reused, both within and between
+ * documents.</p>
+ *
+ * <p>If a record resolver has a {@link FieldDispatch}, the handler uses it for scalar fields (both elements and attributes): these are converted and set
+ * without resolving them.</p>
+ *
+ * <p>Instances are not thread-safe, but can be reused for any number of subsequent documents.</p>
+ */
 class XmlRecordHandler implements SimpleContentHandler {
+	private static final int INITIAL_DEPTH = 16;
+	private static final Pattern LEADING_EMPTY_LINE = Pattern.compile("^\\s*?\\R");
 	private final ValueResolver rootHandler;
-	private final Deque<HandlerContext> contextStack;
+	private HandlerContext[] contexts;
+	private int depth;
+	private Object reuse;
 	private Object value;
+	private boolean stopWhenComplete;
 
 	XmlRecordHandler(ValueResolver rootHandler) {
 		this.rootHandler = rootHandler;
-		contextStack = new ArrayDeque<>();
+		contexts = new HandlerContext[INITIAL_DEPTH];
+		for (int i = 0; i < contexts.length; i++) {
+			contexts[i] = new HandlerContext();
+		}
+		depth = -1;
+		reuse = null;
 		value = null;
+		stopWhenComplete = false;
+	}
+
+	/**
+	 * Set a previous parse result to reuse for the next document.
+	 *
+	 * @param reuse a previous parse result to reuse, or {@code null} to create a new result
+	 */
+	void setReuse(Object reuse) {
+		this.reuse = reuse;
+	}
+
+	/**
+	 * Stop parsing documents as soon as the root resolver reports the result is complete, by throwing {@link ParsingComplete} (which the caller must catch).
+	 *
+	 * @param stopWhenComplete whether to stop parsing when the result is complete
+	 * @see ValueResolver#isComplete(Object)
+	 */
+	void setStopWhenComplete(boolean stopWhenComplete) {
+		this.stopWhenComplete = stopWhenComplete;
+	}
+
+	/**
+	 * Forget the last parse result, and any state of an unfinished document. Use this before keeping the handler around idle, so it doesn't keep parse
+	 * results alive.
+	 */
+	void reset() {
+		startDocument();
+		reuse = null;
 	}
 
 	public <T> T getValue() {
@@ -25,7 +77,9 @@ class XmlRecordHandler implements SimpleContentHandler {
 
 	@Override
 	public void startDocument() {
-		contextStack.clear();
+		while (depth >= 0) {
+			contexts[depth--].clear();
+		}
 		value = null;
 	}
 
@@ -36,62 +90,137 @@ class XmlRecordHandler implements SimpleContentHandler {
 
 	@Override
 	public boolean startElement(String uri, String localName, String qName, Attributes attributes) {
-		HandlerContext parentContext = contextStack.peek();
 		HandlerContext context;
-		if (parentContext == null) {
-			context = new HandlerContext(rootHandler);
+		if (depth < 0) {
+			context = push();
+			context.init(rootHandler, reuse);
+			reuse = null;
 		} else {
+			HandlerContext parentContext = contexts[depth];
 			String element = requireNonNullElse(localName, qName);
-			context = parentContext.resolve(element);
+			int scalarField = parentContext.scalarField(element);
+			context = push();
+			if (scalarField >= 0) {
+				context.initScalar(scalarField);
+			} else {
+				context.init(parentContext.resolver.resolve(element), parentContext.resolver.previousValue(parentContext.collector, element));
+			}
 		}
-		contextStack.push(context);
 
 		for (int i = 0; i < attributes.getLength(); i++) {
 			String attribute = requireNonNullElse(attributes.getLocalName(i), attributes.getQName(i));
-			Object attrValue = context.resolveValue(attribute, attributes.getValue(i));
-			context.addProperty(attribute, attrValue);
+			int scalarField = context.scalarField(attribute);
+			if (scalarField >= 0) {
+				context.setScalar(scalarField, attributes.getValue(i));
+			} else {
+				Object attrValue = context.resolveValue(attribute, attributes.getValue(i));
+				context.addProperty(attribute, attrValue);
+			}
 		}
+		stopIfComplete();
 
 		return context.shouldParseContent();
 	}
 
+	private HandlerContext push() {
+		depth++;
+		if (depth == contexts.length) {
+			contexts = Arrays.copyOf(contexts, depth * 2);
+			for (int i = depth; i < contexts.length; i++) {
+				contexts[i] = new HandlerContext();
+			}
+		}
+		return contexts[depth];
+	}
+
 	@Override
 	public void endElement(String uri, String localName, String qName) {
-		HandlerContext context = contextStack.pop();
+		HandlerContext context = contexts[depth--];
+		if (context.scalarField >= 0) {
+			// The parent record converts and sets the value directly
+			contexts[depth].setScalar(context.scalarField, context.scalarContent());
+			context.clear();
+			stopIfComplete();
+			return;
+		}
 		Object value = context.complete();
+		context.clear();
 
-		HandlerContext parentContext = contextStack.peek();
-		if (parentContext != null) {
+		if (depth >= 0) {
 			String element = requireNonNullElse(localName, qName);
-			parentContext.addProperty(element, value);
+			contexts[depth].addProperty(element, value);
+			stopIfComplete();
 		} else {
 			this.value = value;
 		}
 	}
 
+	private void stopIfComplete() {
+		if (stopWhenComplete && depth == 0 && contexts[0].isComplete()) {
+			// The rest of the document cannot change the result
+			HandlerContext context = contexts[depth--];
+			value = context.complete();
+			context.clear();
+			throw ParsingComplete.INSTANCE;
+		}
+	}
+
 	@Override
 	public void characters(CharSequence chars) {
-		HandlerContext context = contextStack.element();
-		context.appendChars(chars);
+		contexts[depth].appendChars(chars);
 	}
 
 	private static class HandlerContext {
-		private final ValueResolver resolver;
 		private final StringBuilder buffer;
+		private ValueResolver resolver;
 		private Object collector;
+		private FieldDispatch dispatch;
+		private int scalarField = -1;
 
-		private HandlerContext(ValueResolver resolver) {
-			this.resolver = resolver;
+		private HandlerContext() {
 			buffer = new StringBuilder();
-			collector = resolver.createCollector();
 		}
 
-		private boolean shouldParseContent() {
-			return resolver.parseContent();
+		private void init(ValueResolver resolver, Object reuse) {
+			this.resolver = resolver;
+			buffer.setLength(0);
+			collector = resolver.createCollector(reuse);
+			dispatch = resolver instanceof RecordResolver recordResolver ? recordResolver.fieldDispatch() : null;
+		}
+
+		/**
+		 * Initialize the context for a scalar field of the parent record, which sets the value via its {@link FieldDispatch}.
+		 */
+		private void initScalar(int field) {
+			// Like any scalar resolver (and the field dispatch only has those that parse content), this ignores attributes and parses the content
+			resolver = ValueResolver.NOOP;
+			buffer.setLength(0);
+			scalarField = field;
+		}
+
+		private void clear() {
+			resolver = null;
+			collector = null;
+			dispatch = null;
+			scalarField = -1;
 		}
 
-		private HandlerContext resolve(String name) {
-			return new HandlerContext(resolver.resolve(name));
+		private int scalarField(String name) {
+			return dispatch != null ? dispatch.scalarField(name) : -1;
+		}
+
+		private void setScalar(int field, String value) {
+			dispatch.setScalar(collector, field, value);
+		}
+
+		private String scalarContent() {
+			String content = bufferContent();
+			buffer.setLength(0);
+			return content.isEmpty() ? null : content;
+		}
+
+		private boolean shouldParseContent() {
+			return resolver.parseContent();
 		}
 
 		private Object resolveValue(String name, String value) {
@@ -105,13 +234,13 @@ class XmlRecordHandler implements SimpleContentHandler {
 			collector = resolver.addProperty(collector, name, value);
 		}
 
+		private boolean isComplete() {
+			return resolver.isComplete(collector);
+		}
+
 		private Object complete() {
-			String bufferContent = buffer.toString();
+			String content = bufferContent();
 			buffer.setLength(0);
-
-			String indentedBufferContent = bufferContent.replaceAll("^\\s*?\\R","").stripTrailing();
-			String unindentedBufferContent = indentedBufferContent.stripIndent();
-			String content = resolver.parseContent() ? unindentedBufferContent.strip() : unindentedBufferContent;
 			if (!content.isEmpty()) {
 				collector = resolver.addContent(collector, content);
 			}
@@ -120,8 +249,54 @@ class XmlRecordHandler implements SimpleContentHandler {
 			return collector;
 		}
 
+		private String bufferContent() {
+			if (isBlank(buffer)) {
+				// Includes the (very common) case of an element with only child elements.
+				return "";
+			}
+			if (!hasLineTerminator(buffer)) {
+				// A single line: unindenting it is the same as stripping it
+				return buffer.toString().strip();
+			}
+			String indentedBufferContent = LEADING_EMPTY_LINE.matcher(buffer).replaceAll("").stripTrailing();
+			String unindentedBufferContent = indentedBufferContent.stripIndent();
+			return resolver.parseContent() ? unindentedBufferContent.strip() : unindentedBufferContent;
+		}
+
+		private static boolean isBlank(CharSequence chars) {
+			for (int i = 0; i < chars.length(); i++) {
+				if (!Character.isWhitespace(chars.charAt(i))) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private static boolean hasLineTerminator(CharSequence chars) {
+			for (int i = 0; i < chars.length(); i++) {
+				char c = chars.charAt(i);
+				// All characters matched by the regular expression \R
+				if (c >= '\n' && c <= '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+					return true;
+				}
+			}
+			return false;
+		}
+
 		private void appendChars(CharSequence chars) {
 			buffer.append(chars);
 		}
 	}
+
+	/**
+	 * Signals that parsing stopped early, because the result is complete. Does not have a stack trace: it's not an error.
+	 */
+	static final class ParsingComplete extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+		private static final ParsingComplete INSTANCE = new ParsingComplete();
+
+		private ParsingComplete() {
+			super("Parsing complete", null, false, false);
+		}
+	}
 }
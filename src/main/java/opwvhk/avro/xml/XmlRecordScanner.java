@@ -0,0 +1,366 @@
+package opwvhk.avro.xml;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import opwvhk.avro.util.ByteRange;
+import opwvhk.avro.util.MappedFileInputStream;
+
+import static opwvhk.avro.util.Utils.require;
+
+/**
+ * <p>Fast byte-level scanner to find the spans of record elements in an XML file: all elements at a record path.</p>
+ *
+ * <p>The scanner does not parse the XML, and only checks its structure as far as needed to find elements. It requires an encoding in which all markup is
+ * ASCII, like UTF-8 or ISO-8859-1 (not UTF-16). As record elements are parsed separately, they cannot use entities defined in a DTD.</p>
+ *
+ * <p>For each span, the scanner also yields the namespace declarations of the ancestor elements, so the span can be parsed with the same namespaces. It also
+ * yields the state of the scanner after the span, so a later scan can resume directly after it.</p>
+ */
+class XmlRecordScanner {
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final Pattern NAMESPACE_DECLARATION = Pattern.compile("\\s(xmlns(?::[^\\s=]+)?)\\s*=\\s*(\"[^\"]*\"|'[^']*')");
+	private static final Pattern ENCODING_DECLARATION = Pattern.compile("\\sencoding\\s*=\\s*[\"']([^\"']+)[\"']");
+	/**
+	 * Separator for the parts of the resume state. Characters in XML files cannot be NUL.
+	 */
+	private static final String RESUME_STATE_SEPARATOR = "\0";
+
+	private final String[] recordPath;
+	/**
+	 * Namespace declarations of the (matching) ancestors of records, by depth.
+	 */
+	private final String[] declarations;
+	private final byte[] buffer;
+	private final StringBuilder text;
+	private InputStream input;
+	private int bufferLength;
+	private int bufferPosition;
+	private long bufferStart;
+	private String encoding;
+	/**
+	 * The resume state for the current record ancestors (cached: it changes rarely).
+	 */
+	private String resumeState;
+
+	/**
+	 * Create a scanner for record elements.
+	 *
+	 * @param recordPath the absolute path of the record elements, using local names, like {@code /envelope/record}
+	 */
+	XmlRecordScanner(String recordPath) {
+		require(recordPath, p -> p.matches("(/[^/]+)+"), "The record path must be absolute, like '/envelope/record'");
+		this.recordPath = recordPath.substring(1).split("/");
+		declarations = new String[this.recordPath.length];
+		buffer = new byte[BUFFER_SIZE];
+		text = new StringBuilder();
+	}
+
+	/**
+	 * Return the encoding of the last scanned file, as declared in its XML declaration. Defaults to UTF-8.
+	 *
+	 * @return the encoding of the XML file
+	 */
+	String getEncoding() {
+		return encoding;
+	}
+
+	/**
+	 * Scan the file for record elements.
+	 *
+	 * @param path         the XML file to scan
+	 * @param spanConsumer the consumer to receive the record spans, in file order
+	 * @throws IOException when the file cannot be read, or is not well-formed
+	 */
+	void scan(Path path, Consumer<RecordSpan> spanConsumer) throws IOException {
+		scan(path, 0, null, spanConsumer);
+	}
+
+	/**
+	 * Scan the file for record elements, resuming directly after a record span that was found by an earlier scan.
+	 *
+	 * @param path         the XML file to scan
+	 * @param offset       the end of the record span to resume after, or 0 to scan the entire file
+	 * @param resumeState  the resume state of the record span to resume after, or {@code null} to scan the entire file
+	 * @param spanConsumer the consumer to receive the record spans, in file order
+	 * @throws IOException when the file cannot be read, or is not well-formed
+	 * @see RecordSpan#resumeState()
+	 */
+	void scan(Path path, long offset, String resumeState, Consumer<RecordSpan> spanConsumer) throws IOException {
+		encoding = StandardCharsets.UTF_8.name();
+		this.resumeState = null;
+		int depth = 0;
+		if (resumeState != null) {
+			String[] parts = resumeState.split(RESUME_STATE_SEPARATOR, -1);
+			if (parts.length != recordPath.length) {
+				throw new IOException("Cannot resume: the scanner state is for another record path");
+			}
+			// After a record, the scanner is inside the (matching) record ancestors
+			encoding = parts[0];
+			System.arraycopy(parts, 1, declarations, 1, parts.length - 1);
+			depth = recordPath.length - 1;
+		} else if (offset != 0) {
+			throw new IllegalArgumentException("Cannot resume without scanner state");
+		}
+		bufferLength = 0;
+		bufferPosition = 0;
+		bufferStart = offset;
+		try (InputStream inputStream = new MappedFileInputStream(path, new ByteRange(offset, Long.MAX_VALUE), MappedFileInputStream.DEFAULT_WINDOW_SIZE)) {
+			input = inputStream;
+			scan(depth, spanConsumer);
+		} finally {
+			input = null;
+		}
+	}
+
+	private void scan(int initialDepth, Consumer<RecordSpan> spanConsumer) throws IOException {
+		int depth = initialDepth;
+		int matchedDepth = initialDepth;
+		long recordStart = -1;
+		String namespaceDeclarations = initialDepth > 0 ? mergeDeclarations() : null;
+
+		int b;
+		while ((b = read()) != -1) {
+			if (b != '<') {
+				continue;
+			}
+			long tagStart = position() - 1;
+			b = requireRead();
+			if (b == '?') {
+				String instruction = readUntil("?>", tagStart == 0);
+				Matcher matcher = ENCODING_DECLARATION.matcher(instruction);
+				if (tagStart == 0 && instruction.startsWith("xml") && matcher.find()) {
+					encoding = matcher.group(1);
+					resumeState = null;
+				}
+			} else if (b == '!') {
+				skipDeclarationOrComment();
+			} else if (b == '/') {
+				//noinspection StatementWithEmptyBody
+				while (requireRead() != '>') {
+					// Skip the end tag
+				}
+				if (recordStart >= 0 && depth == recordPath.length) {
+					spanConsumer.accept(new RecordSpan(recordStart, position(), namespaceDeclarations, resumeState()));
+					recordStart = -1;
+				}
+				if (matchedDepth == depth) {
+					matchedDepth--;
+				}
+				depth--;
+			} else {
+				// Outside records, we need the tag to match the record path
+				String tag = recordStart < 0 ? (char) b + readStartTag(true) : readStartTag(false);
+				boolean emptyElement = tag.endsWith("/");
+				depth++;
+				if (recordStart < 0 && matchedDepth == depth - 1 && recordPath[matchedDepth].equals(localName(tag))) {
+					matchedDepth++;
+					if (matchedDepth < recordPath.length) {
+						declarations[matchedDepth] = namespaceDeclarations(tag);
+						namespaceDeclarations = null;
+						resumeState = null;
+					} else {
+						if (namespaceDeclarations == null) {
+							namespaceDeclarations = mergeDeclarations();
+						}
+						recordStart = tagStart;
+					}
+				}
+				if (emptyElement) {
+					if (recordStart >= 0 && depth == recordPath.length) {
+						spanConsumer.accept(new RecordSpan(recordStart, position(), namespaceDeclarations, resumeState()));
+						recordStart = -1;
+					}
+					if (matchedDepth == depth) {
+						matchedDepth--;
+					}
+					depth--;
+				}
+			}
+		}
+		if (depth != 0) {
+			throw new IOException("Unexpected end of file: the XML is not well-formed");
+		}
+	}
+
+	private String resumeState() {
+		if (resumeState == null) {
+			StringBuilder result = new StringBuilder(encoding);
+			for (int i = 1; i < declarations.length; i++) {
+				result.append(RESUME_STATE_SEPARATOR).append(declarations[i]);
+			}
+			resumeState = result.toString();
+		}
+		return resumeState;
+	}
+
+	private static String localName(String tag) {
+		int end = 0;
+		while (end < tag.length() && !isNameEnd(tag.charAt(end))) {
+			end++;
+		}
+		return tag.substring(tag.lastIndexOf(':', end - 1) + 1, end);
+	}
+
+	private static boolean isNameEnd(char c) {
+		return c == '/' || Character.isWhitespace(c);
+	}
+
+	private static String namespaceDeclarations(String tag) {
+		Matcher matcher = NAMESPACE_DECLARATION.matcher(tag);
+		StringBuilder result = new StringBuilder();
+		while (matcher.find()) {
+			result.append(' ').append(matcher.group(1)).append('=').append(matcher.group(2));
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Merge the namespace declarations of all record ancestors; declarations of nested elements take precedence.
+	 */
+	private String mergeDeclarations() {
+		Map<String, String> declarationsByPrefix = new LinkedHashMap<>();
+		for (int i = 1; i < declarations.length; i++) {
+			Matcher matcher = NAMESPACE_DECLARATION.matcher(declarations[i]);
+			while (matcher.find()) {
+				declarationsByPrefix.put(matcher.group(1), matcher.group(2));
+			}
+		}
+		StringBuilder result = new StringBuilder();
+		declarationsByPrefix.forEach((name, value) -> result.append(' ').append(name).append('=').append(value));
+		return result.toString();
+	}
+
+	/**
+	 * Skip comments, CDATA sections and DTD declarations, after reading {@code "<!"}.
+	 */
+	private void skipDeclarationOrComment() throws IOException {
+		int b = requireRead();
+		if (b == '-') {
+			readUntil("-->", false);
+		} else if (b == '[') {
+			readUntil("]]>", false);
+		} else {
+			// A DTD declaration, possibly with an internal subset
+			int nesting = 0;
+			int quote = 0;
+			while (b != '>' || nesting > 0 || quote != 0) {
+				if (quote != 0) {
+					quote = b == quote ? 0 : quote;
+				} else if (b == '"' || b == '\'') {
+					quote = b;
+				} else if (b == '[') {
+					nesting++;
+				} else if (b == ']') {
+					nesting--;
+				}
+				b = requireRead();
+			}
+		}
+	}
+
+	/**
+	 * Read a start tag (excluding the first character), respecting quoted attribute values.
+	 *
+	 * @param collect whether to return the tag
+	 * @return the (rest of the) tag, excluding the final {@code '>'}, or an empty string / {@code "/"} if not collecting
+	 */
+	private String readStartTag(boolean collect) throws IOException {
+		StringBuilder tag = collect ? new StringBuilder() : null;
+		int previous = 0;
+		int quote = 0;
+		int b;
+		while ((b = requireRead()) != '>' || quote != 0) {
+			if (quote != 0) {
+				quote = b == quote ? 0 : quote;
+			} else if (b == '"' || b == '\'') {
+				quote = b;
+			}
+			if (collect) {
+				tag.append((char) b);
+			}
+			previous = b;
+		}
+		if (collect) {
+			return tag.toString();
+		}
+		return previous == '/' ? "/" : "";
+	}
+
+	/**
+	 * Read until (and including) the terminator.
+	 *
+	 * @param terminator the text to read until
+	 * @param collect    whether to return the text read
+	 * @return the text read (excluding the terminator) if collecting, or an empty string otherwise
+	 */
+	private String readUntil(String terminator, boolean collect) throws IOException {
+		text.setLength(0);
+		int length = terminator.length();
+		while (text.length() < length || !endsWith(text, terminator)) {
+			text.append((char) requireRead());
+			if (!collect && text.length() > 2 * length) {
+				// Keep just enough to detect the terminator
+				text.delete(0, text.length() - length);
+			}
+		}
+		if (collect) {
+			text.setLength(text.length() - length);
+			return text.toString();
+		}
+		return "";
+	}
+
+	private static boolean endsWith(StringBuilder text, String suffix) {
+		int offset = text.length() - suffix.length();
+		for (int i = 0; i < suffix.length(); i++) {
+			if (text.charAt(offset + i) != suffix.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private long position() {
+		return bufferStart + bufferPosition;
+	}
+
+	private int requireRead() throws IOException {
+		int b = read();
+		if (b == -1) {
+			throw new IOException("Unexpected end of file: the XML is not well-formed");
+		}
+		return b;
+	}
+
+	private int read() throws IOException {
+		if (bufferPosition == bufferLength) {
+			bufferStart += bufferLength;
+			bufferPosition = 0;
+			bufferLength = Math.max(0, input.readNBytes(buffer, 0, buffer.length));
+			if (bufferLength == 0) {
+				return -1;
+			}
+		}
+		return buffer[bufferPosition++] & 0xff;
+	}
+
+	/**
+	 * The span of a record element in a file.
+	 *
+	 * @param start                 the start of the element (inclusive)
+	 * @param end                   the end of the element (exclusive)
+	 * @param namespaceDeclarations the namespace declarations in scope for the element, as XML attributes (separated and preceded by a space)
+	 * @param resumeState           the state of the scanner after the element (the encoding, and the namespace declarations of the ancestors), to resume
+	 *                              scanning at its end
+	 */
+	record RecordSpan(long start, long end, String namespaceDeclarations, String resumeState) {
+	}
+}
@@ -0,0 +1,97 @@
+package opwvhk.avro.xml;
+
+import java.util.function.Consumer;
+
+import org.xml.sax.Attributes;
+
+import static java.util.Objects.requireNonNullElse;
+import static opwvhk.avro.util.Utils.require;
+
+/**
+ * Handler that streams records from a larger XML document: all elements at a given path are parsed as records, and the rest of the document is ignored.
+ *
+ * <p>Paths are absolute, and consist of local element names separated by slashes, like {@code /envelope/record}.</p>
+ */
+class XmlRecordStreamHandler implements SimpleContentHandler {
+	private final XmlRecordHandler recordHandler;
+	private final String[] recordPath;
+	private final Consumer<Object> recordConsumer;
+	/**
+	 * The depth of the current element, or 0 if outside the root element.
+	 */
+	private int depth;
+	/**
+	 * The number of elements in the record path that match the current path.
+	 */
+	private int matchedDepth;
+	private long recordCount;
+
+	<T> XmlRecordStreamHandler(XmlRecordHandler recordHandler, String recordPath, Consumer<? super T> recordConsumer) {
+		this.recordHandler = recordHandler;
+		require(recordPath, p -> p.matches("(/[^/]+)+"), "The record path must be absolute, like '/envelope/record'");
+		this.recordPath = recordPath.substring(1).split("/");
+		@SuppressWarnings("unchecked")
+		Consumer<Object> consumer = (Consumer<Object>) recordConsumer;
+		this.recordConsumer = consumer;
+	}
+
+	long getRecordCount() {
+		return recordCount;
+	}
+
+	@Override
+	public void startDocument() {
+		depth = 0;
+		matchedDepth = 0;
+		recordCount = 0;
+	}
+
+	@Override
+	public void endDocument() {
+		// Nothing to do.
+	}
+
+	private boolean inRecord() {
+		return matchedDepth == recordPath.length && depth >= matchedDepth;
+	}
+
+	@Override
+	public boolean startElement(String uri, String localName, String qName, Attributes attributes) {
+		depth++;
+		if (inRecord()) {
+			return recordHandler.startElement(uri, localName, qName, attributes);
+		}
+		if (matchedDepth == depth - 1 && recordPath[matchedDepth].equals(requireNonNullElse(localName, qName))) {
+			matchedDepth++;
+			if (matchedDepth == recordPath.length) {
+				recordHandler.startDocument();
+				return recordHandler.startElement(uri, localName, qName, attributes);
+			}
+		}
+		// Outside records, we need the structure, not the content.
+		return true;
+	}
+
+	@Override
+	public void endElement(String uri, String localName, String qName) {
+		if (inRecord()) {
+			recordHandler.endElement(uri, localName, qName);
+			if (depth == matchedDepth) {
+				recordHandler.endDocument();
+				recordConsumer.accept(recordHandler.getValue());
+				recordCount++;
+			}
+		}
+		if (matchedDepth == depth) {
+			matchedDepth--;
+		}
+		depth--;
+	}
+
+	@Override
+	public void characters(CharSequence chars) {
+		if (inRecord()) {
+			recordHandler.characters(chars);
+		}
+	}
+}
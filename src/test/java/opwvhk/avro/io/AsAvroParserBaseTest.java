@@ -1,9 +1,14 @@
 package opwvhk.avro.io;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.ZoneOffset;
+import java.util.Arrays;
 import java.util.List;
 
 import opwvhk.avro.ResolvingFailure;
@@ -175,6 +180,87 @@ public class AsAvroParserBaseTest {
         assertThat(result2).isNotEqualTo(result1);
     }
 
+    @Test
+    public void testResolversAreLinked() {
+        Schema schema = new Schema.Parser().parse("""
+                {"type": "record", "name": "Node", "fields": [
+                    {"name": "label", "type": ["null", "string"], "default": null},
+                    {"name": "parent", "type": ["null", "Node"], "default": null},
+                    {"name": "children", "type": {"type": "array", "items": "Node"}, "default": []}
+                ]}
+                """);
+        ValueResolver resolver = new AsAvroParserBase<>(GenericData.get()) {}.createResolver(schema);
+
+        // No indirection, not even at the recursion points: these are now cycles
+        assertThat(resolver).isInstanceOf(RecordResolver.class);
+        assertThat(resolver.resolve("label")).isNotInstanceOf(DelegatingResolver.class);
+        assertThat(resolver.resolve("parent")).isSameAs(resolver);
+        assertThat(resolver.resolve("children")).isInstanceOf(ListResolver.class);
+        assertThat(resolver.resolve("children").resolve("item")).isSameAs(resolver);
+    }
+
+    @Test
+    public void testResolverPlans() throws IOException {
+        Schema schema = new Schema.Parser().parse("""
+                {"type": "record", "name": "Node", "fields": [
+                    {"name": "label", "type": ["null", "string"], "default": null, "aliases": ["name"]},
+                    {"name": "weight", "type": "int", "default": 1},
+                    {"name": "children", "type": {"type": "array", "items": "Node"}, "default": []}
+                ]}
+                """);
+        AsAvroParserBase<Object> parser = new AsAvroParserBase<>(GenericData.get()) {};
+        ValueResolver resolver = parser.createResolver(schema);
+        byte[] fingerprint = parser.planFingerprint(schema, "write schema".getBytes(StandardCharsets.UTF_8));
+        Path planFile = Files.createTempFile("resolver", ".plan");
+        Files.delete(planFile);
+
+        assertThat(parser.loadResolverPlan(planFile, fingerprint, schema)).isNull();
+        parser.saveResolverPlan(planFile, fingerprint, resolver);
+        ValueResolver planned = parser.loadResolverPlan(planFile, fingerprint, schema);
+
+        assertThat(planned).isInstanceOf(RecordResolver.class).isNotSameAs(resolver);
+        assertThat(planned.resolve("label")).isSameAs(resolver.resolve("label"));
+        assertThat(planned.resolve("name")).isSameAs(resolver.resolve("name"));
+        assertThat(planned.resolve("weight")).isSameAs(AsAvroParserBase.INTEGER_RESOLVER);
+        assertThat(planned.resolve("children")).isInstanceOf(ListResolver.class);
+        assertThat(planned.resolve("children").resolve("item")).isSameAs(planned);
+
+        // A plan for different inputs is stale
+        byte[] otherFingerprint = parser.planFingerprint(schema, "other write schema".getBytes(StandardCharsets.UTF_8));
+        assertThat(parser.loadResolverPlan(planFile, otherFingerprint, schema)).isNull();
+
+        // Truncated or corrupt plans are like missing plans (the first node starts after the magic number, fingerprint and node count)
+        byte[] plan = Files.readAllBytes(planFile);
+        Files.write(planFile, Arrays.copyOf(plan, plan.length - 1));
+        assertThat(parser.loadResolverPlan(planFile, fingerprint, schema)).isNull();
+        Files.write(planFile, Arrays.copyOf(plan, plan.length + 1));
+        assertThat(parser.loadResolverPlan(planFile, fingerprint, schema)).isNull();
+        byte[] corrupt = plan.clone();
+        corrupt[4 + fingerprint.length + 4] = 42;
+        Files.write(planFile, corrupt);
+        assertThat(parser.loadResolverPlan(planFile, fingerprint, schema)).isNull();
+        Schema otherSchema = new Schema.Parser().parse("""
+                {"type": "record", "name": "Node", "fields": [{"name": "id", "type": "string"}]}
+                """);
+        Files.write(planFile, plan);
+        assertThat(parser.loadResolverPlan(planFile, fingerprint, otherSchema)).isNull();
+        Files.delete(planFile);
+    }
+
+    @Test
+    public void testLinkingManuallyBuiltResolvers() {
+        DelegatingResolver itemDelegate = new DelegatingResolver();
+        ListResolver listResolver = new ListResolver(itemDelegate);
+        DelegatingResolver root = new DelegatingResolver();
+        root.setDelegate(listResolver);
+        DelegatingResolver nested = new DelegatingResolver();
+        nested.setDelegate(root);
+        itemDelegate.setDelegate(nested);
+
+        assertThat(ResolverLinker.link(root)).isSameAs(listResolver);
+        assertThat(listResolver.resolve("item")).isSameAs(listResolver);
+    }
+
     @Test
     public void testRecordContentField() {
         ValueResolver sr = new ScalarValueResolver(s -> s);
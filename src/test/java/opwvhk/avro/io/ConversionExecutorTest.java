@@ -0,0 +1,80 @@
+package opwvhk.avro.io;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class ConversionExecutorTest {
+
+    @Test
+    public void testConcurrencyIsBounded() throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        try (ConversionExecutor executor = new ConversionExecutor(3)) {
+            List<CompletableFuture<Integer>> results = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                int value = i;
+                results.add(executor.submit(() -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.sleep(2);
+                    running.decrementAndGet();
+                    return value;
+                }));
+            }
+            for (int i = 0; i < 50; i++) {
+                assertThat(results.get(i).get(10, TimeUnit.SECONDS)).isEqualTo(i);
+            }
+        }
+        assertThat(maxRunning.get()).isBetween(1, 3);
+    }
+
+    @Test
+    public void testFailuresAreReported() {
+        try (ConversionExecutor executor = new ConversionExecutor(1)) {
+            CompletableFuture<Object> result = executor.submit(() -> {
+                throw new IOException("Oops");
+            });
+            assertThatThrownBy(() -> result.get(10, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class).hasCauseInstanceOf(IOException.class);
+        }
+    }
+
+    @Test
+    public void testDeadlinesInterruptConversions() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        try (ConversionExecutor executor = new ConversionExecutor(1, Duration.ofMillis(50))) {
+            CompletableFuture<Object> result = executor.submit(() -> {
+                try {
+                    Thread.sleep(10_000);
+                    return "too late";
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw e;
+                }
+            });
+            // The next conversion waits for the first to release its permit
+            CompletableFuture<String> next = executor.submit(() -> "on time", null);
+
+            assertThatThrownBy(() -> result.get(10, TimeUnit.SECONDS))
+                    .isInstanceOf(ExecutionException.class).hasCauseInstanceOf(TimeoutException.class);
+            assertThat(interrupted.await(10, TimeUnit.SECONDS)).isTrue();
+            assertThat(next.get(10, TimeUnit.SECONDS)).isEqualTo("on time");
+        }
+    }
+
+    @Test
+    public void testInvalidConcurrency() {
+        assertThatThrownBy(() -> new ConversionExecutor(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,130 @@
+package opwvhk.avro.io;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.GenericRecordBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class DataFileSinkTest {
+    private static final Schema SCHEMA = SchemaBuilder.record("Record").fields().requiredInt("number").requiredString("text").endRecord();
+    private Path directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("sink");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testWritingBlocksInParallel() throws IOException {
+        DataFileSink<GenericRecord> sink = new DataFileSink<GenericRecord>(SCHEMA, GenericData.get(), i -> directory.resolve("part-%d.avro".formatted(i)))
+                .withCodec(CodecFactory.deflateCodec(6))
+                .withSyncInterval(1024)
+                .withBlockSize(100);
+        try (sink) {
+            for (int i = 0; i < 1000; i++) {
+                sink.accept(record(i));
+            }
+            assertThatThrownBy(() -> sink.withBlockSize(10)).isInstanceOf(IllegalStateException.class);
+        }
+
+        assertThat(sink.getFiles()).containsExactly(directory.resolve("part-0.avro"));
+        assertThat(readNumbers(sink.getFiles())).isEqualTo(range(1000));
+        // Each batch of 100 records is more than 1024 bytes: blocks are cut at the sync interval
+        assertThat(countBlocks(sink.getFiles().get(0))).isGreaterThan(10);
+    }
+
+    @Test
+    public void testRollingOverByRecordCount() throws IOException {
+        DataFileSink<GenericRecord> sink = new DataFileSink<GenericRecord>(SCHEMA, GenericData.get(), i -> directory.resolve("part-%d.avro".formatted(i)))
+                .withBlockSize(100)
+                .withMaxRecordCount(350);
+        try (sink) {
+            for (int i = 0; i < 1000; i++) {
+                sink.accept(record(i));
+            }
+        }
+
+        // Files are rolled over between blocks
+        assertThat(sink.getFiles()).hasSize(4);
+        assertThat(readNumbers(sink.getFiles().subList(0, 1))).hasSize(300);
+        assertThat(readNumbers(sink.getFiles())).isEqualTo(range(1000));
+    }
+
+    @Test
+    public void testRollingOverBySize() throws IOException {
+        DataFileSink<GenericRecord> sink = new DataFileSink<GenericRecord>(SCHEMA, GenericData.get(), i -> directory.resolve("part-%d.avro".formatted(i)))
+                .withBlockSize(50)
+                .withMaxFileSize(1);
+        try (sink) {
+            for (int i = 0; i < 120; i++) {
+                sink.accept(record(i));
+            }
+        }
+
+        assertThat(sink.getFiles()).hasSize(3);
+        assertThat(readNumbers(sink.getFiles())).isEqualTo(range(120));
+    }
+
+    private static GenericRecord record(int number) {
+        return new GenericRecordBuilder(SCHEMA).set("number", number).set("text", "Record " + number).build();
+    }
+
+    private static List<Integer> range(int count) {
+        List<Integer> numbers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            numbers.add(i);
+        }
+        return numbers;
+    }
+
+    private static int countBlocks(Path file) throws IOException {
+        Set<Long> blockPositions = new HashSet<>();
+        try (DataFileReader<GenericRecord> reader = new DataFileReader<>(file.toFile(), new GenericDatumReader<>())) {
+            while (reader.hasNext()) {
+                reader.next();
+                blockPositions.add(reader.previousSync());
+            }
+        }
+        return blockPositions.size();
+    }
+
+    private static List<Integer> readNumbers(List<Path> files) throws IOException {
+        List<Integer> numbers = new ArrayList<>();
+        for (Path file : files) {
+            try (DataFileReader<GenericRecord> reader = new DataFileReader<>(file.toFile(), new GenericDatumReader<>())) {
+                for (GenericRecord record : reader) {
+                    numbers.add((Integer) record.get("number"));
+                }
+            }
+        }
+        return numbers;
+    }
+}
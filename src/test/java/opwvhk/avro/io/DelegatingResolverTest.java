@@ -34,6 +34,14 @@ public class DelegatingResolverTest {
         verify(delegate).createCollector();
         verifyNoMoreInteractions(delegate);
 
+        resolver.createCollector(value);
+        verify(delegate).createCollector(value);
+        verifyNoMoreInteractions(delegate);
+
+        resolver.previousValue(collector, "name");
+        verify(delegate).previousValue(collector, "name");
+        verifyNoMoreInteractions(delegate);
+
         resolver.addProperty(collector, "name", value);
         verify(delegate).addProperty(collector, "name", value);
         verifyNoMoreInteractions(delegate);
@@ -0,0 +1,57 @@
+package opwvhk.avro.io;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.GenericRecordBuilder;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.parquet.avro.AvroParquetReader;
+import org.apache.parquet.hadoop.ParquetReader;
+import org.apache.parquet.hadoop.metadata.CompressionCodecName;
+import org.apache.parquet.hadoop.util.HadoopInputFile;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class ParquetSinkTest {
+    private static final Schema SCHEMA = SchemaBuilder.record("Record").fields().requiredInt("number").requiredString("text").endRecord();
+
+    @Test
+    public void testWritingParquet() throws IOException {
+        Path file = Files.createTempFile("records", ".parquet");
+        try {
+            ParquetSink<GenericRecord> sink = new ParquetSink<GenericRecord>(SCHEMA, GenericData.get(), file)
+                    .withCompression(CompressionCodecName.GZIP)
+                    .withMemoryBudget(16 * 1024)
+                    .withPageSize(1024)
+                    .withDictionaryEncoding(true, 1024)
+                    .withOutputBufferSize(1024);
+            try (sink) {
+                for (int i = 0; i < 1000; i++) {
+                    sink.accept(new GenericRecordBuilder(SCHEMA).set("number", i).set("text", "Record " + i % 10).build());
+                }
+                assertThatThrownBy(() -> sink.withPageSize(10)).isInstanceOf(IllegalStateException.class);
+            }
+
+            List<String> records = new ArrayList<>();
+            org.apache.hadoop.fs.Path hadoopPath = new org.apache.hadoop.fs.Path(file.toUri());
+            try (ParquetReader<GenericRecord> reader = AvroParquetReader.<GenericRecord>builder(HadoopInputFile.fromPath(hadoopPath, new Configuration()))
+                    .build()) {
+                for (GenericRecord record = reader.read(); record != null; record = reader.read()) {
+                    records.add(record.toString());
+                }
+            }
+            assertThat(records).hasSize(1000);
+            assertThat(records.get(42)).isEqualTo("{\"number\": 42, \"text\": \"Record 2\"}");
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package opwvhk.avro.io;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.data.TimeConversions;
+import org.apache.avro.file.DataFileReader;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.GenericRecordBuilder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class PartitionedSinkTest {
+    private static final Schema EVENT_SCHEMA = SchemaBuilder.record("Event").fields()
+            .name("timestamp").type(LogicalTypes.timestampMillis().addToSchema(Schema.create(Schema.Type.LONG))).noDefault()
+            .endRecord();
+    private static final Schema SCHEMA = SchemaBuilder.record("Record").fields()
+            .requiredInt("number")
+            .name("event").type(EVENT_SCHEMA).noDefault()
+            .endRecord();
+    private GenericData model;
+    private Path directory;
+
+    @Before
+    public void setUp() throws IOException {
+        model = new GenericData();
+        model.addLogicalTypeConversion(new TimeConversions.TimestampMillisConversion());
+        directory = Files.createTempDirectory("partitions");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    public void testPartitioningByDay() throws IOException {
+        // 3 large partitions (more than the number of open writers) and 3 small ones
+        int[] recordsPerDay = {500, 5, 500, 5, 500, 5};
+        PartitionedSink<GenericRecord> sink = new PartitionedSink<GenericRecord>(SCHEMA, model, directory, "event.timestamp",
+                file -> new DataFileSink<>(SCHEMA, model, i -> file))
+                .withPartitioner("day", PartitionedSink.dayOf(ZoneOffset.UTC))
+                .withMaxOpenWriters(2)
+                .withBuffering(100, 200);
+        try (sink) {
+            int number = 0;
+            // Interleave the days, so writers are closed and buffers spilled
+            for (int round = 0; round < 500; round++) {
+                for (int day = 0; day < recordsPerDay.length; day++) {
+                    if (round < recordsPerDay[day]) {
+                        Instant timestamp = LocalDate.of(2023, 6, 1 + day).atStartOfDay(ZoneOffset.UTC).toInstant().plusSeconds(round);
+                        sink.accept(new GenericRecordBuilder(SCHEMA).set("number", number++)
+                                .set("event", new GenericRecordBuilder(EVENT_SCHEMA).set("timestamp", timestamp).build()).build());
+                    }
+                }
+            }
+            assertThatThrownBy(() -> sink.withMaxOpenWriters(3)).isInstanceOf(IllegalStateException.class);
+        }
+
+        Map<String, Integer> recordCountByPartition = new TreeMap<>();
+        Map<String, Integer> fileCountByPartition = new TreeMap<>();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                String partition = file.getParent().getFileName().toString();
+                fileCountByPartition.merge(partition, 1, Integer::sum);
+                for (GenericRecord record : read(file)) {
+                    Instant timestamp = (Instant) ((GenericRecord) record.get("event")).get("timestamp");
+                    assertThat(partition).isEqualTo("day=" + LocalDate.ofInstant(timestamp, ZoneOffset.UTC));
+                    recordCountByPartition.merge(partition, 1, Integer::sum);
+                }
+            }
+        }
+        assertThat(recordCountByPartition).isEqualTo(Map.of(
+                "day=2023-06-01", 500, "day=2023-06-02", 5, "day=2023-06-03", 500,
+                "day=2023-06-04", 5, "day=2023-06-05", 500, "day=2023-06-06", 5));
+        // Small partitions are written once
+        assertThat(fileCountByPartition).containsEntry("day=2023-06-02", 1).containsEntry("day=2023-06-04", 1).containsEntry("day=2023-06-06", 1);
+    }
+
+    @Test
+    public void testClosingContinuesAfterFailures() throws IOException {
+        // Two large partitions with open writers (one of which fails to close), and a small one
+        int[] recordsPerDay = {50, 50, 5};
+        Path failingDirectory = directory.resolve("day=2023-06-01");
+        PartitionedSink<GenericRecord> sink = new PartitionedSink<GenericRecord>(SCHEMA, model, directory, "event.timestamp", file -> {
+            DataFileSink<GenericRecord> fileSink = new DataFileSink<>(SCHEMA, model, i -> file);
+            return new RecordSink<>() {
+                @Override
+                public void accept(GenericRecord record) {
+                    fileSink.accept(record);
+                }
+
+                @Override
+                public void close() throws IOException {
+                    fileSink.close();
+                    if (file.getParent().equals(failingDirectory)) {
+                        throw new IOException("Oops");
+                    }
+                }
+            };
+        })
+                .withPartitioner("day", PartitionedSink.dayOf(ZoneOffset.UTC))
+                .withBuffering(10, 100);
+        for (int day = 0; day < recordsPerDay.length; day++) {
+            for (int i = 0; i < recordsPerDay[day]; i++) {
+                Instant timestamp = LocalDate.of(2023, 6, 1 + day).atStartOfDay(ZoneOffset.UTC).toInstant().plusSeconds(i);
+                sink.accept(new GenericRecordBuilder(SCHEMA).set("number", i)
+                        .set("event", new GenericRecordBuilder(EVENT_SCHEMA).set("timestamp", timestamp).build()).build());
+            }
+        }
+        assertThatThrownBy(sink::close).isInstanceOf(IOException.class).hasMessage("Oops");
+
+        Map<String, Integer> recordCountByPartition = new TreeMap<>();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.filter(Files::isRegularFile).toList()) {
+                recordCountByPartition.merge(file.getParent().getFileName().toString(), read(file).size(), Integer::sum);
+            }
+        }
+        assertThat(recordCountByPartition).isEqualTo(Map.of("day=2023-06-01", 50, "day=2023-06-02", 50, "day=2023-06-03", 5));
+    }
+
+    private List<GenericRecord> read(Path file) throws IOException {
+        List<GenericRecord> records = new ArrayList<>();
+        try (DataFileReader<GenericRecord> reader = new DataFileReader<>(file.toFile(), new GenericDatumReader<>(SCHEMA, SCHEMA, model))) {
+            reader.forEach(records::add);
+        }
+        return records;
+    }
+}
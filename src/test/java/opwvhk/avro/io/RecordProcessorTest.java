@@ -0,0 +1,233 @@
+package opwvhk.avro.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class RecordProcessorTest {
+
+    @Test
+    public void testRecordsAreEmittedOnDemand() throws IOException {
+        RecordProcessor<String> processor = new RecordProcessor<>(WordFeeder::new);
+        Upstream upstream = new Upstream("a b c", "d", "e f");
+        Downstream downstream = new Downstream();
+        upstream.subscribe(processor);
+        processor.subscribe(downstream);
+
+        // No demand: nothing is read
+        assertThat(upstream.requested).isEqualTo(0);
+
+        downstream.subscription.request(1);
+        assertThat(downstream.records).containsExactly("a");
+        assertThat(upstream.requested).isEqualTo(1);
+
+        // Records from the first chunk are emitted before reading more input
+        downstream.subscription.request(2);
+        assertThat(downstream.records).containsExactly("a", "b", "c");
+        assertThat(upstream.requested).isEqualTo(1);
+
+        downstream.subscription.request(10);
+        assertThat(downstream.records).containsExactly("a", "b", "c", "d", "e", "f");
+        assertThat(downstream.completed).isTrue();
+        assertThat(downstream.failure).isNull();
+    }
+
+    @Test
+    public void testCancellingStopsReading() throws IOException {
+        RecordProcessor<String> processor = new RecordProcessor<>(WordFeeder::new);
+        Upstream upstream = new Upstream("a b", "c");
+        Downstream downstream = new Downstream();
+        upstream.subscribe(processor);
+        processor.subscribe(downstream);
+
+        downstream.subscription.request(1);
+        downstream.subscription.cancel();
+        downstream.subscription.request(1);
+
+        assertThat(downstream.records).containsExactly("a");
+        assertThat(upstream.cancelled).isTrue();
+        assertThat(downstream.completed).isFalse();
+    }
+
+    @Test
+    public void testFailuresAreSignalled() throws IOException {
+        RecordProcessor<String> processor = new RecordProcessor<>(WordFeeder::new);
+        Upstream upstream = new Upstream("a !");
+        Downstream downstream = new Downstream();
+        upstream.subscribe(processor);
+        processor.subscribe(downstream);
+
+        downstream.subscription.request(5);
+        assertThat(downstream.failure).isInstanceOf(IOException.class);
+        assertThat(upstream.cancelled).isTrue();
+
+        Downstream second = new Downstream();
+        processor.subscribe(second);
+        assertThat(second.failure).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void testInvalidDemand() throws IOException {
+        RecordProcessor<String> processor = new RecordProcessor<>(WordFeeder::new);
+        Upstream upstream = new Upstream("a");
+        Downstream downstream = new Downstream();
+        upstream.subscribe(processor);
+        processor.subscribe(downstream);
+
+        downstream.subscription.request(0);
+        assertThat(downstream.failure).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testPublishersMayReuseTheirBuffers() throws Exception {
+        RecordProcessor<String> processor = new RecordProcessor<>(WordFeeder::new);
+        Downstream downstream = new Downstream();
+        processor.subscribe(downstream);
+        ExecutorService publisherThread = Executors.newSingleThreadExecutor();
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(16);
+            Iterator<String> chunks = List.of("a b", "c", "d e").iterator();
+            processor.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    // Deliver the input on another thread, while the processor is draining on this one, and reuse the buffer immediately.
+                    Future<?> delivery = publisherThread.submit(() -> {
+                        if (chunks.hasNext()) {
+                            buffer.clear();
+                            buffer.put(chunks.next().getBytes(StandardCharsets.UTF_8)).flip();
+                            processor.onNext(buffer);
+                            // If the processor would not have copied the buffer, this would make it fail
+                            buffer.clear();
+                            buffer.put((byte) '!').flip();
+                        } else {
+                            processor.onComplete();
+                        }
+                    });
+                    try {
+                        delivery.get(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException | ExecutionException | TimeoutException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    // Nothing to do.
+                }
+            });
+            downstream.subscription.request(10);
+        } finally {
+            publisherThread.shutdown();
+        }
+
+        assertThat(downstream.failure).isNull();
+        assertThat(downstream.records).containsExactly("a", "b", "c", "d", "e");
+        assertThat(downstream.completed).isTrue();
+    }
+
+    /**
+     * Parses words separated by spaces; an exclamation mark is invalid.
+     */
+    private static class WordFeeder implements RecordFeeder {
+        private final Consumer<String> recordConsumer;
+
+        WordFeeder(Consumer<String> recordConsumer) {
+            this.recordConsumer = recordConsumer;
+        }
+
+        @Override
+        public void feed(ByteBuffer buffer) throws IOException {
+            for (String word : StandardCharsets.UTF_8.decode(buffer).toString().split(" ")) {
+                if (word.equals("!")) {
+                    throw new IOException("Invalid word");
+                }
+                recordConsumer.accept(word);
+            }
+        }
+
+        @Override
+        public void endOfInput() {
+            // Nothing to do.
+        }
+
+        @Override
+        public void close() {
+            // Nothing to do.
+        }
+    }
+
+    private static class Upstream implements Flow.Publisher<ByteBuffer>, Flow.Subscription {
+        private final List<String> chunks;
+        private Flow.Subscriber<? super ByteBuffer> subscriber;
+        private long requested;
+        private boolean cancelled;
+
+        Upstream(String... chunks) {
+            this.chunks = new ArrayList<>(List.of(chunks));
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            this.subscriber = subscriber;
+            subscriber.onSubscribe(this);
+        }
+
+        @Override
+        public void request(long n) {
+            requested += n;
+            for (long i = 0; i < n && !cancelled && !chunks.isEmpty(); i++) {
+                subscriber.onNext(StandardCharsets.UTF_8.encode(chunks.remove(0)));
+                if (chunks.isEmpty()) {
+                    subscriber.onComplete();
+                }
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    private static class Downstream implements Flow.Subscriber<String> {
+        private final List<String> records = new ArrayList<>();
+        private Flow.Subscription subscription;
+        private boolean completed;
+        private Throwable failure;
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public void onNext(String item) {
+            records.add(item);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            failure = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package opwvhk.avro.io;
+
+import java.util.List;
+
+import org.apache.avro.Schema;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResolverCompilerTest {
+    private static final Schema NODE_SCHEMA = new Schema.Parser().parse("""
+            {"type": "record", "name": "Node", "fields": [
+                {"name": "name", "type": "string"},
+                {"name": "weight", "type": "int", "default": 1},
+                {"name": "children", "type": {"type": "array", "items": "Node"}, "default": []}
+            ]}""");
+
+    @Test
+    public void testCompilingRecursiveTree() {
+        ValueResolver compiled = ResolverCompiler.compile(createNodeResolver());
+
+        assertThat(compiled).isInstanceOf(CompiledRecordResolver.class);
+        assertThat(compiled.resolve("name")).isInstanceOf(DirectScalarResolver.class);
+        assertThat(compiled.resolve("weight")).isInstanceOf(DirectScalarResolver.class);
+        assertThat(compiled.resolve("unknown")).isSameAs(ValueResolver.NOOP);
+        // The tree recurses here: after linking, that's a cycle without indirection
+        assertThat(compiled.resolve("child")).isSameAs(compiled);
+
+        GenericRecord root = parseNode(compiled, "root", "child 1", "child 2");
+        assertThat(root).isEqualTo(parseNode(createNodeResolver(), "root", "child 1", "child 2"));
+        assertThat(root.toString()).isEqualTo(("{'name': 'root', 'weight': 1, 'children': [" +
+                                               "{'name': 'child 1', 'weight': 2, 'children': []}, " +
+                                               "{'name': 'child 2', 'weight': 2, 'children': []}]}").replace('\'', '"'));
+    }
+
+    @Test
+    public void testUnknownResolversAreKept() {
+        ScalarValueResolver custom = new ScalarValueResolver(String::toUpperCase);
+        ListResolver listResolver = new ListResolver(custom);
+
+        ValueResolver compiled = ResolverCompiler.compile(listResolver);
+
+        assertThat(compiled).isInstanceOf(ListResolver.class).isNotSameAs(listResolver);
+        assertThat(compiled.resolve("item")).isSameAs(custom);
+        assertThat(compiled.complete(compiled.addContent(compiled.createCollector(), "text"))).isEqualTo(List.of("TEXT"));
+    }
+
+    @Test
+    public void testFieldDispatch() {
+        Schema schema = new Schema.Parser().parse("""
+                {"type": "record", "name": "Collisions", "fields": [
+                    {"name": "Aa", "type": "int"},
+                    {"name": "BB", "type": ["null", "string"]},
+                    {"name": "flag", "type": "boolean"},
+                    {"name": "numbers", "type": {"type": "array", "items": "long"}}
+                ]}""");
+        RecordResolver resolver = new RecordResolver(GenericData.get(), schema);
+        resolver.addResolver("Aa", schema.getField("Aa"), AsAvroParserBase.INTEGER_RESOLVER);
+        resolver.addResolver("BB", schema.getField("BB"), AsAvroParserBase.STRING_RESOLVER);
+        resolver.addResolver("flag", schema.getField("flag"), AsAvroParserBase.BOOLEAN_RESOLVER);
+        resolver.addResolver("isSet", schema.getField("flag"), AsAvroParserBase.BOOLEAN_RESOLVER);
+        resolver.addArrayResolver("number", schema.getField("numbers"), AsAvroParserBase.LONG_RESOLVER);
+        assertThat(resolver.fieldDispatch()).isNull();
+
+        RecordResolver compiled = (RecordResolver) ResolverCompiler.compile(resolver);
+        FieldDispatch dispatch = compiled.fieldDispatch();
+
+        assertThat(dispatch.getClass().isHidden()).isTrue();
+        // "Aa" and "BB" have the same hash code
+        assertThat(dispatch.scalarField("Aa")).isNotNegative();
+        assertThat(dispatch.scalarField("BB")).isNotNegative().isNotEqualTo(dispatch.scalarField("Aa"));
+        // Repeated fields are resolved as usual
+        assertThat(dispatch.scalarField("number")).isNegative();
+        assertThat(dispatch.scalarField("unknown")).isNegative();
+
+        Object collector = compiled.createCollector(null);
+        dispatch.setScalar(collector, dispatch.scalarField("Aa"), "0x2A");
+        dispatch.setScalar(collector, dispatch.scalarField("BB"), null);
+        dispatch.setScalar(collector, dispatch.scalarField("isSet"), "true");
+        collector = compiled.addProperty(collector, "number", 7L);
+        assertThat(compiled.complete(collector).toString()).isEqualTo("{\"Aa\": 42, \"BB\": null, \"flag\": true, \"numbers\": [7]}");
+    }
+
+    private static RecordResolver createNodeResolver() {
+        GenericData model = GenericData.get();
+        RecordResolver resolver = new RecordResolver(model, NODE_SCHEMA);
+        DelegatingResolver recursion = new DelegatingResolver();
+        DelegatingResolver stringResolver = new DelegatingResolver();
+        stringResolver.setDelegate(AsAvroParserBase.STRING_RESOLVER);
+        resolver.addResolver("name", NODE_SCHEMA.getField("name"), stringResolver);
+        resolver.addResolver("weight", NODE_SCHEMA.getField("weight"), AsAvroParserBase.INTEGER_RESOLVER);
+        resolver.addArrayResolver("child", NODE_SCHEMA.getField("children"), recursion);
+        recursion.setDelegate(resolver);
+        return resolver;
+    }
+
+    /**
+     * Parse a node with children, like a parser would.
+     */
+    private static GenericRecord parseNode(ValueResolver resolver, String name, String... children) {
+        Object collector = resolver.createCollector(null);
+        collector = resolver.addProperty(collector, "name", parseScalar(resolver.resolve("name"), name));
+        for (String child : children) {
+            ValueResolver childResolver = resolver.resolve("child");
+            Object childCollector = childResolver.createCollector(resolver.previousValue(collector, "child"));
+            childCollector = childResolver.addProperty(childCollector, "name", parseScalar(childResolver.resolve("name"), child));
+            childCollector = childResolver.addProperty(childCollector, "weight", parseScalar(childResolver.resolve("weight"), "2"));
+            collector = resolver.addProperty(collector, "child", childResolver.complete(childCollector));
+        }
+        return (GenericRecord) resolver.complete(collector);
+    }
+
+    private static Object parseScalar(ValueResolver resolver, String text) {
+        return resolver.complete(resolver.addContent(resolver.createCollector(), text));
+    }
+}
@@ -0,0 +1,73 @@
+package opwvhk.avro.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.avro.Conversions;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.SchemaNormalization;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.GenericRecordBuilder;
+import org.apache.avro.message.BinaryMessageDecoder;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class SingleObjectEncoderTest {
+    private static final Schema SCHEMA = SchemaBuilder.record("Record").fields().requiredInt("number").requiredString("text").endRecord();
+
+    @Test
+    public void testEncodingMessages() throws IOException {
+        SingleObjectEncoder encoder = new SingleObjectEncoder(GenericData.get());
+        BinaryMessageDecoder<GenericRecord> decoder = new BinaryMessageDecoder<>(GenericData.get(), SCHEMA);
+        GenericRecord record = new GenericRecordBuilder(SCHEMA).set("number", 42).set("text", "Hello").build();
+
+        byte[] message = encoder.encode(record);
+        // Marker, followed by the fingerprint (little endian)
+        assertThat(message[0]).isEqualTo((byte) 0xC3);
+        assertThat(message[1]).isEqualTo((byte) 0x01);
+        assertThat(ByteBuffer.wrap(message, 2, 8).order(ByteOrder.LITTLE_ENDIAN).getLong()).isEqualTo(SchemaNormalization.parsingFingerprint64(SCHEMA));
+        assertThat(decoder.decode(message)).isEqualTo(record);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        encoder.encode(record, output);
+        assertThat(output.toByteArray()).isEqualTo(message);
+
+        List<byte[]> messages = new ArrayList<>();
+        encoder.<GenericRecord>asRecordConsumer(buffer -> {
+            byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            messages.add(bytes);
+        }).accept(record);
+        assertThat(messages).containsExactly(message);
+    }
+
+    @Test
+    public void testSchemasWithDifferentLogicalTypesUseDifferentEncoders() throws IOException {
+        GenericData model = new GenericData();
+        model.addLogicalTypeConversion(new Conversions.DecimalConversion());
+        Schema bytesSchema = SchemaBuilder.record("Amount").fields().name("amount").type().bytesType().noDefault().endRecord();
+        Schema decimalSchema = SchemaBuilder.record("Amount").fields().name("amount")
+                .type(LogicalTypes.decimal(9, 2).addToSchema(Schema.create(Schema.Type.BYTES))).noDefault().endRecord();
+        // The fingerprint ignores logical types
+        assertThat(SchemaNormalization.parsingFingerprint64(decimalSchema)).isEqualTo(SchemaNormalization.parsingFingerprint64(bytesSchema));
+
+        SingleObjectEncoder encoder = new SingleObjectEncoder(model);
+        GenericRecord bytesRecord = new GenericRecordBuilder(bytesSchema).set("amount", ByteBuffer.wrap(new byte[]{0x30, 0x39})).build();
+        GenericRecord decimalRecord = new GenericRecordBuilder(decimalSchema).set("amount", new BigDecimal("123.45")).build();
+
+        byte[] bytesMessage = encoder.encode(bytesRecord);
+        byte[] decimalMessage = encoder.encode(decimalRecord);
+        // 12345 == 0x3039
+        assertThat(decimalMessage).isEqualTo(bytesMessage);
+        assertThat(new BinaryMessageDecoder<GenericRecord>(model, decimalSchema).decode(decimalMessage)).isEqualTo(decimalRecord);
+    }
+}
@@ -1,18 +1,48 @@
 package opwvhk.avro.json;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
 
 import net.jimblackler.jsonschemafriend.GenerationException;
 import opwvhk.avro.ResolvingFailure;
+import opwvhk.avro.io.ConversionExecutor;
+import opwvhk.avro.io.DeadLetter;
+import opwvhk.avro.io.LazyRecord;
+import opwvhk.avro.io.RecordProcessor;
+import opwvhk.avro.io.ResumableDataFileWriter;
 import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileReader;
 import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericRecord;
+import org.apache.avro.generic.GenericRecordBuilder;
+import org.apache.avro.reflect.AvroName;
+import org.apache.avro.reflect.ReflectData;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.specific.SpecificRecordBase;
+import org.apache.avro.util.Utf8;
 import org.junit.Test;
 
+import static opwvhk.avro.io.DeadLetter.Reason.INVALID_VALUE;
+import static opwvhk.avro.io.DeadLetter.Reason.MALFORMED_INPUT;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
@@ -152,6 +182,601 @@ public class JsonAsAvroParserTest {
         assertThatThrownBy(() -> parser.parse("{\"text\": []}")).isInstanceOf(IllegalStateException.class);
     }
 
+    @Test
+    public void testTrailingContentFails() throws IOException {
+        Schema readSchema = SchemaBuilder.record("Simple").fields().requiredString("text").endRecord();
+        JsonAsAvroParser parser = new JsonAsAvroParser(readSchema, GenericData.get());
+
+        GenericRecord record = parser.parse("{\"text\": \"one\"}  \n");
+        assertThat(record.get("text")).isEqualTo("one");
+
+        assertThatThrownBy(() -> parser.parse("{\"text\": \"one\"}{\"text\": \"two\"}")).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> parser.parse("{\"text\": \"one\"} garbage")).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void testParsingStringsAsUtf8() throws IOException {
+        Schema readSchema = new Schema.Parser().parse("""
+                {"type": "record", "name": "Texts", "fields": [
+                  {"name": "plain", "type": "string"},
+                  {"name": "utf8", "type": {"type": "string", "avro.java.string": "Utf8"}}
+                ]}""");
+
+        JsonAsAvroParser parser = new JsonAsAvroParser(readSchema, GenericData.get());
+        GenericRecord record = parser.parse("""
+                {"plain": "Hello", "utf8": "World!"}""");
+
+        assertThat(record.get("plain")).isEqualTo("Hello");
+        assertThat(record.get("utf8")).isEqualTo(new Utf8("World!"));
+    }
+
+    @Test
+    public void testDeduplicatingStrings() throws IOException {
+        Schema readSchema = new Schema.Parser().parse("""
+                {"type": "record", "name": "Hosts", "fields": [
+                  {"name": "hosts", "type": {"type": "array", "items": {"type": "string", "deduplicate": true}}}
+                ]}""");
+
+        JsonAsAvroParser parser = new JsonAsAvroParser(readSchema, GenericData.get());
+        GenericRecord first = parser.parse("""
+                {"hosts": ["localhost", "localhost"]}""");
+        GenericRecord second = parser.parse("""
+                {"hosts": ["localhost"]}""");
+
+        List<?> firstHosts = (List<?>) first.get("hosts");
+        List<?> secondHosts = (List<?>) second.get("hosts");
+        assertThat(firstHosts.get(1)).isSameAs(firstHosts.get(0));
+        assertThat(secondHosts.get(0)).isSameAs(firstHosts.get(0));
+    }
+
+    @Test
+    public void testParsingRecursiveRecords() throws IOException {
+        Schema readSchema = avroSchema("TestRecordProjection.avsc");
+        JsonAsAvroParser parser = new JsonAsAvroParser(readSchema, GenericData.get());
+
+        GenericRecord record = parser.parse("""
+                {"bool": true, "choice": "yes", "texts": [], "weirdStuff": {"rabbitHole": {"rabbitHole": {"fancy": "deep"}}}}""");
+        GenericRecord weirdStuff = (GenericRecord) record.get("weirdStuff");
+        GenericRecord deepest = (GenericRecord) ((GenericRecord) weirdStuff.get("rabbitHole")).get("rabbitHole");
+        assertThat(deepest.get("fancy")).isEqualTo("deep");
+    }
+
+    @Test
+    public void testCompiledResolvers() throws IOException {
+        Schema readSchema = avroSchema("TestRecordProjection.avsc");
+        JsonAsAvroParser parser = new JsonAsAvroParser(readSchema, GenericData.get());
+        GenericRecord expected = parser.parse(getClass().getResource("TestRecord-full.json"));
+
+        parser.withCompiledResolvers(true);
+        GenericRecord fullRecord = parser.parse(getClass().getResource("TestRecord-full.json"));
+        assertThat(fullRecord).isEqualTo(expected);
+
+        // Reusing records works the same
+        GenericRecord minimalRecord = parser.parse("""
+                {"bool": false, "choice": "no", "texts": ["Bye"]}""", fullRecord);
+        assertThat(minimalRecord).isSameAs(fullRecord);
+        assertThat(minimalRecord.get("texts").toString()).isEqualTo("[Bye]");
+        assertThat(minimalRecord.get("weirdStuff")).isNull();
+
+        parser.withCompiledResolvers(false);
+        assertThat(parser.<GenericRecord>parse(getClass().getResource("TestRecord-full.json"))).isEqualTo(expected);
+    }
+
+    @Test
+    public void testReusingRecords() throws IOException {
+        Schema readSchema = avroSchema("TestRecordProjection.avsc");
+        JsonAsAvroParser parser = new JsonAsAvroParser(readSchema, GenericData.get());
+
+        GenericRecord fullRecord = parser.parse(getClass().getResource("TestRecord-full.json"));
+        Object texts = fullRecord.get("texts");
+        Object weirdStuff = fullRecord.get("weirdStuff");
+
+        GenericRecord minimalRecord = parser.parse("""
+                {
+                    "bool": false,
+                    "shortInt": null,
+                    "choice": "no",
+                    "texts": ["Bye"],
+                    "weirdStuff": { }
+                }""", fullRecord);
+
+        assertThat(minimalRecord).isSameAs(fullRecord);
+        assertThat(minimalRecord.get("texts")).isSameAs(texts);
+        assertThat(minimalRecord.get("weirdStuff")).isSameAs(weirdStuff);
+        assertThat(minimalRecord.toString()).isEqualTo(
+                ("{'bool': false, 'shortInt': null, 'longInt': null, 'hugeInt': null, 'defaultInt': 42, " +
+                 "'singleFloat': null, 'doubleFloat': null, 'fixedPoint': null, 'choice': 'no', " +
+                 "'date': null, 'time': null, 'timestamp': null, " +
+                 "'texts': ['Bye'], 'weirdStuff': {'explanation': 'Please explain why', " +
+                 "'fancy': null, 'rabbitHole': null}}").replace('\'', '"'));
+
+        GenericRecord withoutWeirdStuff = parser.parse("""
+                {"bool": true, "choice": "yes", "texts": []}""", minimalRecord);
+
+        assertThat(withoutWeirdStuff).isSameAs(fullRecord);
+        assertThat(withoutWeirdStuff.get("texts")).isSameAs(texts);
+        assertThat(withoutWeirdStuff.get("weirdStuff")).isNull();
+    }
+
+    @Test
+    public void testParsingWithSession() throws IOException {
+        Schema readSchema = avroSchema("TestRecordProjection.avsc");
+        JsonAsAvroParser parser = new JsonAsAvroParser(readSchema, GenericData.get());
+        JsonParseSession session = parser.newSession();
+
+        GenericRecord fullRecord = session.parse(getClass().getResource("TestRecord-full.json"));
+        assertThat(fullRecord.toString()).isEqualTo(parser.parse(getClass().getResource("TestRecord-full.json")).toString());
+
+        for (int i = 0; i < 3; i++) {
+            GenericRecord record = session.parse("""
+                    {"bool": true, "choice": "yes", "texts": ["%d"]}""".formatted(i), fullRecord);
+            assertThat(record).isSameAs(fullRecord);
+            assertThat(record.get("texts")).isEqualTo(List.of(String.valueOf(i)));
+        }
+    }
+
+    @Test
+    public void testParsingConcurrently() throws Exception {
+        Schema readSchema = avroSchema("TestRecordProjection.avsc");
+        JsonAsAvroParser parser = new JsonAsAvroParser(readSchema, GenericData.get());
+
+        List<CompletableFuture<GenericRecord>> results = new ArrayList<>();
+        try (ConversionExecutor executor = new ConversionExecutor(8, Duration.ofSeconds(30))) {
+            for (int i = 0; i < 200; i++) {
+                String json = """
+                        {"bool": true, "choice": "yes", "texts": ["%d"]}""".formatted(i);
+                results.add(executor.submit(() -> parser.parse(json)));
+            }
+            for (int i = 0; i < 200; i++) {
+                assertThat(results.get(i).get().get("texts")).isEqualTo(List.of(String.valueOf(i)));
+            }
+        }
+    }
+
+    @Test
+    public void testParsingReactiveStream() throws Exception {
+        Schema readSchema = avroSchema("TestRecordProjection.avsc");
+        JsonAsAvroParser parser = new JsonAsAvroParser(readSchema, GenericData.get());
+
+        RecordProcessor<GenericRecord> processor = parser.newRecordProcessor();
+        List<Object> texts = new ArrayList<>();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        processor.subscribe(new Flow.Subscriber<>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(GenericRecord item) {
+                texts.add(item.get("texts"));
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                done.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                done.complete(null);
+            }
+        });
+        try (SubmissionPublisher<ByteBuffer> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(processor);
+            publisher.submit(ByteBuffer.wrap("""
+                    {"bool": true, "choice": "yes", "texts": ["1"]}
+                    {"bool": true, "choice": "yes", "te""".getBytes(StandardCharsets.UTF_8)));
+            publisher.submit(ByteBuffer.wrap("""
+                    xts": ["2"]}
+                    """.getBytes(StandardCharsets.UTF_8)));
+        }
+        done.get(10, TimeUnit.SECONDS);
+        assertThat(texts).containsExactly(List.of("1"), List.of("2"));
+    }
+
+    @Test
+    public void testResumableConversion() throws IOException {
+        Schema readSchema = avroSchema("TestRecordProjection.avsc");
+        JsonAsAvroParser parser = new JsonAsAvroParser(readSchema, GenericData.get());
+        Path input = Files.createTempFile("records", ".json");
+        Path output = Files.createTempFile("records", ".avro");
+        try {
+            StringBuilder json = new StringBuilder();
+            for (int i = 0; i < 100; i++) {
+                json.append("""
+                        {"bool": true, "choice": "yes", "texts": ["%02d"]}
+                        """.formatted(i));
+            }
+            // Fail halfway, with checkpoints after each record
+            String validJson = json.toString();
+            Files.writeString(input, validJson.replace("[\"50\"]", "[\"50\" "));
+            try (ResumableDataFileWriter<GenericRecord> writer = new ResumableDataFileWriter<>(readSchema, GenericData.get(), output,
+                    CodecFactory.deflateCodec(1), Duration.ZERO)) {
+                assertThatThrownBy(() -> parser.convertResumable(input, writer)).isInstanceOf(IOException.class);
+                // The writer is closed upon failure, so the conversion can be retried
+                assertThatThrownBy(() -> parser.convertResumable(input, writer)).isInstanceOf(IOException.class);
+            }
+            assertThat(output.resolveSibling(output.getFileName() + ".checkpoint")).content().contains("recordCount=50");
+
+            // Resume after fixing the input
+            Files.writeString(input, validJson);
+            try (ResumableDataFileWriter<GenericRecord> writer = new ResumableDataFileWriter<>(readSchema, GenericData.get(), output,
+                    CodecFactory.deflateCodec(1), Duration.ofMinutes(1))) {
+                assertThat(parser.convertResumable(input, writer)).isEqualTo(100);
+            }
+
+            List<Object> texts = new ArrayList<>();
+            try (DataFileReader<GenericRecord> reader = new DataFileReader<>(output.toFile(), new GenericDatumReader<>())) {
+                reader.forEach(record -> texts.add(record.get("texts").toString()));
+            }
+            assertThat(texts).hasSize(100);
+            assertThat(texts.get(50)).isEqualTo("[50]");
+            assertThat(output.resolveSibling(output.getFileName() + ".checkpoint")).doesNotExist();
+        } finally {
+            Files.delete(input);
+            Files.delete(output);
+        }
+    }
+
+    @Test
+    public void testEarlyTermination() throws IOException {
+        Schema readSchema = SchemaBuilder.record("Header").fields().requiredString("id").optionalLong("timestamp").endRecord();
+        JsonAsAvroParser parser = new JsonAsAvroParser(readSchema, GenericData.get());
+        // The document is malformed after the header fields: we can only parse it if we stop early
+        String json = "{\"id\": \"abc\", \"timestamp\": 12345, \"body\": \"payload\", \"more\": ";
+
+        assertThatThrownBy(() -> parser.parse(json)).isInstanceOf(IOException.class);
+
+        parser.withEarlyTermination(true);
+        GenericRecord record = parser.parse(json);
+        assertThat(record.get("id")).isEqualTo("abc");
+        assertThat(record.get("timestamp")).isEqualTo(12345L);
+        // The setting is independent of (and survives) switching resolvers
+        parser.withCompiledResolvers(false);
+        assertThat(parser.<GenericRecord>parse(json).get("id")).isEqualTo("abc");
+        parser.withCompiledResolvers(true);
+        assertThat(parser.<GenericRecord>parse(json).get("id")).isEqualTo("abc");
+
+        // Fields that were not seen yet may still come
+        assertThatThrownBy(() -> parser.parse("{\"id\": \"abc\", \"body\": \"payload\", \"more\": ")).isInstanceOf(IOException.class);
+        // Sequences of documents are always parsed entirely
+        List<GenericRecord> records = new ArrayList<>();
+        parser.<GenericRecord>parseRecords(new ByteArrayInputStream("""
+                {"id": "abc", "timestamp": 1, "body": "payload"}
+                {"id": "def", "timestamp": 2}""".getBytes(StandardCharsets.UTF_8)), records::add);
+        assertThat(records).extracting(r -> r.get("id")).containsExactly("abc", "def");
+    }
+
+    @Test
+    public void testParsingLazyRecords() throws IOException {
+        Schema readSchema = new Schema.Parser().parse("""
+                {"type": "record", "name": "Event", "lazy": true, "fields": [
+                    {"name": "key", "type": "string"},
+                    {"name": "count", "type": "int"},
+                    {"name": "kind", "type": {"type": "enum", "name": "Kind", "symbols": ["A", "B"]}},
+                    {"name": "tags", "type": {"type": "array", "items": "string"}, "default": []}
+                ]}""");
+        JsonAsAvroParser parser = new JsonAsAvroParser(readSchema, GenericData.get());
+
+        GenericRecord record = parser.parse("""
+                {"key": "abc", "count": 42, "kind": "B", "tags": ["x"]}""");
+        assertThat(record).isInstanceOf(LazyRecord.class);
+        LazyRecord lazyRecord = (LazyRecord) record;
+        assertThat(lazyRecord.isConverted(1)).isFalse();
+        assertThat(lazyRecord.isConverted(3)).isTrue();
+        assertThat(record.get("count")).isEqualTo(42);
+        assertThat(lazyRecord.isConverted(1)).isTrue();
+        assertThat(lazyRecord.isConverted(2)).isFalse();
+
+        // Lazy records are still generic records
+        GenericRecord expected = new GenericRecordBuilder(readSchema).set("key", "abc").set("count", 42)
+                .set("kind", new GenericData.EnumSymbol(readSchema.getField("kind").schema(), "B")).set("tags", List.of("x")).build();
+        assertThat(record).isEqualTo(expected);
+
+        // Conversion errors happen when reading the field
+        GenericRecord invalid = parser.parse("""
+                {"key": "abc", "count": "many", "kind": "A"}""");
+        assertThat(invalid.get("key")).isEqualTo("abc");
+        assertThat(invalid.get("tags")).isEqualTo(List.of());
+        assertThatThrownBy(() -> invalid.get("count")).isInstanceOf(NumberFormatException.class);
+    }
+
+    @Test
+    public void testDeadLettersForRecordsWithAMalformedStart() throws IOException {
+        Schema readSchema = SchemaBuilder.record("Record").fields().requiredInt("n").endRecord();
+        JsonAsAvroParser parser = new JsonAsAvroParser(readSchema, GenericData.get());
+        Path input = Files.createTempFile("records", ".json");
+        try {
+            Files.writeString(input, "{\"n\": 1}\n{\"n\": 2}\n]]]\n{\"n\": 3}\n");
+
+            List<Object> numbers = new ArrayList<>();
+            List<DeadLetter> deadLetters = new ArrayList<>();
+            parser.<GenericRecord>parseRecords(input, record -> numbers.add(record.get("n")), deadLetters::add);
+
+            assertThat(numbers).containsExactly(1, 2, 3);
+            // The dead letter does not include the record before it
+            assertThat(deadLetters).extracting(DeadLetter::reason).containsExactly(MALFORMED_INPUT);
+            assertThat(deadLetters).extracting(DeadLetter::rawText).containsExactly("]]]");
+        } finally {
+            Files.delete(input);
+        }
+    }
+
+    @Test
+    public void testParsingWithDeadLetters() throws IOException {
+        Schema readSchema = avroSchema("TestRecordProjection.avsc");
+        JsonAsAvroParser parser = new JsonAsAvroParser(readSchema, GenericData.get());
+        Path input = Files.createTempFile("records", ".json");
+        try {
+            String json = """
+                    {"bool": true, "choice": "yes", "texts": ["first"]}
+                    {"bool": true, "choice": "perhaps", "texts": ["invalid symbol"], "weirdStuff": {"fancy": "skipped"}}
+                    {"bool": true, "choice": "no", "texts": ["second"]}
+                    {"bool": true, "choice": "no", "texts": ["malformed" }
+                    {"bool": false, "choice": "maybe", "date": "yesterday", "texts": []}
+                    {"bool": false, "choice": "maybe", "texts": ["third"]}
+                    """;
+            Files.writeString(input, json);
+
+            List<String> texts = new ArrayList<>();
+            List<DeadLetter> deadLetters = new ArrayList<>();
+            long count = parser.<GenericRecord>parseRecords(input, record -> texts.add(record.get("texts").toString()), deadLetters::add);
+
+            assertThat(count).isEqualTo(3);
+            assertThat(texts).containsExactly("[first]", "[second]", "[third]");
+            assertThat(deadLetters).extracting(DeadLetter::reason).containsExactly(INVALID_VALUE, MALFORMED_INPUT, INVALID_VALUE);
+            String[] lines = json.split("\n");
+            assertThat(deadLetters).extracting(DeadLetter::rawText).containsExactly(lines[1], lines[3], lines[4]);
+            for (DeadLetter deadLetter : deadLetters) {
+                assertThat(json.substring((int) deadLetter.startOffset(), (int) deadLetter.endOffset())).isEqualTo(deadLetter.rawText());
+                assertThat(deadLetter.message()).isNotEmpty();
+            }
+        } finally {
+            Files.delete(input);
+        }
+    }
+
+    @Test
+    public void testParsingBytes() throws IOException, URISyntaxException {
+        Schema readSchema = avroSchema("TestRecordProjection.avsc");
+        JsonAsAvroParser parser = new JsonAsAvroParser(readSchema, GenericData.get());
+
+        URL jsonLocation = Objects.requireNonNull(getClass().getResource("TestRecord-full.json"));
+        String expected = parser.parse(jsonLocation).toString();
+        Path path = Path.of(jsonLocation.toURI());
+        byte[] bytes = Files.readAllBytes(path);
+        byte[] paddedBytes = new byte[bytes.length + 2];
+        System.arraycopy(bytes, 0, paddedBytes, 1, bytes.length);
+        ByteBuffer directBuffer = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+
+        assertThat(parser.parse(path).toString()).isEqualTo(expected);
+        assertThat(parser.parse(paddedBytes, 1, bytes.length).toString()).isEqualTo(expected);
+        assertThat(parser.parse(ByteBuffer.wrap(bytes)).toString()).isEqualTo(expected);
+        assertThat(parser.parse(directBuffer).toString()).isEqualTo(expected);
+        assertThat(directBuffer.position()).isEqualTo(0);
+        assertThat(parser.parse(new ByteArrayInputStream(bytes)).toString()).isEqualTo(expected);
+    }
+
+    @Test
+    public void testParsingRecordStream() throws IOException {
+        Schema readSchema = avroSchema("TestRecordProjection.avsc");
+        JsonAsAvroParser parser = new JsonAsAvroParser(readSchema, GenericData.get());
+        byte[] ndJson = """
+                {"bool": true, "choice": "yes", "texts": ["one"]}
+                {"bool": false, "choice": "no", "texts": ["two"]}
+                {"bool": true, "choice": "maybe", "texts": ["three"]}
+                """.getBytes(StandardCharsets.UTF_8);
+
+        List<GenericRecord> records = new ArrayList<>();
+        long count = parser.<GenericRecord>parseRecords(new ByteArrayInputStream(ndJson), records::add);
+
+        assertThat(count).isEqualTo(3);
+        assertThat(records).extracting(r -> r.get("texts")).containsExactly(List.of("one"), List.of("two"), List.of("three"));
+        assertThat(records).extracting(r -> r.get("choice").toString()).containsExactly("yes", "no", "maybe");
+    }
+
+    @Test
+    public void testParsingRecordsInParallel() throws IOException {
+        Schema readSchema = avroSchema("TestRecordProjection.avsc");
+        JsonAsAvroParser parser = new JsonAsAvroParser(readSchema, GenericData.get());
+        List<String> expected = new ArrayList<>();
+        StringBuilder ndJson = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            expected.add("text " + i);
+            ndJson.append("{\"bool\": true, \"choice\": \"yes\", \"texts\": [\"text %d\"]}\n".formatted(i));
+        }
+        Path path = Files.createTempFile("records", ".ndjson");
+        try {
+            Files.writeString(path, ndJson);
+
+            // Small ranges, so there are many
+            List<String> orderedTexts = parser.<GenericRecord>parseRecordsInParallel(path, 1000, true)
+                    .map(r -> ((List<?>) r.get("texts")).get(0).toString()).toList();
+            assertThat(orderedTexts).isEqualTo(expected);
+
+            List<String> unorderedTexts = parser.<GenericRecord>parseRecordsInParallel(path, 1000, false)
+                    .map(r -> ((List<?>) r.get("texts")).get(0).toString()).toList();
+            assertThat(unorderedTexts).containsExactlyInAnyOrderElementsOf(expected);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testFeedingChunks() throws IOException {
+        Schema readSchema = avroSchema("TestRecordProjection.avsc");
+        JsonAsAvroParser parser = new JsonAsAvroParser(readSchema, GenericData.get());
+        byte[] ndJson = """
+                {"bool": true, "choice": "yes", "texts": ["😄 one"]}
+                {"bool": false, "choice": "no", "texts": ["two"]}
+                {"bool": true, "choice": "maybe", "texts": ["th""".getBytes(StandardCharsets.UTF_8);
+
+        List<GenericRecord> records = new ArrayList<>();
+        try (JsonRecordFeeder feeder = parser.<GenericRecord>newRecordFeeder(records::add)) {
+            // Small chunks, that split tokens and characters
+            ByteBuffer chunk = ByteBuffer.allocate(3);
+            for (int offset = 0; offset < ndJson.length; offset += 3) {
+                if (offset % 2 == 0) {
+                    feeder.feed(ndJson, offset, Math.min(3, ndJson.length - offset));
+                } else {
+                    chunk.clear().put(ndJson, offset, Math.min(3, ndJson.length - offset)).flip();
+                    feeder.feed(chunk);
+                }
+            }
+            assertThat(records).hasSize(2);
+
+            feeder.feed(ByteBuffer.wrap("ree\"]}".getBytes(StandardCharsets.UTF_8)));
+            feeder.endOfInput();
+        }
+
+        assertThat(records).extracting(r -> r.get("texts")).containsExactly(List.of("😄 one"), List.of("two"), List.of("three"));
+
+        try (JsonRecordFeeder feeder = parser.<GenericRecord>newRecordFeeder(records::add)) {
+            feeder.feed(ByteBuffer.wrap("{\"bool\": true".getBytes(StandardCharsets.UTF_8)));
+            assertThatThrownBy(feeder::endOfInput).isInstanceOf(IOException.class);
+        }
+    }
+
+    @Test
+    public void testParsingDeeplyNestedDocumentsRepeatedly() throws IOException {
+        // Deeper than the initial parse state: forces it to grow
+        int depth = 40;
+        Schema readSchema = Schema.create(Schema.Type.INT);
+        for (int i = 0; i < depth; i++) {
+            readSchema = Schema.createArray(readSchema);
+        }
+        JsonAsAvroParser parser = new JsonAsAvroParser(readSchema, GenericData.get());
+        String json = "[".repeat(depth) + "1, 2" + "]".repeat(depth);
+
+        Object first = parser.parse(json);
+        Object second = parser.parse(json);
+
+        assertThat(first.toString()).isEqualTo(json);
+        assertThat(second.toString()).isEqualTo(json);
+        assertThat(second).isNotSameAs(first);
+    }
+
+    @Test
+    public void testParsingIntoSpecificRecords() throws IOException {
+        SpecificData model = new SpecificData(getClass().getClassLoader());
+        for (boolean compiled : new boolean[]{false, true}) {
+            JsonAsAvroParser parser = new JsonAsAvroParser(Person.SCHEMA$, model).withCompiledResolvers(compiled);
+
+            Person alice = parser.parse("{\"name\": \"Alice\", \"age\": 42, \"score\": 9.5, \"tags\": [\"a\", \"b\"]}");
+            assertThat(alice.name).hasToString("Alice");
+            assertThat(alice.age).isEqualTo(42);
+            assertThat(alice.score).isEqualTo(9.5);
+            assertThat(alice.tags).extracting(Object::toString).containsExactly("a", "b");
+
+            // Nested values of the previous result are reused as well
+            List<CharSequence> tags = alice.tags;
+            Person carol = parser.parse("{\"name\": \"Carol\", \"tags\": [\"c\"]}", alice);
+            assertThat(carol).isSameAs(alice);
+            assertThat(carol.tags).isSameAs(tags);
+            assertThat(carol.tags).extracting(Object::toString).containsExactly("c");
+            assertThat(carol.age).isEqualTo(18);
+            // Missing primitive fields without default are cleared
+            assertThat(carol.score).isEqualTo(0.0);
+
+            // Defaults are applied, and the previous result is reused
+            Person bob = parser.parse("{\"name\": \"Bob\"}", alice);
+            assertThat(bob).isSameAs(alice);
+            assertThat(bob.name).hasToString("Bob");
+            assertThat(bob.age).isEqualTo(18);
+            assertThat(bob.tags).isEmpty();
+
+            // Mutable defaults are not shared between records
+            Person dave = parser.parse("{\"name\": \"Dave\"}");
+            Person eve = parser.parse("{\"name\": \"Eve\"}");
+            dave.tags.add("new");
+            assertThat(eve.tags).isEmpty();
+            assertThat(parser.<Person>parse("{\"name\": \"Frank\"}").tags).isEmpty();
+        }
+    }
+
+    @Test
+    public void testParsingIntoReflectRecords() throws IOException {
+        ReflectData model = new ReflectData(getClass().getClassLoader());
+        Schema readSchema = model.getSchema(Address.class);
+        for (boolean compiled : new boolean[]{false, true}) {
+            JsonAsAvroParser parser = new JsonAsAvroParser(readSchema, model).withCompiledResolvers(compiled);
+
+            Address address = parser.parse("{\"street\": \"Main Street\", \"number\": 12, \"postalCode\": \"1234 AB\"}");
+            assertThat(address.street).isEqualTo("Main Street");
+            assertThat(address.number).isEqualTo(12);
+            assertThat(address.zipCode).isEqualTo("1234 AB");
+            assertThat(address.verified).isFalse();
+
+            // Reusing the result clears missing fields, also those of primitive types
+            address.verified = true;
+            Address other = parser.parse("{\"street\": \"Side Street\"}", address);
+            assertThat(other).isSameAs(address);
+            assertThat(other.street).isEqualTo("Side Street");
+            assertThat(other.number).isZero();
+            assertThat(other.zipCode).isNull();
+            assertThat(other.verified).isFalse();
+        }
+    }
+
+    /**
+     * A record class like the Avro compiler generates (with just the parts needed for parsing).
+     */
+    public static class Person extends SpecificRecordBase {
+        private static final long serialVersionUID = 1L;
+        public static final Schema SCHEMA$ = new Schema.Parser().parse("""
+                {"type": "record", "name": "Person", "namespace": "opwvhk.avro.json.JsonAsAvroParserTest$", "fields": [
+                    {"name": "name", "type": "string"},
+                    {"name": "age", "type": "int", "default": 18},
+                    {"name": "score", "type": "double"},
+                    {"name": "tags", "type": {"type": "array", "items": "string"}, "default": []}
+                ]}""");
+        private CharSequence name;
+        private int age;
+        private double score;
+        private List<CharSequence> tags;
+
+        @Override
+        public Schema getSchema() {
+            return SCHEMA$;
+        }
+
+        @Override
+        public Object get(int field) {
+            return switch (field) {
+                case 0 -> name;
+                case 1 -> age;
+                case 2 -> score;
+                case 3 -> tags;
+                default -> throw new IndexOutOfBoundsException("Invalid index: " + field);
+            };
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void put(int field, Object value) {
+            switch (field) {
+                case 0 -> name = (CharSequence) value;
+                case 1 -> age = (Integer) value;
+                case 2 -> score = (Double) value;
+                case 3 -> tags = (List<CharSequence>) value;
+                default -> throw new IndexOutOfBoundsException("Invalid index: " + field);
+            }
+        }
+    }
+
+    public static class Address {
+        private String street;
+        private int number;
+        @AvroName("postalCode")
+        private String zipCode;
+        private boolean verified;
+    }
+
     private Schema avroSchema(String avroSchemaResource) throws IOException {
         try (InputStream expectedSchemaStream = getClass().getResourceAsStream(avroSchemaResource)) {
             return new Schema.Parser().parse(expectedSchemaStream);
@@ -0,0 +1,34 @@
+package opwvhk.avro.util;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import static java.util.Objects.requireNonNull;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FileSplitterTest {
+	@Test
+	public void testSplittingOnLines() throws IOException, URISyntaxException {
+		Path path = Path.of(requireNonNull(getClass().getResource("mappedFile.txt")).toURI());
+		// The first line is 45 bytes, including the newline; the second 41 bytes
+		long size = Files.size(path);
+
+		assertThat(FileSplitter.splitOnLines(path, 10)).containsExactly(new ByteRange(0, 45), new ByteRange(45, size));
+		assertThat(FileSplitter.splitOnLines(path, 45)).containsExactly(new ByteRange(0, 45), new ByteRange(45, size));
+		assertThat(FileSplitter.splitOnLines(path, 50)).containsExactly(new ByteRange(0, size));
+		assertThat(FileSplitter.splitOnLines(path, 1000)).containsExactly(new ByteRange(0, size));
+	}
+
+	@Test
+	public void testRangesAreValid() {
+		assertThat(new ByteRange(3, 10).length()).isEqualTo(7);
+		assertThatThrownBy(() -> new ByteRange(-1, 10)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> new ByteRange(10, 3)).isInstanceOf(IllegalArgumentException.class);
+		assertThatThrownBy(() -> FileSplitter.splitOnLines(Path.of("irrelevant"), 0)).isInstanceOf(IllegalArgumentException.class);
+	}
+}
@@ -0,0 +1,57 @@
+package opwvhk.avro.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import static java.util.Objects.requireNonNull;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class MappedFileInputStreamTest {
+	@Test
+	public void testReadingAcrossWindows() throws IOException, URISyntaxException {
+		Path path = Path.of(requireNonNull(getClass().getResource("mappedFile.txt")).toURI());
+		byte[] expected = Files.readAllBytes(path);
+
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		try (InputStream inputStream = new MappedFileInputStream(path, 7)) {
+			// Smaller and larger reads than the window size
+			byte[] bytes = new byte[5];
+			int count;
+			while ((count = inputStream.read(bytes)) != -1) {
+				buffer.write(bytes, 0, count);
+				bytes = new byte[bytes.length == 5 ? 11 : 5];
+			}
+			assertThat(inputStream.read()).isEqualTo(-1);
+		}
+		assertThat(buffer.toByteArray()).isEqualTo(expected);
+	}
+
+	@Test
+	public void testReadingAndSkippingBytes() throws IOException, URISyntaxException {
+		Path path = Path.of(requireNonNull(getClass().getResource("mappedFile.txt")).toURI());
+		byte[] expected = Files.readAllBytes(path);
+
+		try (InputStream inputStream = new MappedFileInputStream(path, 4)) {
+			assertThat(inputStream.read()).isEqualTo(expected[0]);
+			assertThat(inputStream.skip(2)).isEqualTo(2);
+			assertThat(inputStream.read()).isEqualTo(expected[3]);
+			assertThat(inputStream.skip(10)).isEqualTo(10);
+			assertThat(inputStream.read()).isEqualTo(expected[14]);
+			assertThat(inputStream.skip(Long.MAX_VALUE)).isEqualTo(expected.length - 15);
+			assertThat(inputStream.read()).isEqualTo(-1);
+			assertThat(inputStream.skip(1)).isEqualTo(0);
+		}
+	}
+
+	@Test
+	public void testWindowSizeMustBePositive() {
+		assertThatThrownBy(() -> new MappedFileInputStream(Path.of("irrelevant"), 0)).isInstanceOf(IllegalArgumentException.class);
+	}
+}
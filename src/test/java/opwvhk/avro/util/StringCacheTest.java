@@ -0,0 +1,50 @@
+package opwvhk.avro.util;
+
+import java.util.function.Function;
+
+import org.apache.avro.util.Utf8;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class StringCacheTest {
+	@Test
+	public void testDeduplicatesEqualValues() {
+		StringCache<String> cache = new StringCache<>(16, Function.identity());
+
+		String first = cache.deduplicate(new StringBuilder("tenant-42"));
+		String second = cache.deduplicate(new StringBuilder("tenant-42"));
+		String third = cache.deduplicate("xtenant-42y".toCharArray(), 1, 9);
+
+		assertThat(first).isEqualTo("tenant-42");
+		assertThat(second).isSameAs(first);
+		assertThat(third).isSameAs(first);
+		assertThat(cache.deduplicate("tenant-43")).isEqualTo("tenant-43").isNotSameAs(first);
+	}
+
+	@Test
+	public void testCanCreateOtherValues() {
+		StringCache<Utf8> cache = new StringCache<>(16, Utf8::new);
+
+		Object first = cache.deduplicate("hostname");
+		Object second = cache.deduplicate("hostname");
+		assertThat(first).isEqualTo(new Utf8("hostname"));
+		assertThat(second).isSameAs(first);
+	}
+
+	@Test
+	public void testCacheIsBounded() {
+		StringCache<String> cache = new StringCache<>(1, Function.identity());
+
+		String first = cache.deduplicate(new StringBuilder("one"));
+		assertThat(cache.deduplicate(new StringBuilder("one"))).isSameAs(first);
+		cache.deduplicate("two");
+		assertThat(cache.deduplicate(new StringBuilder("one"))).isEqualTo(first).isNotSameAs(first);
+	}
+
+	@Test
+	public void testCapacityMustBePositive() {
+		assertThatThrownBy(() -> new StringCache<>(0, Function.identity())).isInstanceOf(IllegalArgumentException.class);
+	}
+}
@@ -0,0 +1,99 @@
+package opwvhk.avro.xml;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class XmlRecordScannerTest {
+	@Test
+	public void testScanningRecordSpans() throws IOException {
+		String xml = """
+				<?xml version="1.0" encoding="ISO-8859-1"?>
+				<!DOCTYPE envelope [ <!ELEMENT envelope ANY> <!-- ] --> ]>
+				<e:envelope xmlns:e="urn:envelope" xmlns="urn:outer">
+					<e:header><record>Not a record</record></e:header>
+					<!-- <record>Not a record either</record> -->
+					<e:body xmlns="urn:data" xmlns:x='urn:x'>
+						<record x:a="/>">One</record>
+						<![CDATA[<record>Not a record</record>]]>
+						<record/>
+						<record><record>Nested</record><?pi <record> ?></record>
+					</e:body>
+				</e:envelope>
+				""";
+		Path path = Files.createTempFile("records", ".xml");
+		try {
+			Files.writeString(path, xml, StandardCharsets.ISO_8859_1);
+
+			XmlRecordScanner scanner = new XmlRecordScanner("/envelope/body/record");
+			List<String> spans = new ArrayList<>();
+			List<String> declarations = new ArrayList<>();
+			scanner.scan(path, span -> {
+				spans.add(xml.substring((int) span.start(), (int) span.end()));
+				declarations.add(span.namespaceDeclarations());
+			});
+
+			assertThat(scanner.getEncoding()).isEqualTo("ISO-8859-1");
+			assertThat(spans).containsExactly(
+					"<record x:a=\"/>\">One</record>",
+					"<record/>",
+					"<record><record>Nested</record><?pi <record> ?></record>");
+			assertThat(declarations).containsOnly(" xmlns:e=\"urn:envelope\" xmlns=\"urn:data\" xmlns:x='urn:x'");
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	@Test
+	public void testResumingAfterARecordSpan() throws IOException {
+		String xml = """
+				<?xml version="1.0" encoding="ISO-8859-1"?>
+				<envelope xmlns="urn:outer">
+					<body xmlns:x='urn:x'><record>One</record><record>Two</record></body>
+					<body xmlns="urn:inner"><record>Three</record></body>
+				</envelope>
+				""";
+		Path path = Files.createTempFile("records", ".xml");
+		try {
+			Files.writeString(path, xml, StandardCharsets.ISO_8859_1);
+			XmlRecordScanner scanner = new XmlRecordScanner("/envelope/body/record");
+			List<XmlRecordScanner.RecordSpan> spans = new ArrayList<>();
+			scanner.scan(path, spans::add);
+			assertThat(spans).hasSize(3);
+
+			// Resuming after the first span yields the same spans as a full scan
+			XmlRecordScanner.RecordSpan first = spans.get(0);
+			List<XmlRecordScanner.RecordSpan> resumedSpans = new ArrayList<>();
+			XmlRecordScanner resumingScanner = new XmlRecordScanner("/envelope/body/record");
+			resumingScanner.scan(path, first.end(), first.resumeState(), resumedSpans::add);
+			assertThat(resumingScanner.getEncoding()).isEqualTo("ISO-8859-1");
+			assertThat(resumedSpans).isEqualTo(spans.subList(1, 3));
+
+			assertThatThrownBy(() -> new XmlRecordScanner("/envelope/record").scan(path, first.end(), first.resumeState(), span -> {}))
+					.isInstanceOf(IOException.class);
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	@Test
+	public void testScanningInvalidXml() throws IOException {
+		Path path = Files.createTempFile("records", ".xml");
+		try {
+			Files.writeString(path, "<envelope><record>", StandardCharsets.UTF_8);
+			XmlRecordScanner scanner = new XmlRecordScanner("/envelope/record");
+			assertThatThrownBy(() -> scanner.scan(path, span -> {})).isInstanceOf(IOException.class);
+			assertThatThrownBy(() -> new XmlRecordScanner("record")).isInstanceOf(IllegalArgumentException.class);
+		} finally {
+			Files.delete(path);
+		}
+	}
+}
@@ -1,20 +1,35 @@
 package opwvhk.avro.xml;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.StringReader;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 
 import opwvhk.avro.ResolvingFailure;
+import opwvhk.avro.io.DeadLetter;
+import opwvhk.avro.io.LazyRecord;
+import opwvhk.avro.io.ResumableDataFileWriter;
 import opwvhk.avro.io.ValueResolver;
 import opwvhk.avro.xml.datamodel.DecimalType;
 import opwvhk.avro.xml.datamodel.FixedType;
 import opwvhk.avro.xml.datamodel.Type;
 import org.apache.avro.LogicalTypes;
 import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
 import org.apache.avro.data.TimeConversions;
+import org.apache.avro.file.CodecFactory;
+import org.apache.avro.file.DataFileReader;
 import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericDatumReader;
 import org.apache.avro.generic.GenericDatumWriter;
 import org.apache.avro.generic.GenericRecord;
 import org.apache.avro.io.EncoderFactory;
@@ -157,6 +172,420 @@ public class XmlResolvingTest {
                 """);
     }
 
+    @Test
+    public void testReusingRecords() throws IOException, SAXException {
+        URL xsdLocation = requireNonNull(getClass().getResource("resolvingTest.xsd"));
+        Schema readSchema = new Schema.Parser().parse(getClass().getResourceAsStream("resolvingTest.avsc"));
+        XmlAsAvroParser parser = new XmlAsAvroParser(xsdLocation, "outer", readSchema, MODEL);
+
+        GenericRecord resultFull = parser.parse(requireNonNull(getClass().getResource("resolvingTestFull.xml")));
+        Object textList = resultFull.get("textList");
+        GenericRecord exceptionToUnwrappingRule = (GenericRecord) resultFull.get("exceptionToUnwrappingRule");
+        Object numbers = exceptionToUnwrappingRule.get("number");
+
+        GenericRecord resultMinimal = parser.parse(requireNonNull(getClass().getResource("resolvingTestMinimal.xml")), resultFull);
+        assertThat(resultMinimal).isSameAs(resultFull);
+        assertThat(resultMinimal.get("textList")).isSameAs(textList);
+        assertThat(resultMinimal.get("exceptionToUnwrappingRule")).isSameAs(exceptionToUnwrappingRule);
+        assertThat(exceptionToUnwrappingRule.get("number")).isSameAs(numbers);
+        assertThat(toJson(resultMinimal)).isEqualToNormalizingWhitespace("""
+                {
+                	"presentRequired" : "I'm here",
+                	"optionalField" : null,
+                	"textList" : [ "Hey, that's my line!" ],
+                	"inner" : null,
+                	"switch" : "broken",
+                	"approximation" : 123456.78,
+                	"moreAccurateApproximation" : null,
+                	"morePrecise" : null,
+                	"exceptionToUnwrappingRule" : { "opwvhk.resolvingTest.mustMatch" : {
+                		"number" : [ 1 ]
+                	} },
+                	"upgrade" : [ ],
+                	"category" : null
+                }
+                """);
+    }
+
+    @Test
+    public void testParsingBytes() throws IOException, SAXException, URISyntaxException {
+        URL xsdLocation = requireNonNull(getClass().getResource("resolvingTest.xsd"));
+        Schema readSchema = new Schema.Parser().parse(getClass().getResourceAsStream("resolvingTest.avsc"));
+        XmlAsAvroParser parser = new XmlAsAvroParser(xsdLocation, "outer", readSchema, MODEL);
+
+        URL xmlLocation = requireNonNull(getClass().getResource("resolvingTestMinimal.xml"));
+        String expected = toJson(parser.parse(xmlLocation));
+        Path path = Path.of(xmlLocation.toURI());
+        byte[] bytes = Files.readAllBytes(path);
+        byte[] paddedBytes = new byte[bytes.length + 2];
+        System.arraycopy(bytes, 0, paddedBytes, 1, bytes.length);
+        ByteBuffer directBuffer = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+
+        assertThat(toJson(parser.parse(path))).isEqualTo(expected);
+        assertThat(toJson(parser.parse(paddedBytes, 1, bytes.length))).isEqualTo(expected);
+        assertThat(toJson(parser.parse(ByteBuffer.wrap(bytes)))).isEqualTo(expected);
+        assertThat(toJson(parser.parse(directBuffer))).isEqualTo(expected);
+        assertThat(directBuffer.position()).isEqualTo(0);
+        assertThat(toJson(parser.parse(new ByteArrayInputStream(bytes)))).isEqualTo(expected);
+    }
+
+    @Test
+    public void testParsingRecordStream() throws IOException, SAXException {
+        Schema readSchema = SchemaBuilder.record("record").fields()
+                .requiredString("name")
+                .optionalInt("number")
+                .endRecord();
+        XmlAsAvroParser parser = new XmlAsAvroParser(readSchema, MODEL);
+        String xml = """
+                <envelope>
+                    <header><record><name>not a record</name></record></header>
+                    <record><name>first</name><number>1</number></record>
+                    <record><name>second</name></record>
+                    <body><record><name>not a record either</name></record></body>
+                    <record><name>third</name><number>3</number></record>
+                </envelope>""";
+
+        List<GenericRecord> records = new ArrayList<>();
+        long count = parser.<GenericRecord>parseRecords(new InputSource(new StringReader(xml)), false, "/envelope/record", records::add);
+
+        assertThat(count).isEqualTo(3);
+        assertThat(records).extracting(Object::toString).containsExactly(
+                "{\"name\": \"first\", \"number\": 1}",
+                "{\"name\": \"second\", \"number\": null}",
+                "{\"name\": \"third\", \"number\": 3}");
+
+        assertThatThrownBy(() -> parser.<GenericRecord>parseRecords(new InputSource(new StringReader(xml)), false, "record", records::add))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testParsingRecordsInParallel() throws IOException {
+        Schema readSchema = SchemaBuilder.record("record").fields()
+                .requiredString("name")
+                .optionalInt("number")
+                .endRecord();
+        XmlAsAvroParser parser = new XmlAsAvroParser(readSchema, MODEL);
+        List<String> expected = new ArrayList<>();
+        StringBuilder xml = new StringBuilder("""
+                <?xml version="1.0" encoding="UTF-8"?>
+                <e:envelope xmlns:e="urn:envelope">
+                    <e:header><record><name>not a record</name></record></e:header>
+                    <e:body xmlns="urn:data">
+                """);
+        for (int i = 0; i < 1000; i++) {
+            expected.add("{\"name\": \"r\u00e9cord %d\", \"number\": %d}".formatted(i, i));
+            xml.append("<record><name>r\u00e9cord %d</name><number>%d</number></record>\n".formatted(i, i));
+        }
+        xml.append("</e:body></e:envelope>");
+        Path path = Files.createTempFile("records", ".xml");
+        try {
+            Files.writeString(path, xml);
+
+            // Small batches, so there are many
+            List<String> orderedRecords = parser.<GenericRecord>parseRecordsInParallel(path, "/envelope/body/record", 1000, true)
+                    .map(Object::toString).toList();
+            assertThat(orderedRecords).isEqualTo(expected);
+
+            List<String> unorderedRecords = parser.<GenericRecord>parseRecordsInParallel(path, "/envelope/body/record", 1000, false)
+                    .map(Object::toString).toList();
+            assertThat(unorderedRecords).containsExactlyInAnyOrderElementsOf(expected);
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testResumableConversion() throws IOException {
+        Schema readSchema = SchemaBuilder.record("record").fields().requiredString("name").endRecord();
+        XmlAsAvroParser parser = new XmlAsAvroParser(readSchema, MODEL);
+        Path input = Files.createTempFile("records", ".xml");
+        Path output = Files.createTempFile("records", ".avro");
+        try {
+            StringBuilder xml = new StringBuilder("<envelope>\n");
+            for (int i = 0; i < 100; i++) {
+                xml.append("<record><name>record %02d</name></record>\n".formatted(i));
+            }
+            String validXml = xml.append("</envelope>").toString();
+            // Fail halfway, with checkpoints after each record
+            Files.writeString(input, validXml.replace("record 50</name>", "record 50</nam>"));
+            try (ResumableDataFileWriter<GenericRecord> writer = new ResumableDataFileWriter<>(readSchema, MODEL, output, CodecFactory.nullCodec(),
+                    Duration.ZERO)) {
+                assertThatThrownBy(() -> parser.convertResumable(input, "/envelope/record", writer)).isInstanceOf(IOException.class);
+                // The writer is closed upon failure, so the conversion can be retried
+                assertThatThrownBy(() -> parser.convertResumable(input, "/envelope/record", writer)).isInstanceOf(IOException.class);
+            }
+            Path checkpoint = output.resolveSibling(output.getFileName() + ".checkpoint");
+            assertThat(checkpoint).content().contains("recordCount=50").contains("inputState=");
+
+            // Resume after fixing the input. Resuming continues scanning after the checkpoint, so it does not see that we've now broken the first record
+            // (by starting an unterminated comment, without moving the rest).
+            Files.writeString(input, validXml.replaceFirst("<record>", "<!--xxxx"));
+            try (ResumableDataFileWriter<GenericRecord> writer = new ResumableDataFileWriter<>(readSchema, MODEL, output, CodecFactory.nullCodec(),
+                    Duration.ofMinutes(1))) {
+                assertThat(parser.convertResumable(input, "/envelope/record", writer)).isEqualTo(100);
+            }
+
+            List<String> names = new ArrayList<>();
+            try (DataFileReader<GenericRecord> reader = new DataFileReader<>(output.toFile(), new GenericDatumReader<>())) {
+                reader.forEach(record -> names.add(record.get("name").toString()));
+            }
+            assertThat(names).hasSize(100);
+            assertThat(names.get(50)).isEqualTo("record 50");
+        } finally {
+            Files.delete(input);
+            Files.delete(output);
+        }
+    }
+
+    @Test
+    public void testLazyRecordsWithRepeatedElements() throws IOException, SAXException {
+        Schema readSchema = new Schema.Parser().parse("""
+                {"type": "record", "name": "event", "lazy": true, "fields": [
+                    {"name": "key", "type": "string"},
+                    {"name": "count", "type": {"type": "array", "items": "int"}, "default": []}
+                ]}""");
+        Path xsd = Files.createTempFile("event", ".xsd");
+        try {
+            Files.writeString(xsd, """
+                    <xs:schema xmlns:xs="http://www.w3.org/2001/XMLSchema">
+                        <xs:element name="event">
+                            <xs:complexType>
+                                <xs:sequence>
+                                    <xs:element name="key" type="xs:string"/>
+                                    <xs:element name="count" type="xs:int" maxOccurs="unbounded"/>
+                                </xs:sequence>
+                            </xs:complexType>
+                        </xs:element>
+                    </xs:schema>""");
+            XmlAsAvroParser parser = new XmlAsAvroParser(xsd.toUri().toURL(), "event", readSchema, MODEL);
+            byte[] xml = """
+                    <event><key>abc</key><count>1</count><count>2</count></event>""".getBytes(StandardCharsets.UTF_8);
+
+            GenericRecord record = parser.parse(xml, 0, xml.length);
+            assertThat(record).isInstanceOf(LazyRecord.class);
+            assertThat(((LazyRecord) record).isConverted(0)).isFalse();
+            assertThat(record.get("key")).isEqualTo("abc");
+            // Repeated elements are converted immediately, like other array items
+            assertThat(record.get("count")).isEqualTo(List.of(1, 2));
+        } finally {
+            Files.delete(xsd);
+        }
+    }
+
+    @Test
+    public void testEarlyTermination() throws IOException, SAXException {
+        Schema readSchema = SchemaBuilder.record("envelope").fields().requiredString("id").optionalString("sender").endRecord();
+        XmlAsAvroParser parser = new XmlAsAvroParser(readSchema, MODEL);
+        // The document is malformed after the header fields: we can only parse it if we stop early
+        byte[] xml = """
+                <envelope id="abc"><sender>me</sender><body><payload></body>""".getBytes(StandardCharsets.UTF_8);
+
+        assertThatThrownBy(() -> parser.parse(xml, 0, xml.length)).isInstanceOf(SAXException.class);
+
+        parser.withEarlyTermination(true);
+        GenericRecord record = parser.parse(xml, 0, xml.length);
+        assertThat(record.get("id")).isEqualTo("abc");
+        assertThat(record.get("sender")).isEqualTo("me");
+        // The parser can be reused after stopping early
+        record = parser.parse(xml, 0, xml.length);
+        assertThat(record.get("sender")).isEqualTo("me");
+        // The setting is independent of (and survives) switching resolvers
+        parser.withCompiledResolvers(false);
+        assertThat(parser.<GenericRecord>parse(xml, 0, xml.length).get("sender")).isEqualTo("me");
+        parser.withCompiledResolvers(true);
+        assertThat(parser.<GenericRecord>parse(xml, 0, xml.length).get("sender")).isEqualTo("me");
+
+        parser.withEarlyTermination(false);
+        assertThatThrownBy(() -> parser.parse(xml, 0, xml.length)).isInstanceOf(SAXException.class);
+    }
+
+    @Test
+    public void testParsingWithDeadLetters() throws IOException {
+        Schema readSchema = SchemaBuilder.record("record").fields().requiredString("name").requiredInt("number").endRecord();
+        XmlAsAvroParser parser = new XmlAsAvroParser(readSchema, MODEL);
+        Path input = Files.createTempFile("records", ".xml");
+        try {
+            String[] records = {
+                    "<record><name>first</name><number>1</number></record>",
+                    "<record><name>invalid number</name><number>two</number></record>",
+                    "<record><name>second</name><number>2</number></record>",
+                    "<record><name>malformed</nam><number>3</number></record>",
+                    "<record><name>third</name><number>3</number></record>"
+            };
+            String xml = "<envelope>\n" + String.join("\n", records) + "\n</envelope>";
+            Files.writeString(input, xml);
+
+            List<String> names = new ArrayList<>();
+            List<DeadLetter> deadLetters = new ArrayList<>();
+            long count = parser.<GenericRecord>parseRecords(input, "/envelope/record", record -> names.add(record.get("name").toString()),
+                    deadLetters::add);
+
+            assertThat(count).isEqualTo(3);
+            assertThat(names).containsExactly("first", "second", "third");
+            assertThat(deadLetters).extracting(DeadLetter::reason).containsExactly(DeadLetter.Reason.INVALID_VALUE, DeadLetter.Reason.MALFORMED_INPUT);
+            assertThat(deadLetters).extracting(DeadLetter::rawText).containsExactly(records[1], records[3]);
+            assertThat(deadLetters.get(0).startOffset()).isEqualTo(xml.indexOf(records[1]));
+        } finally {
+            Files.delete(input);
+        }
+    }
+
+    @Test
+    public void testCompiledResolvers() throws IOException, SAXException {
+        URL xsdLocation = requireNonNull(getClass().getResource("resolvingTest.xsd"));
+        Schema readSchema = new Schema.Parser().parse(getClass().getResourceAsStream("resolvingTest.avsc"));
+        XmlAsAvroParser parser = new XmlAsAvroParser(xsdLocation, "outer", readSchema, MODEL);
+
+        URL xmlLocation = requireNonNull(getClass().getResource("resolvingTestFull.xml"));
+        String expected = toJson(parser.parse(xmlLocation));
+        parser.withCompiledResolvers(true);
+        assertThat(toJson(parser.parse(xmlLocation))).isEqualTo(expected);
+    }
+
+    @Test
+    public void testResolverPlans() throws IOException, SAXException {
+        URL xsdLocation = requireNonNull(getClass().getResource("resolvingTest.xsd"));
+        Schema readSchema = new Schema.Parser().parse(getClass().getResourceAsStream("resolvingTest.avsc"));
+        URL xmlLocation = requireNonNull(getClass().getResource("resolvingTestFull.xml"));
+        String expected = toJson(new XmlAsAvroParser(xsdLocation, "outer", readSchema, MODEL).parse(xmlLocation));
+        Path planFile = Files.createTempFile("resolvingTest", ".plan");
+        Files.delete(planFile);
+
+        // The first parser analyses the XSD and writes the plan; the second one uses it.
+        new XmlAsAvroParser(xsdLocation, "outer", readSchema, MODEL, planFile);
+        byte[] plan = Files.readAllBytes(planFile);
+        XmlAsAvroParser parser = new XmlAsAvroParser(xsdLocation, "outer", readSchema, MODEL, planFile);
+        assertThat(Files.readAllBytes(planFile)).isEqualTo(plan);
+        assertThat(toJson(parser.parse(xmlLocation))).isEqualTo(expected);
+
+        // A plan for other inputs is replaced (this one also has content that is not parsed)
+        URL payloadXsdLocation = requireNonNull(getClass().getResource("payload.xsd"));
+        Schema envelopeSchema = new Schema.Parser().parse(getClass().getResourceAsStream("envelope.avsc"));
+        URL payloadLocation = requireNonNull(getClass().getResource("xmlPayload.xml"));
+        String expectedEnvelope = toJson(new XmlAsAvroParser(payloadXsdLocation, "envelope", envelopeSchema, MODEL).parse(payloadLocation));
+        new XmlAsAvroParser(payloadXsdLocation, "envelope", envelopeSchema, MODEL, planFile);
+        assertThat(Files.readAllBytes(planFile)).isNotEqualTo(plan);
+        XmlAsAvroParser envelopeParser = new XmlAsAvroParser(payloadXsdLocation, "envelope", envelopeSchema, MODEL, planFile);
+        assertThat(toJson(envelopeParser.parse(payloadLocation))).isEqualTo(expectedEnvelope);
+        Files.delete(planFile);
+    }
+
+    @Test
+    public void testResolverPlansConvertLikeAnalysingTheXsd() throws IOException, SAXException {
+        // Plans do not store scalar conversions: they must not depend on the write type, only on the read type
+        Schema readSchema = new Schema.Parser().parse("""
+                {"type": "record", "name": "values", "fields": [
+                    {"name": "price", "type": "double"},
+                    {"name": "ratio", "type": "float"},
+                    {"name": "count", "type": "long"},
+                    {"name": "size", "type": "double"},
+                    {"name": "kind", "type": "string"},
+                    {"name": "when", "type": {"type": "long", "logicalType": "timestamp-micros"}},
+                    {"name": "data", "type": "bytes"}
+                ]}""");
+        Path xsd = Files.createTempFile("values", ".xsd");
+        Path planFile = Files.createTempFile("values", ".plan");
+        Files.delete(planFile);
+        try {
+            Files.writeString(xsd, """
+                    <xs:schema xmlns:xs="http://www.w3.org/2001/XMLSchema">
+                        <xs:element name="values">
+                            <xs:complexType>
+                                <xs:sequence>
+                                    <xs:element name="price">
+                                        <xs:simpleType><xs:restriction base="xs:decimal"><xs:totalDigits value="7"/><xs:fractionDigits value="2"/></xs:restriction></xs:simpleType>
+                                    </xs:element>
+                                    <xs:element name="ratio">
+                                        <xs:simpleType><xs:restriction base="xs:decimal"><xs:totalDigits value="5"/><xs:fractionDigits value="3"/></xs:restriction></xs:simpleType>
+                                    </xs:element>
+                                    <xs:element name="count">
+                                        <xs:simpleType><xs:restriction base="xs:decimal"><xs:totalDigits value="9"/><xs:fractionDigits value="0"/></xs:restriction></xs:simpleType>
+                                    </xs:element>
+                                    <xs:element name="size" type="xs:float"/>
+                                    <xs:element name="kind">
+                                        <xs:simpleType><xs:restriction base="xs:string"><xs:enumeration value="small"/><xs:enumeration value="large"/></xs:restriction></xs:simpleType>
+                                    </xs:element>
+                                    <xs:element name="when" type="xs:dateTime"/>
+                                    <xs:element name="data" type="xs:hexBinary"/>
+                                </xs:sequence>
+                            </xs:complexType>
+                        </xs:element>
+                    </xs:schema>""");
+            URL xsdLocation = xsd.toUri().toURL();
+            byte[] xml = """
+                    <values><price>12.34</price><ratio>0.5</ratio><count>123456789</count><size>1.25</size><kind>large</kind>
+                    <when>2023-04-17T10:30:00.123456+02:00</when><data>CAFE</data></values>""".getBytes(StandardCharsets.UTF_8);
+            String expected = toJson(new XmlAsAvroParser(xsdLocation, "values", readSchema, MODEL).parse(xml, 0, xml.length));
+
+            new XmlAsAvroParser(xsdLocation, "values", readSchema, MODEL, planFile);
+            assertThat(planFile).exists();
+            XmlAsAvroParser parser = new XmlAsAvroParser(xsdLocation, "values", readSchema, MODEL, planFile);
+            assertThat(toJson(parser.parse(xml, 0, xml.length))).isEqualTo(expected);
+        } finally {
+            Files.delete(xsd);
+            Files.deleteIfExists(planFile);
+        }
+    }
+
+    @Test
+    public void testFeedingChunks() throws IOException, SAXException, URISyntaxException {
+        URL xsdLocation = requireNonNull(getClass().getResource("resolvingTest.xsd"));
+        Schema readSchema = new Schema.Parser().parse(getClass().getResourceAsStream("resolvingTest.avsc"));
+        XmlAsAvroParser parser = new XmlAsAvroParser(xsdLocation, "outer", readSchema, MODEL);
+
+        URL xmlLocation = requireNonNull(getClass().getResource("resolvingTestFull.xml"));
+        String expected = toJson(parser.parse(xmlLocation));
+        byte[] bytes = Files.readAllBytes(Path.of(xmlLocation.toURI()));
+
+        List<GenericRecord> records = new ArrayList<>();
+        try (XmlRecordFeeder feeder = parser.<GenericRecord>newRecordFeeder(records::add)) {
+            for (int offset = 0; offset < bytes.length; offset += 5) {
+                feeder.feed(bytes, offset, Math.min(5, bytes.length - offset));
+            }
+            feeder.endOfInput();
+        }
+        assertThat(records).hasSize(1);
+        assertThat(toJson(records.get(0))).isEqualTo(expected);
+
+        try (XmlRecordFeeder feeder = parser.<GenericRecord>newRecordFeeder(records::add)) {
+            feeder.feed(bytes, 0, bytes.length / 2);
+            assertThatThrownBy(feeder::endOfInput).isInstanceOf(SAXException.class);
+        }
+    }
+
+    @Test
+    public void testFeedingRecordStream() throws IOException, SAXException {
+        Schema readSchema = SchemaBuilder.record("record").fields()
+                .requiredString("name")
+                .optionalInt("number")
+                .endRecord();
+        XmlAsAvroParser parser = new XmlAsAvroParser(readSchema, MODEL);
+        String xmlText = """
+                <?xml version="1.0"?>
+                <envelope>
+                    <header><record><name>not a record</name></record></header>
+                    <record><name>first</name><number>1</number></record>
+                    <!-- Some comment -->
+                    <record><name><![CDATA[second]]></name></record>
+                </envelope>
+                """;
+        byte[] xml = xmlText.getBytes(StandardCharsets.UTF_8);
+
+        List<GenericRecord> records = new ArrayList<>();
+        try (XmlRecordFeeder feeder = parser.<GenericRecord>newRecordFeeder("/envelope/record", records::add)) {
+            // Split after the first record (the text is ASCII)
+            int half = xmlText.indexOf("<!--");
+            feeder.feed(ByteBuffer.wrap(xml, 0, half));
+            assertThat(records).hasSize(1);
+            feeder.feed(ByteBuffer.wrap(xml, half, xml.length - half));
+            feeder.endOfInput();
+        }
+
+        assertThat(records).extracting(Object::toString).containsExactly(
+                "{\"name\": \"first\", \"number\": 1}",
+                "{\"name\": \"second\", \"number\": null}");
+    }
+
     @Test
     public void testResolvingAndParsingWithoutNamespace() throws IOException, SAXException {
         URL xsdLocation = requireNonNull(getClass().getResource("resolvingTest.xsd"));